@@ -1,6 +1,8 @@
 package com.leastfixedpoint.json.examples;
 
+import com.leastfixedpoint.json.JSONByteReader;
 import com.leastfixedpoint.json.JSONReader;
+import com.leastfixedpoint.json.JSONByteWriter;
 import com.leastfixedpoint.json.JSONWriter;
 
 import java.io.*;
@@ -35,16 +37,16 @@ public class JSONEchoServer implements Runnable {
     @Override
     public void run() {
         try {
-            JSONReader r = new JSONReader(new InputStreamReader(this.sock.getInputStream()));
-            JSONWriter w = new JSONWriter(new OutputStreamWriter(this.sock.getOutputStream()), true);
+            JSONReader r = new JSONByteReader(this.sock.getInputStream());
+            JSONByteWriter w = new JSONByteWriter(this.sock.getOutputStream(), true);
 
             while (true) {
                 try {
                     Object blob = r.read();
                     System.out.println(JSONWriter.writeToString(blob, true));
                     w.write(blob);
-                    w.getWriter().write("\n");
-                    w.getWriter().flush();
+                    w.getOutputStream().write('\n');
+                    w.flush();
                 } catch (EOFException ee) {
                     break;
                 }
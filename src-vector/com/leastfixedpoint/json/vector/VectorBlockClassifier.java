@@ -0,0 +1,76 @@
+package com.leastfixedpoint.json.vector;
+
+import com.leastfixedpoint.json.JSONStructuralIndex;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Classifies 64-byte blocks for {@link JSONStructuralIndex} using the incubating Vector API, comparing 16, 32 or 64
+ * bytes per instruction depending on the platform's preferred vector size. Requires the JVM to be started with
+ * {@code --add-modules jdk.incubator.vector}; JSONStructuralIndex picks this class up automatically when it is on the
+ * class path and usable.
+ */
+public class VectorBlockClassifier implements JSONStructuralIndex.BlockClassifier {
+    static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED.length() > 64
+            ? ByteVector.SPECIES_512
+            : ByteVector.SPECIES_PREFERRED;
+    static final VectorSpecies<Long> LONGS = VectorSpecies.of(long.class, VectorShape.forBitSize(BYTES.vectorBitSize()));
+    static final int STEPS = 64 / BYTES.length();
+
+    /** For each step through a block, the position within the block's masks of the bits from each long lane. */
+    static final LongVector[] SHIFTS = new LongVector[STEPS];
+    static {
+        for (int step = 0; step < STEPS; step++) {
+            long[] shifts = new long[LONGS.length()];
+            for (int j = 0; j < shifts.length; j++) shifts[j] = step * BYTES.length() + 8 * j;
+            SHIFTS[step] = LongVector.fromArray(LONGS, shifts, 0);
+        }
+    }
+
+    /**
+     * Converts a mask to bits, positioned for the given step. Equivalent to {@code m.toLong() << shift}, which is not
+     * intrinsified by every JDK: instead, each long lane gathers the high bits of its eight bytes by multiplication.
+     */
+    static long bits(VectorMask<Byte> m, int step) {
+        return ((ByteVector) m.toVector()).reinterpretAsLongs()
+                .lanewise(VectorOperators.LSHR, 7)
+                .and(0x0101010101010101L)
+                .mul(0x0102040810204080L)
+                .lanewise(VectorOperators.LSHR, 56)
+                .lanewise(VectorOperators.LSHL, SHIFTS[step])
+                .reduceLanes(VectorOperators.OR);
+    }
+
+    @Override
+    public void classify(byte[] bytes, int offset, long[] masks) {
+        long quote = 0, backslash = 0, operator = 0, whitespace = 0, unsupported = 0;
+        for (int step = 0; step < STEPS; step++) {
+            ByteVector v = ByteVector.fromArray(BYTES, bytes, offset + step * BYTES.length());
+            ByteVector lower = v.or((byte) 0x20); // folds '[' and ']' onto '{' and '}'
+            VectorMask<Byte> ws = v.eq((byte) ' ')
+                    .or(v.eq((byte) '\t'))
+                    .or(v.eq((byte) '\n'))
+                    .or(v.eq((byte) '\r'));
+            quote |= bits(v.eq((byte) '"'), step);
+            backslash |= bits(v.eq((byte) '\\'), step);
+            operator |= bits(lower.eq((byte) '{')
+                    .or(lower.eq((byte) '}'))
+                    .or(v.eq((byte) ':'))
+                    .or(v.eq((byte) ',')), step);
+            whitespace |= bits(ws, step);
+            // Signed comparison: catches both control characters and bytes with the high bit set.
+            unsupported |= bits(v.compare(VectorOperators.LT, (byte) ' ').andNot(ws)
+                    .or(v.eq((byte) '\''))
+                    .or(v.eq((byte) '/')), step);
+        }
+        masks[JSONStructuralIndex.QUOTE] = quote;
+        masks[JSONStructuralIndex.BACKSLASH] = backslash;
+        masks[JSONStructuralIndex.OPERATOR] = operator;
+        masks[JSONStructuralIndex.WHITESPACE] = whitespace;
+        masks[JSONStructuralIndex.UNSUPPORTED] = unsupported;
+    }
+}
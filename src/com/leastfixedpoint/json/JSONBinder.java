@@ -0,0 +1,661 @@
+package com.leastfixedpoint.json;
+
+import com.leastfixedpoint.json.JSONCursor.Token;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decodes JSON directly into Java records and classes, reading tokens from a {@link JSONCursor} without building an
+ * intermediate tree of Maps and Lists.
+ * <p>
+ * Supported target types are:
+ * <ul>
+ *     <li>primitive types and their wrappers, String, BigDecimal, BigInteger and Number (which is decoded according
+ *     to the reader's {@link JSONReader.NumberPolicy});</li>
+ *     <li>enums, from the names of their constants;</li>
+ *     <li>List&lt;T&gt; (and Collection&lt;T&gt; and Iterable&lt;T&gt;), decoded as ArrayLists;</li>
+ *     <li>Map&lt;String, T&gt;, decoded as HashMaps;</li>
+ *     <li>Object, decoded as {@link JSONReader} would decode it, and {@link JSONValue};</li>
+ *     <li>records, from JSON objects whose keys name record components; and</li>
+ *     <li>other classes with a no-argument constructor, from JSON objects whose keys name non-static, non-final,
+ *     non-transient fields (of any visibility) of the class or its superclasses.</li>
+ * </ul>
+ * Object keys not naming a component or field are skipped, and components and fields not mentioned in the input
+ * are left at zero, false or null. JSON null decodes to Java null, except for Object, where it becomes
+ * {@link JSONNull#INSTANCE}; it is an error for a primitive. Other mismatches between input and target type are
+ * reported with {@link JSONTypeError}.
+ * <p>
+ * The decoder for each type is built once, using {@link MethodHandles} for constructors and field setters, and is
+ * cached in a {@link ClassValue}; after that, no reflection is involved. Primitive fields and record components are
+ * filled without boxing their values.
+ */
+public final class JSONBinder {
+    private static final ClassValue<Codec> CODECS = new ClassValue<Codec>() {
+        @Override
+        protected Codec computeValue(Class<?> type) {
+            return buildCodec(type);
+        }
+    };
+
+    /** Decoders for parameterized types, such as List&lt;Foo&gt;, requested from {@link #read(JSONCursor, Type)}. */
+    private static final Map<Type, Codec> GENERIC_CODECS = new ConcurrentHashMap<>();
+
+    private JSONBinder() {
+    }
+
+    /**
+     * Reads the next value from the given cursor, decoding it as an instance of the given type.
+     * Throws EOFException if no complete JSON value is available.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T read(JSONCursor cursor, Class<T> type) throws IOException {
+        next(cursor);
+        return (T) CODECS.get(type).decode(cursor);
+    }
+
+    /**
+     * As {@link #read(JSONCursor, Class)}, but for any type, including parameterized types such as
+     * List&lt;Foo&gt;.
+     */
+    public static Object read(JSONCursor cursor, Type type) throws IOException {
+        Codec codec = (type instanceof Class<?>)
+                ? CODECS.get((Class<?>) type)
+                : GENERIC_CODECS.computeIfAbsent(type, JSONBinder::codecFor);
+        next(cursor);
+        return codec.decode(cursor);
+    }
+
+    /**
+     * Decodes a single JSON value from the given input JSON source text as an instance of the given type.
+     * Calls expectEOF() after reading, to ensure no trailing junk is present.
+     */
+    public static <T> T readFrom(String s, Class<T> type) throws IOException {
+        return readFrom(new JSONReader(s), type);
+    }
+
+    /**
+     * Decodes a single JSON value from the given Reader as an instance of the given type.
+     * Calls expectEOF() after reading, to ensure no trailing junk is present.
+     */
+    public static <T> T readFrom(Reader r, Class<T> type) throws IOException {
+        return readFrom(new JSONReader(r), type);
+    }
+
+    /**
+     * Decodes a single JSON value from the given UTF-8 encoded input as an instance of the given type.
+     * Calls expectEOF() after reading, to ensure no trailing junk is present.
+     */
+    public static <T> T readFrom(byte[] bytes, Class<T> type) throws IOException {
+        return readFrom(new JSONByteReader(bytes), type);
+    }
+
+    private static <T> T readFrom(JSONReader r, Class<T> type) throws IOException {
+        T result = read(new JSONCursor(r), type);
+        r.expectEOF();
+        return result;
+    }
+
+    private static Token next(JSONCursor cursor) throws IOException {
+        Token t = cursor.nextToken();
+        if (t == null) throw new EOFException();
+        return t;
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) throw (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        return new UndeclaredThrowableException(t);
+    }
+
+    /**
+     * Decodes a value whose first token is the cursor's current token, leaving the cursor at its last token.
+     */
+    private abstract static class Codec {
+        abstract Object decode(JSONCursor c) throws IOException;
+    }
+
+    /** Defers looking up the codec for a class until first use, so that classes may refer to themselves. */
+    private static final class LazyCodec extends Codec {
+        private final Class<?> type;
+        private Codec codec;
+
+        LazyCodec(Class<?> type) {
+            this.type = type;
+        }
+
+        @Override
+        Object decode(JSONCursor c) throws IOException {
+            Codec k = codec;
+            if (k == null) codec = k = CODECS.get(type);
+            return k.decode(c);
+        }
+    }
+
+    private static Codec codecFor(Type type) {
+        if (type instanceof Class<?>) {
+            Class<?> c = (Class<?>) type;
+            return (c.isPrimitive() || scalarCodec(c) != null) ? CODECS.get(c) : new LazyCodec(c);
+        }
+        if (type instanceof WildcardType) return codecFor(((WildcardType) type).getUpperBounds()[0]);
+        if (type instanceof ParameterizedType) {
+            ParameterizedType p = (ParameterizedType) type;
+            Class<?> raw = (Class<?>) p.getRawType();
+            Type[] args = p.getActualTypeArguments();
+            if (raw.isAssignableFrom(ArrayList.class)) return new ListCodec(codecFor(args[0]));
+            if (raw.isAssignableFrom(HashMap.class)) {
+                if (args[0] != String.class) throw new IllegalArgumentException("Map keys must be Strings: " + type);
+                return new MapCodec(codecFor(args[1]));
+            }
+            return codecFor(raw);
+        }
+        if (type instanceof GenericArrayType) throw new IllegalArgumentException("Unsupported type: " + type);
+        return GENERIC; // a type variable
+    }
+
+    private static Codec buildCodec(Class<?> type) {
+        if (type.isPrimitive()) return new PrimitiveCodec(Primitive.of(type));
+        Codec scalar = scalarCodec(type);
+        if (scalar != null) return scalar;
+        if (type.isEnum()) return new EnumCodec(type);
+        if (type.isArray()) throw new IllegalArgumentException("Unsupported type: " + type);
+        if (type.isAssignableFrom(ArrayList.class)) return new ListCodec(GENERIC);
+        if (type.isAssignableFrom(HashMap.class)) return new MapCodec(GENERIC);
+        if (type.isRecord()) return new RecordCodec(type);
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            throw new IllegalArgumentException("Cannot instantiate type: " + type);
+        }
+        return new ClassCodec(type);
+    }
+
+    private static Codec scalarCodec(Class<?> type) {
+        if (type == Object.class) return GENERIC;
+        if (type == JSONValue.class) return JSON_VALUE;
+        if (type == String.class || type == CharSequence.class) return STRING;
+        if (type == BigDecimal.class) return BIG_DECIMAL;
+        if (type == BigInteger.class) return BIG_INTEGER;
+        if (type == Number.class) return NUMBER;
+        for (Primitive p : Primitive.values()) {
+            if (type == p.boxed) return new BoxedCodec(p);
+        }
+        return null;
+    }
+
+    private static final Codec GENERIC = new Codec() {
+        @Override
+        Object decode(JSONCursor c) throws IOException {
+            switch (c.currentToken()) {
+                case OBJECT_START: {
+                    Map<String, Object> map = new HashMap<>();
+                    while (next(c) != Token.OBJECT_END) {
+                        String key = c.getString();
+                        next(c);
+                        map.put(key, decode(c));
+                    }
+                    return map;
+                }
+                case ARRAY_START: {
+                    List<Object> list = new ArrayList<>();
+                    while (next(c) != Token.ARRAY_END) list.add(decode(c));
+                    return list;
+                }
+                case STRING: return c.getString();
+                case NUMBER: return c.getNumber();
+                case TRUE: return Boolean.TRUE;
+                case FALSE: return Boolean.FALSE;
+                case NULL: return JSONNull.INSTANCE;
+                default: throw new JSONTypeError(Object.class, c.currentToken());
+            }
+        }
+    };
+
+    private static final Codec JSON_VALUE = new Codec() {
+        @Override
+        Object decode(JSONCursor c) throws IOException {
+            return JSONValue.wrap(GENERIC.decode(c));
+        }
+    };
+
+    private static final Codec STRING = new Codec() {
+        @Override
+        Object decode(JSONCursor c) throws IOException {
+            return (c.currentToken() == Token.NULL) ? null : c.getString();
+        }
+    };
+
+    private static final Codec BIG_DECIMAL = new Codec() {
+        @Override
+        Object decode(JSONCursor c) throws IOException {
+            return (c.currentToken() == Token.NULL) ? null : c.getBigDecimal();
+        }
+    };
+
+    private static final Codec BIG_INTEGER = new Codec() {
+        @Override
+        Object decode(JSONCursor c) throws IOException {
+            return (c.currentToken() == Token.NULL) ? null : c.getBigDecimal().toBigInteger();
+        }
+    };
+
+    private static final Codec NUMBER = new Codec() {
+        @Override
+        Object decode(JSONCursor c) throws IOException {
+            return (c.currentToken() == Token.NULL) ? null : c.getNumber();
+        }
+    };
+
+    /**
+     * The primitive types, each decoded either into a long or into a double, from which it is then converted by
+     * MethodHandles.explicitCastArguments.
+     */
+    private enum Primitive {
+        BOOLEAN(boolean.class, Boolean.class),
+        BYTE(byte.class, Byte.class),
+        SHORT(short.class, Short.class),
+        CHAR(char.class, Character.class),
+        INT(int.class, Integer.class),
+        LONG(long.class, Long.class),
+        FLOAT(float.class, Float.class),
+        DOUBLE(double.class, Double.class);
+
+        final Class<?> type;
+        final Class<?> boxed;
+
+        Primitive(Class<?> type, Class<?> boxed) {
+            this.type = type;
+            this.boxed = boxed;
+        }
+
+        static Primitive of(Class<?> type) {
+            for (Primitive p : values()) {
+                if (p.type == type) return p;
+            }
+            throw new IllegalArgumentException("Not a primitive type: " + type);
+        }
+
+        boolean isFloating() {
+            return this == FLOAT || this == DOUBLE;
+        }
+
+        long decodeLong(JSONCursor c) throws IOException {
+            switch (this) {
+                case BOOLEAN:
+                    return c.getBoolean() ? 1 : 0;
+                case CHAR: {
+                    CharSequence s = c.getCharSequence();
+                    if (s.length() != 1) throw new JSONTypeError(char.class, s);
+                    return s.charAt(0);
+                }
+                default:
+                    return c.getLong();
+            }
+        }
+
+        double decodeDouble(JSONCursor c) throws IOException {
+            return c.getDouble();
+        }
+
+        Object decodeBoxed(JSONCursor c) throws IOException {
+            switch (this) {
+                case BOOLEAN: return c.getBoolean();
+                case BYTE: return (byte) c.getInt();
+                case SHORT: return (short) c.getInt();
+                case CHAR: return (char) decodeLong(c);
+                case INT: return c.getInt();
+                case LONG: return c.getLong();
+                case FLOAT: return (float) c.getDouble();
+                default: return c.getDouble();
+            }
+        }
+    }
+
+    private static final class PrimitiveCodec extends Codec {
+        private final Primitive primitive;
+
+        PrimitiveCodec(Primitive primitive) {
+            this.primitive = primitive;
+        }
+
+        @Override
+        Object decode(JSONCursor c) throws IOException {
+            if (c.currentToken() == Token.NULL) throw new JSONTypeError(primitive.type, JSONNull.INSTANCE);
+            return primitive.decodeBoxed(c);
+        }
+    }
+
+    private static final class BoxedCodec extends Codec {
+        private final Primitive primitive;
+
+        BoxedCodec(Primitive primitive) {
+            this.primitive = primitive;
+        }
+
+        @Override
+        Object decode(JSONCursor c) throws IOException {
+            return (c.currentToken() == Token.NULL) ? null : primitive.decodeBoxed(c);
+        }
+    }
+
+    private static final class EnumCodec extends Codec {
+        private final Class<?> type;
+        private final Map<String, Object> constants = new HashMap<>();
+
+        EnumCodec(Class<?> type) {
+            this.type = type;
+            for (Object e : type.getEnumConstants()) constants.put(((Enum<?>) e).name(), e);
+        }
+
+        @Override
+        Object decode(JSONCursor c) throws IOException {
+            if (c.currentToken() == Token.NULL) return null;
+            String name = c.getString();
+            Object e = constants.get(name);
+            if (e == null) throw new JSONTypeError(type, name);
+            return e;
+        }
+    }
+
+    private static final class ListCodec extends Codec {
+        private final Codec elements;
+
+        ListCodec(Codec elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        Object decode(JSONCursor c) throws IOException {
+            Token t = c.currentToken();
+            if (t == Token.NULL) return null;
+            if (t != Token.ARRAY_START) throw new JSONTypeError(List.class, t);
+            List<Object> list = new ArrayList<>();
+            while (next(c) != Token.ARRAY_END) list.add(elements.decode(c));
+            return list;
+        }
+    }
+
+    private static final class MapCodec extends Codec {
+        private final Codec values;
+
+        MapCodec(Codec values) {
+            this.values = values;
+        }
+
+        @Override
+        Object decode(JSONCursor c) throws IOException {
+            Token t = c.currentToken();
+            if (t == Token.NULL) return null;
+            if (t != Token.OBJECT_START) throw new JSONTypeError(Map.class, t);
+            Map<String, Object> map = new HashMap<>();
+            while (next(c) != Token.OBJECT_END) {
+                String key = c.getString();
+                next(c);
+                map.put(key, values.decode(c));
+            }
+            return map;
+        }
+    }
+
+    /** Where an object member is decoded to: a primitive slot, or a reference decoded by a codec. */
+    private static final class Member {
+        final String name;
+        final Primitive primitive;
+        final Codec codec;
+        /** For records, the index into the array of longs, doubles or references holding this member. */
+        final int slot;
+        /** For classes, the field's setter, adapted to take an Object and a long, double or Object. */
+        final MethodHandle setter;
+
+        Member(String name, Type type, int slot, MethodHandle setter) {
+            this.name = name;
+            this.primitive = (type instanceof Class<?> && ((Class<?>) type).isPrimitive())
+                    ? Primitive.of((Class<?>) type)
+                    : null;
+            this.codec = (primitive == null) ? codecFor(type) : null;
+            this.slot = slot;
+            this.setter = setter;
+        }
+
+        /** The type that values of the given member type are decoded into: long, double or Object. */
+        static Class<?> carrier(Class<?> type) {
+            if (!type.isPrimitive()) return Object.class;
+            return Primitive.of(type).isFloating() ? double.class : long.class;
+        }
+
+        void checkNotNull(JSONCursor c) throws JSONTypeError {
+            if (c.currentToken() == Token.NULL) throw new JSONTypeError(primitive.type, JSONNull.INSTANCE);
+        }
+    }
+
+    /** Decodes JSON objects member by member into some intermediate state, which is finally converted to a result. */
+    private abstract static class ObjectCodec extends Codec {
+        final Class<?> type;
+        Member[] members;
+
+        ObjectCodec(Class<?> type) {
+            this.type = type;
+        }
+
+        abstract Object begin();
+
+        abstract void member(Object state, Member m, JSONCursor c) throws IOException;
+
+        abstract Object end(Object state);
+
+        /** Finds the member named by the given key, starting from the guess, since keys usually come in order. */
+        private int find(CharSequence key, int guess) {
+            Member[] ms = members;
+            int n = ms.length;
+            for (int i = 0; i < n; i++) {
+                int j = guess + i;
+                if (j >= n) j -= n;
+                if (ms[j].name.contentEquals(key)) return j;
+            }
+            return -1;
+        }
+
+        @Override
+        Object decode(JSONCursor c) throws IOException {
+            Token t = c.currentToken();
+            if (t == Token.NULL) return null;
+            if (t != Token.OBJECT_START) throw new JSONTypeError(type, t);
+            Object state = begin();
+            int guess = 0;
+            while (next(c) != Token.OBJECT_END) {
+                int i = find(c.getCharSequence(), guess);
+                if (i < 0) {
+                    c.skipValue();
+                    continue;
+                }
+                guess = i + 1;
+                next(c);
+                member(state, members[i], c);
+            }
+            return end(state);
+        }
+    }
+
+    private static MethodHandles.Lookup lookupIn(Class<?> type) {
+        try {
+            return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access " + type, e);
+        }
+    }
+
+    /**
+     * Decodes records, gathering their components in arrays of longs, doubles and references, and then passing
+     * them to the canonical constructor through a method handle that takes the three arrays.
+     */
+    private static final class RecordCodec extends ObjectCodec {
+        private final MethodHandle constructor;
+        private final int longCount;
+        private final int doubleCount;
+        private final int refCount;
+
+        private static final class Arguments {
+            final long[] longs;
+            final double[] doubles;
+            final Object[] refs;
+
+            Arguments(int longCount, int doubleCount, int refCount) {
+                longs = new long[longCount];
+                doubles = new double[doubleCount];
+                refs = new Object[refCount];
+            }
+        }
+
+        RecordCodec(Class<?> type) {
+            super(type);
+            RecordComponent[] components = type.getRecordComponents();
+            Class<?>[] parameterTypes = new Class<?>[components.length];
+            MethodHandle[] getters = new MethodHandle[components.length];
+            int[] order = new int[components.length];
+            int longs = 0, doubles = 0, refs = 0;
+            members = new Member[components.length];
+            for (int i = 0; i < components.length; i++) {
+                RecordComponent rc = components[i];
+                parameterTypes[i] = rc.getType();
+                Class<?> carrier = Member.carrier(rc.getType());
+                int slot;
+                if (carrier == long.class) {
+                    slot = longs++;
+                    order[i] = 0;
+                } else if (carrier == double.class) {
+                    slot = doubles++;
+                    order[i] = 1;
+                } else {
+                    slot = refs++;
+                    order[i] = 2;
+                }
+                members[i] = new Member(rc.getName(), rc.getGenericType(), slot, null);
+                Class<?> arrayType = carrier.arrayType();
+                MethodHandle getter = MethodHandles.insertArguments(MethodHandles.arrayElementGetter(arrayType), 1, slot);
+                getters[i] = MethodHandles.explicitCastArguments(getter, MethodType.methodType(rc.getType(), arrayType));
+            }
+            this.longCount = longs;
+            this.doubleCount = doubles;
+            this.refCount = refs;
+            try {
+                MethodHandle ctor = lookupIn(type).findConstructor(type, MethodType.methodType(void.class, parameterTypes));
+                ctor = MethodHandles.filterArguments(ctor, 0, getters);
+                ctor = ctor.asType(ctor.type().changeReturnType(Object.class));
+                this.constructor = MethodHandles.permuteArguments(ctor,
+                        MethodType.methodType(Object.class, long[].class, double[].class, Object[].class),
+                        order);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Cannot construct " + type, e);
+            }
+        }
+
+        @Override
+        Object begin() {
+            return new Arguments(longCount, doubleCount, refCount);
+        }
+
+        @Override
+        void member(Object state, Member m, JSONCursor c) throws IOException {
+            Arguments a = (Arguments) state;
+            if (m.primitive == null) {
+                a.refs[m.slot] = m.codec.decode(c);
+            } else {
+                m.checkNotNull(c);
+                if (m.primitive.isFloating()) {
+                    a.doubles[m.slot] = m.primitive.decodeDouble(c);
+                } else {
+                    a.longs[m.slot] = m.primitive.decodeLong(c);
+                }
+            }
+        }
+
+        @Override
+        Object end(Object state) {
+            Arguments a = (Arguments) state;
+            try {
+                return (Object) constructor.invokeExact(a.longs, a.doubles, a.refs);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+    }
+
+    /** Decodes instances of ordinary classes by calling their no-argument constructor and then setting fields. */
+    private static final class ClassCodec extends ObjectCodec {
+        private final MethodHandle constructor;
+
+        ClassCodec(Class<?> type) {
+            super(type);
+            List<Member> ms = new ArrayList<>();
+            try {
+                for (Class<?> k = type; k != null && k != Object.class; k = k.getSuperclass()) {
+                    MethodHandles.Lookup lookup = lookupIn(k);
+                    for (Field f : k.getDeclaredFields()) {
+                        int mods = f.getModifiers();
+                        if (Modifier.isStatic(mods) || Modifier.isFinal(mods) || Modifier.isTransient(mods)) continue;
+                        if (f.isSynthetic()) continue;
+                        MethodHandle setter = MethodHandles.explicitCastArguments(lookup.unreflectSetter(f),
+                                MethodType.methodType(void.class, Object.class, Member.carrier(f.getType())));
+                        ms.add(new Member(f.getName(), f.getGenericType(), 0, setter));
+                    }
+                }
+                MethodHandle ctor = lookupIn(type).findConstructor(type, MethodType.methodType(void.class));
+                this.constructor = ctor.asType(MethodType.methodType(Object.class));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Cannot construct " + type, e);
+            }
+            members = ms.toArray(new Member[0]);
+        }
+
+        @Override
+        Object begin() {
+            try {
+                return (Object) constructor.invokeExact();
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        void member(Object target, Member m, JSONCursor c) throws IOException {
+            try {
+                if (m.primitive == null) {
+                    m.setter.invokeExact(target, m.codec.decode(c));
+                } else {
+                    m.checkNotNull(c);
+                    if (m.primitive.isFloating()) {
+                        m.setter.invokeExact(target, m.primitive.decodeDouble(c));
+                    } else {
+                        m.setter.invokeExact(target, m.primitive.decodeLong(c));
+                    }
+                }
+            } catch (IOException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        Object end(Object target) {
+            return target;
+        }
+    }
+}
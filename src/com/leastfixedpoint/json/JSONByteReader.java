@@ -0,0 +1,601 @@
+package com.leastfixedpoint.json;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.LineNumberReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Parse UTF-8 encoded JSON text to Java values, without an intermediate {@link java.io.Reader}.
+ * <p>
+ * Values are represented exactly as described in the class comment for {@link JSONReader}, and
+ * {@link JSONReader#nextLexeme()} behaves identically, so instances of this class may be used with
+ * {@link JSONEventReader}. Only the contents of string literals (and the occasional non-ASCII whitespace character)
+ * are decoded from UTF-8; all other scanning happens directly on the bytes. Malformed UTF-8 inside strings is replaced
+ * with U+FFFD, as {@link java.io.InputStreamReader} would do.
+ * <p>
+ * Input may come from an {@link InputStream}, a slice of a byte array, or a {@link ByteBuffer}. Byte arrays and
+ * buffers (including direct buffers) are scanned in place without copying; the position of a given ByteBuffer is not
+ * altered. As with JSONReader, multiple adjacent JSON values may be read from a single stream, so long as the same
+ * JSONByteReader is used throughout, since input is read from an InputStream in large blocks.
+ * <p>
+ * A JSONByteReader may also be reset onto character input, with {@link #reset(Reader)} and friends, so that it can
+ * be reused anywhere a JSONReader is; the characters are then encoded to UTF-8 before being scanned.
+ */
+public class JSONByteReader extends JSONReader {
+    protected InputStream in;
+    /** Input window; bytes window[pos..limit) have been read but not yet consumed. */
+    protected ByteBuffer window;
+    /** Backing storage of the window when reading from an InputStream; null otherwise. */
+    protected byte[] bytes;
+
+    private char[] chars = new char[64];
+
+    /**
+     * Construct a reader that reads UTF-8 encoded JSON text from the given stream.
+     */
+    public JSONByteReader(InputStream in) {
+        this.in = in;
+        this.bytes = new byte[DEFAULT_BUFFER_SIZE];
+        this.window = ByteBuffer.wrap(this.bytes);
+    }
+
+    /**
+     * Construct a reader that reads UTF-8 encoded JSON text directly out of the given array.
+     * The array must not be modified while the reader is in use.
+     */
+    public JSONByteReader(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Construct a reader that reads UTF-8 encoded JSON text directly out of the given array slice.
+     * The array must not be modified while the reader is in use.
+     */
+    public JSONByteReader(byte[] bytes, int offset, int length) {
+        this(ByteBuffer.wrap(bytes), offset, offset + length);
+    }
+
+    /**
+     * Construct a reader that reads UTF-8 encoded JSON text directly out of the given buffer, from its position to
+     * its limit. The buffer's position is not altered, and its contents must not be modified while the reader is
+     * in use.
+     */
+    public JSONByteReader(ByteBuffer buffer) {
+        this(buffer, buffer.position(), buffer.limit());
+    }
+
+    protected JSONByteReader(ByteBuffer window, int pos, int limit) {
+        this.window = window;
+        this.pos = pos;
+        this.limit = limit;
+        this.lineScan = pos;
+        this.base = -pos;
+    }
+
+    /**
+     * Discards all input and internal state, and prepares to read UTF-8 encoded JSON text from the given stream, just
+     * as a freshly constructed JSONByteReader would. Settings are retained, as are internal buffers of moderate size.
+     */
+    public void reset(InputStream in) {
+        if (bytes == null || bytes.length > MAX_RETAINED_BUFFER_SIZE) bytes = new byte[DEFAULT_BUFFER_SIZE];
+        this.in = in;
+        this.reader = null;
+        this.window = ByteBuffer.wrap(bytes);
+        resetState(0, 0);
+    }
+
+    /**
+     * As {@link #reset(InputStream)}, but prepares to read directly out of the given array slice.
+     */
+    public void reset(byte[] bytes, int offset, int length) {
+        reset(ByteBuffer.wrap(bytes), offset, offset + length);
+    }
+
+    /**
+     * As {@link #reset(InputStream)}, but prepares to read directly out of the given buffer, from its position to
+     * its limit, without altering the buffer's position.
+     */
+    public void reset(ByteBuffer buffer) {
+        reset(buffer, buffer.position(), buffer.limit());
+    }
+
+    protected void reset(ByteBuffer window, int pos, int limit) {
+        if (bytes != null && bytes.length > MAX_RETAINED_BUFFER_SIZE) bytes = null;
+        this.in = null;
+        this.reader = null;
+        this.window = window;
+        resetState(pos, limit);
+    }
+
+    @Override
+    protected void resetState(int pos, int limit) {
+        super.resetState(pos, limit);
+        if (chars.length > MAX_RETAINED_BUFFER_SIZE) chars = new char[64];
+    }
+
+    /**
+     * Prepares to read JSON text from the given Reader, whose characters are encoded to UTF-8 as they are read. As
+     * with JSONReader, a LineNumberReader is read one character at a time, and line numbers continue from its own.
+     * Offsets and columns in syntax errors count bytes rather than characters, and unpaired surrogates are read as
+     * '?'.
+     */
+    @Override
+    public void reset(Reader r) {
+        boolean lineNumbered = r instanceof LineNumberReader;
+        reset(new EncodingInputStream(r, lineNumbered ? 1 : DEFAULT_BUFFER_SIZE));
+        this.reader = r;
+        if (lineNumbered) this.line = ((LineNumberReader) r).getLineNumber();
+    }
+
+    /**
+     * Prepares to read the given string, which is first encoded to UTF-8 in full.
+     * Offsets and columns in syntax errors count bytes rather than characters.
+     */
+    @Override
+    public void reset(String s) {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        reset(utf8, 0, utf8.length);
+    }
+
+    /**
+     * Prepares to read the given characters, which, unlike with JSONReader, are copied, being encoded to UTF-8.
+     * Offsets and columns in syntax errors count bytes rather than characters.
+     */
+    @Override
+    public void reset(char[] chars, int offset, int length) {
+        reset(new String(chars, offset, length));
+    }
+
+    /**
+     * Retrieve the underlying InputStream, or null if this reader was constructed over an in-memory buffer.
+     */
+    public InputStream getInputStream() {
+        return in;
+    }
+
+    /**
+     * Reads and returns a single JSON value from the given UTF-8 encoded bytes.
+     * Calls expectEOF() after reading, to ensure no trailing junk is present.
+     */
+    public static Object readFrom(byte[] bytes) throws IOException {
+        JSONByteReader r = new JSONByteReader(bytes);
+        Object result = r.read();
+        r.expectEOF();
+        return result;
+    }
+
+    /**
+     * Reads and returns a single JSONValue from the given UTF-8 encoded bytes.
+     * Calls expectEOF() after reading, to ensure no trailing junk is present.
+     */
+    public static JSONValue readValue(byte[] bytes) throws IOException {
+        return JSONValue.wrap(readFrom(bytes));
+    }
+
+    @Override
+    protected boolean fill() throws IOException {
+        if (eof || in == null) return false;
+        int keep = (mark >= 0) ? mark : pos;
+        if (keep > 0) {
+            discardPosition(keep);
+            int retained = limit - keep;
+            System.arraycopy(bytes, keep, bytes, 0, retained);
+            pos -= keep;
+            limit = retained;
+            if (mark >= 0) mark -= keep;
+        }
+        if (limit == bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            window = ByteBuffer.wrap(bytes);
+        }
+        int n;
+        do {
+            n = in.read(bytes, limit, bytes.length - limit);
+        } while (n == 0);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    @Override
+    protected void countLines(int to) {
+        if (line < 0 || to <= lineScan) return;
+        final ByteBuffer w = window;
+        int n = line;
+        boolean cr = pendingCR;
+        int last = -1;
+        for (int i = lineScan; i < to; i++) {
+            byte b = w.get(i);
+            if (b == '\n') {
+                if (!cr) n++;
+                cr = false;
+                last = i;
+            } else if (b == '\r') {
+                n++;
+                cr = true;
+                last = i;
+            } else {
+                cr = false;
+            }
+        }
+        line = n;
+        pendingCR = cr;
+        lineScan = to;
+        if (last >= 0) lineStart = base + last + 1;
+    }
+
+    @Override
+    protected int buffer() throws IOException {
+        if (pos == limit && !fill()) return EOF;
+        return window.get(pos) & 0xff;
+    }
+
+    @Override
+    protected char curr() throws IOException {
+        if (atEOF()) throw new EOFException();
+        byte b = window.get(pos);
+        return (b >= 0) ? (char) b : (char) peekCodePoint();
+    }
+
+    @Override
+    protected void skipWhiteSpace() throws IOException {
+        while (true) {
+            final ByteBuffer w = window;
+            final int lim = limit;
+            int p = pos;
+            byte b = 0;
+            while (p < lim && ((b = w.get(p)) == ' ' || b == '\n' || b == '\r' || b == '\t')) p++;
+            pos = p;
+            if (p == lim) {
+                if (!fill()) return;
+                continue;
+            }
+            if (b == '/') {
+                pos = p + 1;
+                if (!checkDrop('/')) syntaxError("Invalid comment");
+                skipLineComment();
+            } else if (b >= 0) {
+                if (!(b < ' ' && Character.isWhitespace(b))) return;
+                pos = p + 1;
+            } else {
+                if (!isWhiteSpace((char) peekCodePoint())) return;
+                pos = peekEnd;
+            }
+        }
+    }
+
+    private void skipLineComment() throws IOException {
+        while (true) {
+            final ByteBuffer w = window;
+            final int lim = limit;
+            int p = pos;
+            while (p < lim && w.get(p) != '\n') p++;
+            pos = p;
+            if (p < lim || !fill()) return;
+        }
+    }
+
+    @Override
+    protected Object readAtom(String atom, Object value) throws IOException {
+        for (int i = 0; i < atom.length(); i++) {
+            if (pos == limit && !fill()) throw new EOFException();
+            if (window.get(pos) != atom.charAt(i)) syntaxError("Invalid input parsing '" + atom + "'");
+            pos++;
+        }
+        return value;
+    }
+
+    @Override
+    protected char skipRawContainer() throws IOException {
+        int depth = 1;
+        refill:
+        while (true) {
+            final ByteBuffer w = window;
+            final int lim = limit;
+            int p = pos;
+            while (p < lim) {
+                byte c = w.get(p++);
+                if (c == '"' || c == '\'') {
+                    pos = p;
+                    skipRawString((char) c);
+                    continue refill;
+                } else if (c == '/') {
+                    pos = p;
+                    skipLineComment();
+                    continue refill;
+                } else if (c == '[' || c == '{') {
+                    depth++;
+                } else if ((c == ']' || c == '}') && --depth == 0) {
+                    pos = p;
+                    return (char) c;
+                }
+            }
+            pos = p;
+            if (!fill()) throw new EOFException();
+        }
+    }
+
+    @Override
+    protected void skipRawString(char sep) throws IOException {
+        boolean escape = false;
+        while (true) {
+            final ByteBuffer w = window;
+            final int lim = limit;
+            int p = pos;
+            if (escape) {
+                p++;
+                escape = false;
+            }
+            while (p < lim) {
+                byte c = w.get(p);
+                if (c == sep) {
+                    pos = p + 1;
+                    return;
+                }
+                if (c == '\\') {
+                    if (p + 1 == lim) {
+                        escape = true;
+                        p++;
+                        break;
+                    }
+                    p += 2;
+                } else {
+                    p++;
+                }
+            }
+            pos = p;
+            if (!fill()) throw new EOFException();
+        }
+    }
+
+    @Override
+    protected void skipRawAtom() throws IOException {
+        while (true) {
+            final ByteBuffer w = window;
+            final int lim = limit;
+            int p = pos;
+            while (p < lim && !isAtomDelimiter(w.get(p) & 0xff)) p++;
+            pos = p;
+            if (p < lim || !fill()) return;
+        }
+    }
+
+    @Override
+    protected int scanDigits() throws IOException {
+        int count = 0;
+        long m = numMantissa;
+        int significant = numSignificant;
+        while (true) {
+            final ByteBuffer w = window;
+            final int lim = limit;
+            final int start = pos;
+            int p = start;
+            int d;
+            while (p < lim && (d = w.get(p) - '0') >= 0 && d <= 9) {
+                if (significant < 18) {
+                    m = m * 10 + d;
+                    if (m != 0) significant++;
+                } else {
+                    numOverflow = true;
+                }
+                p++;
+            }
+            pos = p;
+            count += p - start;
+            if (p < lim || !fill()) break;
+        }
+        numMantissa = m;
+        numSignificant = significant;
+        return count;
+    }
+
+    @Override
+    protected String numberText() {
+        final int n = pos - mark;
+        final char[] out = ensureChars(n);
+        for (int i = 0; i < n; i++) out[i] = (char) window.get(mark + i);
+        return new String(out, 0, n);
+    }
+
+    @Override
+    protected Object key(char sep) throws IOException {
+        final ByteBuffer w = window;
+        final int lim = limit;
+        final int start = pos;
+        int h = 0;
+        for (int p = start; p < lim; p++) {
+            byte b = w.get(p);
+            if (b == sep) {
+                pos = p + 1;
+                return keyCache.intern(w, start, p - start, h);
+            }
+            if (b < 0 || b == '\\') break;
+            h = 31 * h + b;
+        }
+        return keyCache.intern((String) string(sep));
+    }
+
+    @Override
+    protected CharSequence stringChars(char sep) throws IOException {
+        int n = 0;
+        while (true) {
+            final ByteBuffer w = window;
+            final int lim = limit;
+            int p = pos;
+            final char[] out = ensureChars(n + 256);
+            final int end = p + Math.min(lim - p, out.length - n);
+            byte b = 0;
+            while (p < end && (b = w.get(p)) >= 0 && b != sep && b != '\\') {
+                out[n++] = (char) b;
+                p++;
+            }
+            pos = p;
+            if (p == end) {
+                if (p == lim && !fill()) throw new EOFException();
+                continue;
+            }
+            pos++;
+            if (b == sep) return slice.set(out, 0, n);
+            if (b < 0) {
+                int cp = decodeMultiByte(b);
+                ensureChars(n + 2);
+                n += Character.toChars(cp, chars, n);
+            } else {
+                ensureChars(n + 1);
+                chars[n++] = escape();
+            }
+        }
+    }
+
+    private char escape() throws IOException {
+        char c = curr();
+        drop();
+        switch (c) {
+            case '"': return '"';
+            case '\\': return '\\';
+            case '/': return '/';
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    c = curr();
+                    if (c >= '0' && c <= '9') value = (value << 4) + c - '0';
+                    else if (c >= 'a' && c <= 'f') value = (value << 4) + c - 'a' + 10;
+                    else if (c >= 'A' && c <= 'F') value = (value << 4) + c - 'A' + 10;
+                    drop();
+                }
+                return (char) value;
+            default:
+                syntaxError("Invalid string escape {" + c + "}");
+                return 0;
+        }
+    }
+
+    /**
+     * Decodes the remainder of a multi-byte UTF-8 sequence whose first byte, b0, has just been consumed.
+     * Returns U+FFFD for malformed input, leaving the offending byte unconsumed.
+     */
+    protected int decodeMultiByte(byte b0) throws IOException {
+        int count;
+        int cp;
+        int min;
+        if ((b0 & 0xe0) == 0xc0) {
+            count = 1; cp = b0 & 0x1f; min = 0x80;
+        } else if ((b0 & 0xf0) == 0xe0) {
+            count = 2; cp = b0 & 0x0f; min = 0x800;
+        } else if ((b0 & 0xf8) == 0xf0) {
+            count = 3; cp = b0 & 0x07; min = 0x10000;
+        } else {
+            return 0xfffd;
+        }
+        for (int i = 0; i < count; i++) {
+            if (pos == limit && !fill()) throw new EOFException();
+            byte b = window.get(pos);
+            if ((b & 0xc0) != 0x80) return 0xfffd;
+            pos++;
+            cp = (cp << 6) | (b & 0x3f);
+        }
+        if (cp < min || cp > Character.MAX_CODE_POINT || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE)) {
+            return 0xfffd;
+        }
+        return cp;
+    }
+
+    private int peekEnd;
+
+    /**
+     * Decodes the (possibly multi-byte) character at pos without consuming it. Afterwards, peekEnd is the position
+     * just after it.
+     */
+    private int peekCodePoint() throws IOException {
+        mark = pos;
+        try {
+            byte b0 = window.get(pos++);
+            int cp = (b0 >= 0) ? b0 : decodeMultiByte(b0);
+            peekEnd = pos;
+            return cp;
+        } finally {
+            pos = mark;
+            mark = -1;
+        }
+    }
+
+    private char[] ensureChars(int capacity) {
+        if (capacity > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(capacity, chars.length * 2));
+        }
+        return chars;
+    }
+
+    /** The characters read from a Reader, encoded as UTF-8; see {@link #reset(Reader)}. */
+    private static final class EncodingInputStream extends InputStream {
+        private final Reader reader;
+        private final int chunkSize;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        /** Characters read but not yet encoded: at most a high surrogate awaiting its partner. */
+        private final CharBuffer chars;
+        /** Encoded bytes not yet returned. */
+        private final ByteBuffer encoded;
+        private boolean eof = false;
+
+        EncodingInputStream(Reader reader, int chunkSize) {
+            this.reader = reader;
+            this.chunkSize = chunkSize;
+            this.chars = CharBuffer.allocate(chunkSize + 1);
+            this.chars.flip();
+            this.encoded = ByteBuffer.allocate(4 * (chunkSize + 1));
+            this.encoded.flip();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (!encoded.hasRemaining()) {
+                if (eof) return -1;
+                chars.compact();
+                int n = reader.read(chars.array(), chars.position(), Math.min(chunkSize, chars.remaining()));
+                if (n < 0) {
+                    eof = true;
+                } else {
+                    chars.position(chars.position() + n);
+                }
+                chars.flip();
+                encoded.clear();
+                encoder.encode(chars, encoded, eof);
+                if (eof) encoder.flush(encoded);
+                encoded.flip();
+            }
+            int n = Math.min(len, encoded.remaining());
+            encoded.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package com.leastfixedpoint.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes Java objects as UTF-8 encoded JSON text, without an intermediate {@link java.io.Writer}.
+ * <p>
+ * Values are represented exactly as described in the class comment for {@link JSONWriter}, and the same options
+ * (indentation and key sorting) apply. Output goes to an {@link OutputStream}, to a {@link ByteBuffer} (including
+ * direct buffers), or to a growable byte array held by the writer itself, which is retained across calls to
+ * {@link #reset()} and so may be reused for many values. For the sake of code expecting a JSONWriter, output may
+ * also be directed to a Writer, with {@link #reset(Writer)}. ASCII text is copied straight into the output buffer; only
+ * other characters go through the UTF-8 encoder. Unpaired surrogates are encoded as '?', as
+ * {@link java.io.OutputStreamWriter} would do.
+ * <p>
+ * As with JSONWriter, output is passed on to the OutputStream or ByteBuffer by the time each top-level call to
+ * {@link #write(Object)} returns. If a ByteBuffer runs out of space, {@link java.nio.BufferOverflowException} is
+ * thrown, leaving the ByteBuffer untouched; the output not yet passed on remains available from
+ * {@link #getBuffer()}.
+ */
+public class JSONByteWriter extends JSONWriter {
+    protected OutputStream out;
+    protected ByteBuffer target;
+    protected byte[] bytes;
+    protected int size = 0;
+    /** A high surrogate emitted without (yet) its low surrogate, or 0. */
+    protected char pendingHighSurrogate = 0;
+
+    private Writer rawWriter;
+
+    /**
+     * Construct a JSONByteWriter that will output on the given OutputStream, by default without pretty indentation.
+     */
+    public JSONByteWriter(OutputStream out) {
+        this(out, false);
+    }
+
+    /**
+     * Construct a JSONByteWriter that will output on the given OutputStream, with optional pretty indentation.
+     */
+    public JSONByteWriter(OutputStream out, boolean indenting) {
+        super(indenting);
+        this.out = out;
+        this.bytes = new byte[DEFAULT_BUFFER_SIZE];
+    }
+
+    /**
+     * Construct a JSONByteWriter that will output into the given ByteBuffer, starting at its position, which is
+     * advanced as output is written. By default, output is without pretty indentation.
+     */
+    public JSONByteWriter(ByteBuffer target) {
+        this(target, false);
+    }
+
+    /**
+     * Construct a JSONByteWriter that will output into the given ByteBuffer, with optional pretty indentation.
+     */
+    public JSONByteWriter(ByteBuffer target, boolean indenting) {
+        super(indenting);
+        this.target = target;
+        this.bytes = new byte[DEFAULT_BUFFER_SIZE];
+    }
+
+    /**
+     * Construct a JSONByteWriter that will accumulate output in memory; see {@link #toByteArray()}. By default,
+     * output is without pretty indentation.
+     */
+    public JSONByteWriter() {
+        this(false);
+    }
+
+    /**
+     * Construct a JSONByteWriter that will accumulate output in memory, with optional pretty indentation.
+     */
+    public JSONByteWriter(boolean indenting) {
+        super(indenting);
+        this.bytes = new byte[256];
+    }
+
+    /**
+     * Serializes value as UTF-8 encoded JSON, outputting to the given stream, with optional pretty indentation.
+     */
+    public static void writeTo(OutputStream out, Object value, boolean indenting) throws IOException {
+        new JSONByteWriter(out, indenting).write(value);
+    }
+
+    /**
+     * Serializes value as UTF-8 encoded JSON into the given ByteBuffer, with optional pretty indentation.
+     */
+    public static void writeTo(ByteBuffer target, Object value, boolean indenting) throws IOException {
+        new JSONByteWriter(target, indenting).write(value);
+    }
+
+    /**
+     * Returns UTF-8 encoded JSON text corresponding to value, without pretty indentation.
+     */
+    public static byte[] writeToBytes(Object value) throws JSONSerializationError {
+        return writeToBytes(value, false);
+    }
+
+    /**
+     * Returns UTF-8 encoded JSON text corresponding to value, with optional pretty indentation.
+     */
+    public static byte[] writeToBytes(Object value, boolean indenting) throws JSONSerializationError {
+        JSONByteWriter w = new JSONByteWriter(indenting);
+        try {
+            w.write(value);
+        } catch (JSONSerializationError jse) {
+            throw jse;
+        } catch (IOException ioe) {
+            throw new RuntimeException("IOException while writing to byte buffer", ioe);
+        }
+        return w.toByteArray();
+    }
+
+    /**
+     * Discards any partial output state, and directs future output to the given Writer, so that a JSONByteWriter can
+     * be reused wherever a JSONWriter is. Output is still assembled as UTF-8, and is decoded again as it is passed on
+     * to the Writer; unpaired surrogates are therefore written as '?'.
+     */
+    @Override
+    public void reset(Writer writer) {
+        reset(null, null, writer);
+    }
+
+    /**
+     * Discards any partial output state, and directs future output to the given OutputStream. Settings such as the
+     * indentation mode and key sorting are retained.
+     */
+    public void reset(OutputStream out) {
+        reset(out, null, null);
+    }
+
+    /**
+     * Discards any partial output state, and directs future output into the given ByteBuffer.
+     */
+    public void reset(ByteBuffer target) {
+        reset(null, target, null);
+    }
+
+    /**
+     * Discards any output accumulated so far, and directs future output into this writer's own byte array, which
+     * is reused.
+     */
+    public void reset() {
+        reset(null, null, null);
+    }
+
+    private void reset(OutputStream out, ByteBuffer target, Writer writer) {
+        this.out = out;
+        this.target = target;
+        this.writer = writer;
+        this.indentLevel = 0;
+        this.writeDepth = 0;
+        this.pendingTop = 0;
+        this.size = 0;
+        this.pendingHighSurrogate = 0;
+        if (bytes.length < DEFAULT_BUFFER_SIZE && !inMemory()) bytes = new byte[DEFAULT_BUFFER_SIZE];
+    }
+
+    /** True if output is accumulated in {@link #getBuffer()} rather than passed on. */
+    private boolean inMemory() {
+        return out == null && target == null && writer == null;
+    }
+
+    /**
+     * Retrieve a Writer through which a {@link JSONSerializable} may emit raw text. This is the Writer given to
+     * {@link #reset(Writer)}, if any, and otherwise one whose characters are encoded into this writer's own output,
+     * in their proper place among the surrounding JSON.
+     */
+    @Override
+    public Writer getWriter() {
+        if (writer != null) return super.getWriter();
+        if (rawWriter == null) rawWriter = new RawWriter();
+        return rawWriter;
+    }
+
+    /**
+     * Retrieve the underlying OutputStream, or null if this writer is not writing to a stream.
+     */
+    public OutputStream getOutputStream() {
+        return out;
+    }
+
+    /**
+     * Retrieve the underlying ByteBuffer, or null if this writer is not writing to a ByteBuffer.
+     */
+    public ByteBuffer getByteBuffer() {
+        return target;
+    }
+
+    /**
+     * The number of bytes accumulated and not yet passed on, which for a writer not writing to a stream, ByteBuffer
+     * or Writer is all of its output; see {@link #getBuffer()}.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The array holding the output accumulated and not yet passed on, which is valid up to {@link #size()}. The
+     * array is reused after {@link #reset()}.
+     */
+    public byte[] getBuffer() {
+        return bytes;
+    }
+
+    /**
+     * A copy of the output accumulated by a writer not writing to a stream, ByteBuffer or Writer.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    /**
+     * Passes any buffered output to the underlying OutputStream, ByteBuffer or Writer, and then flushes the stream
+     * or Writer.
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        if (out != null) out.flush();
+        if (writer != null) writer.flush();
+    }
+
+    /**
+     * Passes any buffered output on. Output is only ever buffered up to a character boundary, so it can be decoded
+     * piecemeal for a Writer.
+     */
+    @Override
+    protected void flushBuffer() throws IOException {
+        int n = size;
+        if (n > 0 && !inMemory()) {
+            if (out != null) {
+                out.write(bytes, 0, n);
+            } else if (target != null) {
+                target.put(bytes, 0, n);
+            } else {
+                writer.write(new String(bytes, 0, n, StandardCharsets.UTF_8));
+            }
+            // Only now: if the target threw, e.g. a full ByteBuffer, the output is still here to be retried.
+            size = 0;
+        }
+    }
+
+    /** Makes room for at least n more bytes, by passing on or growing the buffer. */
+    private void makeRoom(int n) throws IOException {
+        flushBuffer();
+        if (bytes.length - size < n) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + n));
+    }
+
+    @Override
+    protected void emit(String s) throws IOException {
+        emit(s, null, 0, s.length());
+    }
+
+    @Override
+    protected void emit(CharSequence s, int start, int end) throws IOException {
+        emit(s, null, start, end);
+    }
+
+    @Override
+    protected void emit(char[] cs, int offset, int length) throws IOException {
+        emit(null, cs, offset, offset + length);
+    }
+
+    /**
+     * Emits the characters from start to end of either s or, if s is null, cs. ASCII is copied straight into the
+     * buffer, while there is room; everything else goes through {@link #encode(char)}.
+     */
+    private void emit(CharSequence s, char[] cs, int start, int end) throws IOException {
+        byte[] b = bytes;
+        int n = size;
+        char high = pendingHighSurrogate;
+        for (int i = start; i < end; i++) {
+            char c = (s == null) ? cs[i] : s.charAt(i);
+            if (c < 0x80 && n < b.length && high == 0) {
+                b[n++] = (byte) c;
+            } else {
+                size = n;
+                encode(c);
+                b = bytes;
+                n = size;
+                high = pendingHighSurrogate;
+            }
+        }
+        size = n;
+    }
+
+    @Override
+    protected void emit(char c) throws IOException {
+        if (c < 0x80 && size < bytes.length && pendingHighSurrogate == 0) {
+            bytes[size++] = (byte) c;
+        } else {
+            encode(c);
+        }
+    }
+
+    /** Encodes any character, taking care of surrogate pairs and of making room in the buffer. */
+    private void encode(char c) throws IOException {
+        if (bytes.length - size < 4) makeRoom(4);
+        byte[] b = bytes;
+        char high = pendingHighSurrogate;
+        if (high != 0) {
+            pendingHighSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int cp = Character.toCodePoint(high, c);
+                b[size++] = (byte) (0xf0 | (cp >> 18));
+                b[size++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                b[size++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                b[size++] = (byte) (0x80 | (cp & 0x3f));
+                return;
+            }
+            b[size++] = '?';
+            if (bytes.length - size < 3) makeRoom(3);
+            b = bytes;
+        }
+        if (c < 0x80) {
+            b[size++] = (byte) c;
+        } else if (c < 0x800) {
+            b[size++] = (byte) (0xc0 | (c >> 6));
+            b[size++] = (byte) (0x80 | (c & 0x3f));
+        } else if (Character.isHighSurrogate(c)) {
+            pendingHighSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            b[size++] = '?';
+        } else {
+            b[size++] = (byte) (0xe0 | (c >> 12));
+            b[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            b[size++] = (byte) (0x80 | (c & 0x3f));
+        }
+    }
+
+    /** Encodes the characters written to it into the enclosing writer's output; see {@link #getWriter()}. */
+    private final class RawWriter extends Writer {
+        @Override
+        public void write(int c) throws IOException {
+            emit((char) c);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            emit(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            emit(str, off, off + len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            JSONByteWriter.this.flush();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.leastfixedpoint.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Compact, read-only representation of a JSON object, produced by {@link JSONReader} when
+ * {@link JSONReader#setCompactObjects(boolean)} or {@link JSONReader#setShapeSharing(boolean)} is enabled. The keys,
+ * in the order in which they appeared in the input, are held in a {@link JSONShape}, and the values in a parallel
+ * array, rather than in per-entry nodes as in a HashMap. Small maps are searched linearly; larger ones use an
+ * open-addressed index kept by the shape. Maps with the same keys in the same order may share a single shape.
+ * <p>
+ * All mutating operations throw UnsupportedOperationException. Members may be accessed by position with
+ * {@link #keyAt(int)} and {@link #valueAt(int)}, which {@link JSONWriter} uses to avoid allocating Map.Entry objects.
+ */
+public final class JSONCompactMap extends AbstractMap<String, Object> {
+    private final JSONShape shape;
+    private final Object[] values;
+
+    /**
+     * Builds a map with its own shape from keys and values alternating in members[from] to members[to - 1]. Later
+     * occurrences of a repeated key replace earlier ones.
+     */
+    JSONCompactMap(Object[] members, int from, int to) {
+        this.shape = new JSONShape(members, from, to, JSONShape.sequenceHash(members, from, to));
+        this.values = new Object[shape.size()];
+        if (shape.size() == (to - from) >> 1) {
+            for (int i = 0, j = from + 1; j < to; i++, j += 2) values[i] = members[j];
+        } else {
+            for (int j = from; j < to; j += 2) values[shape.indexOf(members[j])] = members[j + 1];
+        }
+    }
+
+    /** Builds a map with the given shape, taking ownership of the given array of values. */
+    JSONCompactMap(JSONShape shape, Object[] values) {
+        this.shape = shape;
+        this.values = values;
+    }
+
+    /** The shape of this map, which may be shared with other maps. */
+    public JSONShape shape() {
+        return shape;
+    }
+
+    /** Returns the position of the given key in this map, or -1 if it is absent. */
+    public int indexOf(Object key) {
+        return shape.indexOf(key);
+    }
+
+    /** The key of the index'th entry, in input order. */
+    public String keyAt(int index) {
+        return shape.keyAt(index);
+    }
+
+    /** The value of the index'th entry, in input order. */
+    public Object valueAt(int index) {
+        return values[index];
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int i = shape.indexOf(key);
+        return (i < 0) ? null : values[i];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return shape.indexOf(key) >= 0;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<String>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < values.length;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (next >= values.length) throw new NoSuchElementException();
+                        return shape.keyAt(next++);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return values.length;
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return containsKey(key);
+            }
+        };
+    }
+
+    @Override
+    public Collection<Object> values() {
+        return Collections.unmodifiableList(Arrays.asList(values));
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<Entry<String, Object>>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < values.length;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (next >= values.length) throw new NoSuchElementException();
+                        int i = next++;
+                        return new SimpleImmutableEntry<>(shape.keyAt(i), values[i]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return values.length;
+            }
+        };
+    }
+}
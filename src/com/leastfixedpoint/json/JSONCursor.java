@@ -0,0 +1,249 @@
+package com.leastfixedpoint.json;
+
+import com.leastfixedpoint.json.JSONReader.Lexeme;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Cursor-style pull parser. Like {@link JSONEventReader}, whose state machine it shares, it walks the input one
+ * token at a time; but rather than returning each token as an object, {@link #nextToken()} returns its
+ * {@link Token type}, and the token's value is then available from accessors such as {@link #getLong()},
+ * {@link #getDouble()} and {@link #getCharSequence()}. Strings and numbers are left in the underlying reader's
+ * input window until asked for, so a consumer using only the primitive accessors and
+ * {@link #getCharSequence()} allocates nothing per token.
+ * <p>
+ * Values are only available until the next call to any method of the cursor (including
+ * {@link JSONEventReader#skipValue()} and friends, which may also be used with a cursor), so anything needed for
+ * longer should be copied out, e.g. with {@link #getString()}.
+ */
+public class JSONCursor extends JSONEventReader {
+    /** The types of token returned by {@link #nextToken()}. */
+    public enum Token {
+        OBJECT_START,
+        OBJECT_END,
+        ARRAY_START,
+        ARRAY_END,
+        /** An object key; its text is available from {@link #getString()} and {@link #getCharSequence()}. */
+        KEY,
+        STRING,
+        NUMBER,
+        TRUE,
+        FALSE,
+        NULL
+    }
+
+    /** Stands in for a number when driving the state machine. */
+    private static final Object NUMBER = new Object();
+
+    protected Token token;
+    protected CharSequence text;
+
+    public JSONCursor(JSONReader jsonReader) {
+        super(jsonReader);
+    }
+
+    /**
+     * Advances to the next token, returning its type, or null at the end of the input. Syntax errors are reported
+     * exactly as {@link JSONEventReader#next()} would report them.
+     */
+    public Token nextToken() throws IOException {
+        final JSONReader r = jsonReader;
+        endToken();
+        while (true) {
+            r.skipWhiteSpace();
+            if (r.atEOF()) {
+                token = null;
+                return null;
+            }
+            char c = r.curr();
+            Object lexeme;
+            Token t;
+            switch (c) {
+                case '"': // fall through
+                case '\'':
+                    r.drop();
+                    text = r.stringChars(c);
+                    lexeme = "";
+                    t = atKey() ? Token.KEY : Token.STRING;
+                    break;
+                case '[': r.drop(); lexeme = Lexeme.ARRAY_START; t = Token.ARRAY_START; break;
+                case ']': r.drop(); lexeme = Lexeme.ARRAY_END; t = Token.ARRAY_END; break;
+                case '{': r.drop(); lexeme = Lexeme.OBJECT_START; t = Token.OBJECT_START; break;
+                case '}': r.drop(); lexeme = Lexeme.OBJECT_END; t = Token.OBJECT_END; break;
+                case ',': r.drop(); lexeme = Lexeme.COMMA; t = null; break;
+                case ':': r.drop(); lexeme = Lexeme.COLON; t = null; break;
+                case 't': lexeme = r.readAtom("true", Boolean.TRUE); t = Token.TRUE; break;
+                case 'f': lexeme = r.readAtom("false", Boolean.FALSE); t = Token.FALSE; break;
+                case 'n': lexeme = r.readAtom("null", JSONNull.INSTANCE); t = Token.NULL; break;
+                default:
+                    if (!((c >= '0' && c <= '9') || c == '-')) r.syntaxError("Invalid character: {" + c + "}");
+                    // The mark keeps the number's text in the window until the next token is read.
+                    r.mark = r.pos;
+                    r.scanNumber();
+                    lexeme = NUMBER;
+                    t = Token.NUMBER;
+                    break;
+            }
+            if (accept(lexeme) != null) {
+                token = t;
+                return t;
+            }
+        }
+    }
+
+    /**
+     * Ends the current token, letting go of its text. In particular, a number's text is kept in the reader's window
+     * until this is called, so everything that moves on through the input must call it first.
+     */
+    protected void endToken() {
+        jsonReader.mark = -1;
+        text = null;
+        token = null;
+    }
+
+    /** Ends the current token, as {@link #nextToken()} does, and then proceeds as {@link JSONEventReader#next()}. */
+    @Override
+    public Object next() throws IOException {
+        endToken();
+        return super.next();
+    }
+
+    /** Ends the current token, and then proceeds as {@link JSONEventReader#nextValue()}. */
+    @Override
+    public Object nextValue() throws IOException {
+        endToken();
+        return super.nextValue();
+    }
+
+    /** Ends the current token, and then proceeds as {@link JSONEventReader#skipValue()}. */
+    @Override
+    public boolean skipValue() throws IOException {
+        endToken();
+        return super.skipValue();
+    }
+
+    /** Ends the current token, and then proceeds as {@link JSONEventReader#skipChildren()}. */
+    @Override
+    public void skipChildren() throws IOException {
+        endToken();
+        super.skipChildren();
+    }
+
+    /**
+     * The type of the current token, or null before the first token, at the end of the input, and after the cursor
+     * has been moved on other than by {@link #nextToken()}.
+     */
+    public Token currentToken() {
+        return token;
+    }
+
+    /**
+     * The number of arrays and objects enclosing the current position. An OBJECT_START or ARRAY_START token
+     * increments the depth; the matching OBJECT_END or ARRAY_END decrements it again.
+     */
+    public int currentDepth() {
+        return stateStack.size();
+    }
+
+    /**
+     * The text of the current KEY or STRING token, as a CharSequence that is only valid until the cursor is next
+     * used. Usually a view onto the reader's buffers rather than a copy.
+     * @throws JSONTypeError if the current token is not a KEY or STRING.
+     */
+    public CharSequence getCharSequence() throws JSONTypeError {
+        if (text == null) throw new JSONTypeError(String.class, token);
+        return text;
+    }
+
+    /**
+     * The text of the current KEY or STRING token, as a String. Keys are canonicalized using the reader's
+     * {@link JSONKeyCache}, if it has one.
+     * @throws JSONTypeError if the current token is not a KEY or STRING.
+     */
+    public String getString() throws JSONTypeError {
+        String s = getCharSequence().toString();
+        JSONKeyCache cache = jsonReader.keyCache;
+        return (token == Token.KEY && cache != null) ? cache.intern(s) : s;
+    }
+
+    /**
+     * The value of the current TRUE or FALSE token.
+     * @throws JSONTypeError if the current token is not a boolean.
+     */
+    public boolean getBoolean() throws JSONTypeError {
+        if (token == Token.TRUE) return true;
+        if (token == Token.FALSE) return false;
+        throw new JSONTypeError(Boolean.class, token);
+    }
+
+    /**
+     * The value of the current NUMBER token as a long, truncated as {@link Number#longValue()} would if the number
+     * is not an integer or is out of range.
+     * @throws JSONTypeError if the current token is not a number.
+     */
+    public long getLong() throws IOException {
+        checkNumber();
+        final JSONReader r = jsonReader;
+        if (r.numIntegral && !r.numOverflow) return r.numNegative ? -r.numMantissa : r.numMantissa;
+        return getBigDecimal().longValue();
+    }
+
+    /**
+     * The value of the current NUMBER token as an int, truncated as {@link Number#intValue()} would.
+     * @throws JSONTypeError if the current token is not a number.
+     */
+    public int getInt() throws IOException {
+        checkNumber();
+        final JSONReader r = jsonReader;
+        if (r.numIntegral && !r.numOverflow) return (int) (r.numNegative ? -r.numMantissa : r.numMantissa);
+        return getBigDecimal().intValue();
+    }
+
+    /**
+     * The value of the current NUMBER token as the nearest double.
+     * @throws JSONTypeError if the current token is not a number.
+     */
+    public double getDouble() throws IOException {
+        checkNumber();
+        final JSONReader r = jsonReader;
+        if (!r.numOverflow) {
+            double d = JSONNumber.fastDouble(r.numNegative, r.numMantissa, r.numFraction - r.numExponent);
+            if (!Double.isNaN(d)) return d;
+        }
+        return Double.parseDouble(r.numberText());
+    }
+
+    /**
+     * The exact value of the current NUMBER token.
+     * @throws JSONTypeError if the current token is not a number.
+     */
+    public BigDecimal getBigDecimal() throws IOException {
+        checkNumber();
+        final JSONReader r = jsonReader;
+        long scale = r.numFraction - r.numExponent;
+        if (!r.numOverflow && scale == (int) scale) {
+            return BigDecimal.valueOf(r.numNegative ? -r.numMantissa : r.numMantissa, (int) scale);
+        }
+        try {
+            return new BigDecimal(r.numberText());
+        } catch (NumberFormatException nfe) {
+            r.syntaxError("Invalid number");
+            return null;
+        }
+    }
+
+    /**
+     * The value of the current NUMBER token, represented according to the reader's
+     * {@link JSONReader.NumberPolicy}, just as {@link JSONEventReader#next()} would return it.
+     * @throws JSONTypeError if the current token is not a number.
+     */
+    public Object getNumber() throws IOException {
+        checkNumber();
+        return jsonReader.numberValue();
+    }
+
+    protected void checkNumber() throws JSONTypeError {
+        if (token != Token.NUMBER) throw new JSONTypeError(Number.class, token);
+    }
+}
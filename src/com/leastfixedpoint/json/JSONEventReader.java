@@ -1,11 +1,7 @@
 package com.leastfixedpoint.json;
 
-import com.leastfixedpoint.json.JSONReader.Lexeme;
-
 import java.io.EOFException;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * SAX-style event-emitting JSON parser. Only needed in advanced situations. Usually, {@link JSONReader} will
@@ -24,15 +20,9 @@ import java.util.List;
  *     complex token sequences) until the end of the array, signalled by {@link JSONReader.Lexeme#ARRAY_END}.</li>
  * </ul>
  */
-public class JSONEventReader {
-    protected JSONReader jsonReader;
-    protected List<State> stateStack;
-    protected State state;
-
+public class JSONEventReader extends JSONEventStateMachine {
     public JSONEventReader(JSONReader jsonReader) {
-        this.jsonReader = jsonReader;
-        this.stateStack = new ArrayList<>();
-        this.state = State.GENERAL;
+        super(jsonReader);
     }
 
     /**
@@ -47,107 +37,112 @@ public class JSONEventReader {
             } catch (EOFException e) {
                 return null;
             }
-            switch (state) {
-                case GENERAL:
-                    maybeEnterNested(token);
-                    return token;
-
-                case FIRST_MAP_KEY:
-                    if (token == Lexeme.OBJECT_END) {
-                        pop();
-                        return token;
-                    }
-                    /* FALL THROUGH */
-                case SUBSEQUENT_MAP_KEY:
-                    if (!(token instanceof String)) jsonReader.expectedMapKey();
-                    gotoState(State.MAP_COLON);
-                    return token;
-
-                case MAP_COLON:
-                    if (token != Lexeme.COLON) jsonReader.expectedMapColon();
-                    gotoState(State.MAP_VALUE);
-                    continue;
-
-                case MAP_VALUE:
-                    gotoState(State.MAP_COMMA_OR_END);
-                    maybeEnterNested(token);
-                    return token;
-
-                case MAP_COMMA_OR_END:
-                    if (token == Lexeme.OBJECT_END) {
-                        pop();
-                        return token;
-                    }
-                    if (token != Lexeme.COMMA) jsonReader.expectedMapComma();
-                    gotoState(State.SUBSEQUENT_MAP_KEY);
-                    continue;
-
-                case FIRST_ARRAY_VALUE:
-                    if (token == Lexeme.ARRAY_END) {
-                        pop();
-                        return token;
-                    }
-                    /* FALL THROUGH */
-                case SUBSEQUENT_ARRAY_VALUE:
-                    gotoState(State.ARRAY_COMMA_OR_END);
-                    maybeEnterNested(token);
-                    return token;
-
-                case ARRAY_COMMA_OR_END:
-                    if (token == Lexeme.ARRAY_END) {
-                        pop();
-                        return token;
-                    }
-                    if (token != Lexeme.COMMA) jsonReader.expectedArrayComma();
-                    gotoState(State.SUBSEQUENT_ARRAY_VALUE);
-                    continue;
-            }
+            token = accept(token);
+            if (token != null) return token;
         }
     }
 
-    /** Returns true iff the parser is not mid-way through some object; that is, we are at a boundary between JSON values. */
-    public boolean atBoundary() {
-        return stateStack.size() == 0;
+    /**
+     * Reads the next value in full, as {@link JSONReader#read()} would, advancing past it as if next() had been
+     * called until the value (or, for an array or object, its closing bracket) had been returned. Object keys count
+     * as values here, so reading at a key position yields just the key.
+     * <p>
+     * Returns null, consuming nothing, if there is no value to read: at the end of the input, or just before the
+     * closing bracket of the enclosing array or object.
+     */
+    public Object nextValue() throws IOException {
+        int c = beforeValue();
+        if (c == -1) return null;
+        if (atKey() && c != '"' && c != '\'') {
+            // Not a key: let the state machine report the error.
+            return accept(jsonReader.nextLexeme());
+        }
+        return accept(jsonReader.read());
     }
 
-    protected void maybeEnterNested(Object token) throws JSONSyntaxError {
-        if (token instanceof Lexeme) {
-            switch ((Lexeme) token) {
-                case OBJECT_START:
-                    pushAndGoto(State.FIRST_MAP_KEY);
-                    break;
-                case ARRAY_START:
-                    pushAndGoto(State.FIRST_ARRAY_VALUE);
-                    break;
-                default:
-                    jsonReader.unexpectedLexeme((Lexeme) token);
-                    break;
+    /**
+     * Discards the next value without constructing it, as if next() had been called until the value (or, for an
+     * array or object, its closing bracket) had been returned. Object keys count as values here, so skipping at
+     * a key position discards just the key. Arrays and objects are skipped by tracking only bracket nesting and
+     * string and escape state, allocating nothing; their contents are not otherwise validated.
+     * <p>
+     * Returns false, consuming nothing, if there is no value to skip: at the end of the input, or just before the
+     * closing bracket of the enclosing array or object.
+     */
+    public boolean skipValue() throws IOException {
+        int c = beforeValue();
+        if (c == -1) return false;
+        if (c == '"' || c == '\'') {
+            jsonReader.drop();
+            jsonReader.skipRawString((char) c);
+        } else if (atKey() || c == ',' || c == ':' || c == ']' || c == '}') {
+            // Not the start of a value: let the state machine report the error.
+            accept(jsonReader.nextLexeme());
+            return true;
+        } else if (c == '[' || c == '{') {
+            jsonReader.drop();
+            char close = jsonReader.skipRawContainer();
+            if (close != ((c == '{') ? '}' : ']')) {
+                jsonReader.syntaxError("Mismatched closing bracket '" + close + "'");
             }
+        } else {
+            jsonReader.skipRawAtom();
         }
+        accept("");
+        return true;
     }
 
-    protected void gotoState(State newState) {
-        this.state = newState;
-    }
-
-    protected void pushAndGoto(State newState) {
-        this.stateStack.add(this.state);
-        this.state = newState;
-    }
-
-    protected void pop() {
-        this.state = this.stateStack.remove(this.stateStack.size() - 1);
+    /**
+     * Consumes whitespace and any comma or colon preceding the next value, and returns the value's first
+     * character; or -1 at the end of the input or just before the closing bracket of the enclosing array or object.
+     */
+    protected int beforeValue() throws IOException {
+        while (true) {
+            jsonReader.skipWhiteSpace();
+            if (jsonReader.atEOF()) return -1;
+            char c = jsonReader.curr();
+            boolean closing = (c == ']' || c == '}');
+            switch (state) {
+                case MAP_COMMA_OR_END:
+                case ARRAY_COMMA_OR_END:
+                    if (closing) return -1;
+                    /* FALL THROUGH */
+                case MAP_COLON:
+                    accept(jsonReader.nextLexeme());
+                    continue;
+                case FIRST_MAP_KEY:
+                case FIRST_ARRAY_VALUE:
+                    if (closing) return -1;
+                    return c;
+                default:
+                    return c;
+            }
+        }
     }
 
-    protected enum State {
-        GENERAL,
-        FIRST_MAP_KEY,
-        SUBSEQUENT_MAP_KEY,
-        MAP_COLON,
-        MAP_VALUE,
-        MAP_COMMA_OR_END,
-        FIRST_ARRAY_VALUE,
-        SUBSEQUENT_ARRAY_VALUE,
-        ARRAY_COMMA_OR_END
+    /**
+     * Discards the remainder of the innermost array or object being read, including its closing bracket, without
+     * constructing anything. Most useful just after next() has returned {@link JSONReader.Lexeme#OBJECT_START} or
+     * {@link JSONReader.Lexeme#ARRAY_START}. As with {@link #skipValue()}, the skipped input is not validated beyond
+     * bracket nesting.
+     */
+    public void skipChildren() throws IOException {
+        if (atBoundary()) throw new IllegalStateException("Not inside an array or object");
+        boolean inObject = false;
+        switch (state) {
+            case FIRST_MAP_KEY:
+            case SUBSEQUENT_MAP_KEY:
+            case MAP_COLON:
+            case MAP_VALUE:
+            case MAP_COMMA_OR_END:
+                inObject = true;
+                break;
+            default:
+                break;
+        }
+        char close = jsonReader.skipRawContainer();
+        if (inObject && close != '}') jsonReader.expectedMapComma();
+        if (!inObject && close != ']') jsonReader.expectedArrayComma();
+        pop();
     }
 }
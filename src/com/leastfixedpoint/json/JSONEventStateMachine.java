@@ -0,0 +1,141 @@
+package com.leastfixedpoint.json;
+
+import com.leastfixedpoint.json.JSONReader.Lexeme;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks the position of a sequence of lexemes within the structure of the JSON values they make up, checking that
+ * the sequence is well-formed. Shared by {@link JSONEventReader}, which pulls lexemes from a {@link JSONReader}, and
+ * {@link JSONPushParser}, which is fed them.
+ */
+public abstract class JSONEventStateMachine {
+    /** The reader supplying lexemes, which is also used to report syntax errors. */
+    protected JSONReader jsonReader;
+    protected List<State> stateStack;
+    protected State state;
+
+    protected JSONEventStateMachine(JSONReader jsonReader) {
+        this.jsonReader = jsonReader;
+        this.stateStack = new ArrayList<>();
+        this.state = State.GENERAL;
+    }
+
+    /**
+     * Advances the state machine over the given lexeme. Returns the token to be yielded, or null if the lexeme
+     * (a comma or colon) is consumed silently.
+     */
+    protected Object accept(Object token) throws IOException {
+        switch (state) {
+            case GENERAL:
+                maybeEnterNested(token);
+                return token;
+
+            case FIRST_MAP_KEY:
+                if (token == Lexeme.OBJECT_END) {
+                    pop();
+                    return token;
+                }
+                /* FALL THROUGH */
+            case SUBSEQUENT_MAP_KEY:
+                token = JSONReader.keyString(token);
+                if (!(token instanceof String)) jsonReader.expectedMapKey();
+                gotoState(State.MAP_COLON);
+                return token;
+
+            case MAP_COLON:
+                if (token != Lexeme.COLON) jsonReader.expectedMapColon();
+                gotoState(State.MAP_VALUE);
+                return null;
+
+            case MAP_VALUE:
+                gotoState(State.MAP_COMMA_OR_END);
+                maybeEnterNested(token);
+                return token;
+
+            case MAP_COMMA_OR_END:
+                if (token == Lexeme.OBJECT_END) {
+                    pop();
+                    return token;
+                }
+                if (token != Lexeme.COMMA) jsonReader.expectedMapComma();
+                gotoState(State.SUBSEQUENT_MAP_KEY);
+                return null;
+
+            case FIRST_ARRAY_VALUE:
+                if (token == Lexeme.ARRAY_END) {
+                    pop();
+                    return token;
+                }
+                /* FALL THROUGH */
+            case SUBSEQUENT_ARRAY_VALUE:
+                gotoState(State.ARRAY_COMMA_OR_END);
+                maybeEnterNested(token);
+                return token;
+
+            case ARRAY_COMMA_OR_END:
+                if (token == Lexeme.ARRAY_END) {
+                    pop();
+                    return token;
+                }
+                if (token != Lexeme.COMMA) jsonReader.expectedArrayComma();
+                gotoState(State.SUBSEQUENT_ARRAY_VALUE);
+                return null;
+
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    protected boolean atKey() {
+        return state == State.FIRST_MAP_KEY || state == State.SUBSEQUENT_MAP_KEY;
+    }
+
+    /** Returns true iff the parser is not mid-way through some object; that is, we are at a boundary between JSON values. */
+    public boolean atBoundary() {
+        return stateStack.size() == 0;
+    }
+
+    protected void maybeEnterNested(Object token) throws JSONSyntaxError {
+        if (token instanceof Lexeme) {
+            switch ((Lexeme) token) {
+                case OBJECT_START:
+                    pushAndGoto(State.FIRST_MAP_KEY);
+                    break;
+                case ARRAY_START:
+                    pushAndGoto(State.FIRST_ARRAY_VALUE);
+                    break;
+                default:
+                    jsonReader.unexpectedLexeme((Lexeme) token);
+                    break;
+            }
+        }
+    }
+
+    protected void gotoState(State newState) {
+        this.state = newState;
+    }
+
+    protected void pushAndGoto(State newState) {
+        this.stateStack.add(this.state);
+        this.state = newState;
+    }
+
+    protected void pop() {
+        this.state = this.stateStack.remove(this.stateStack.size() - 1);
+    }
+
+    protected enum State {
+        GENERAL,
+        FIRST_MAP_KEY,
+        SUBSEQUENT_MAP_KEY,
+        MAP_COLON,
+        MAP_VALUE,
+        MAP_COMMA_OR_END,
+        FIRST_ARRAY_VALUE,
+        SUBSEQUENT_ARRAY_VALUE,
+        ARRAY_COMMA_OR_END
+    }
+}
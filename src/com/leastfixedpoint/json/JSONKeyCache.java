@@ -0,0 +1,141 @@
+package com.leastfixedpoint.json;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Bounded cache of canonical String instances for JSON object keys. When installed with
+ * {@link JSONReader#setKeyCache(JSONKeyCache)}, keys that have been seen before are recognised directly from the
+ * reader's input buffer, by hash and content, and returned without allocating a new String.
+ * <p>
+ * The cache is a fixed-size, direct-mapped table: each key hashes to exactly one slot, and a new key simply replaces
+ * whatever occupied its slot before. Memory use is therefore bounded no matter what the input contains. Keys longer
+ * than {@link #getMaxKeyLength()} are never cached.
+ * <p>
+ * A single instance may be shared among readers on many threads. Lookups and replacements race benignly, since slots
+ * only ever hold complete, immutable Strings; the hit and miss counters, though, are not synchronized and may
+ * undercount under concurrent use.
+ */
+public class JSONKeyCache {
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_MAX_KEY_LENGTH = 64;
+
+    protected final String[] slots;
+    protected final int mask;
+    protected final int maxKeyLength;
+    protected long hits = 0;
+    protected long misses = 0;
+
+    public JSONKeyCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_KEY_LENGTH);
+    }
+
+    /**
+     * Construct a cache with room for at most capacity keys (rounded up to a power of two), each of at most
+     * maxKeyLength characters.
+     */
+    public JSONKeyCache(int capacity, int maxKeyLength) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new String[size];
+        this.mask = size - 1;
+        this.maxKeyLength = maxKeyLength;
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    public int getMaxKeyLength() {
+        return maxKeyLength;
+    }
+
+    /** Number of lookups answered with a previously-cached String. */
+    public long getHits() {
+        return hits;
+    }
+
+    /** Number of lookups that had to allocate a new String. */
+    public long getMisses() {
+        return misses;
+    }
+
+    public void resetStatistics() {
+        hits = 0;
+        misses = 0;
+    }
+
+    /** Empties the cache. */
+    public void clear() {
+        Arrays.fill(slots, null);
+    }
+
+    protected int slot(int hash) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Returns the canonical String for chars[offset..offset+length), whose {@link String#hashCode()} must be hash.
+     */
+    public String intern(char[] chars, int offset, int length, int hash) {
+        if (length > maxKeyLength) {
+            misses++;
+            return new String(chars, offset, length);
+        }
+        int i = slot(hash);
+        String s = slots[i];
+        if (s != null && s.hashCode() == hash && s.length() == length) {
+            int j = 0;
+            while (j < length && s.charAt(j) == chars[offset + j]) j++;
+            if (j == length) {
+                hits++;
+                return s;
+            }
+        }
+        misses++;
+        s = new String(chars, offset, length);
+        slots[i] = s;
+        return s;
+    }
+
+    /**
+     * Returns the canonical String for the ASCII bytes bytes[offset..offset+length), whose interpretation as a
+     * String must have hash as its {@link String#hashCode()}.
+     */
+    public String intern(ByteBuffer bytes, int offset, int length, int hash) {
+        if (length <= maxKeyLength) {
+            String s = slots[slot(hash)];
+            if (s != null && s.hashCode() == hash && s.length() == length) {
+                int j = 0;
+                while (j < length && s.charAt(j) == bytes.get(offset + j)) j++;
+                if (j == length) {
+                    hits++;
+                    return s;
+                }
+            }
+        }
+        char[] chars = new char[length];
+        for (int j = 0; j < length; j++) chars[j] = (char) bytes.get(offset + j);
+        return intern(new String(chars), hash, length);
+    }
+
+    /**
+     * Returns the canonical String equal to s, installing s itself if there is none.
+     */
+    public String intern(String s) {
+        return intern(s, s.hashCode(), s.length());
+    }
+
+    private String intern(String s, int hash, int length) {
+        if (length <= maxKeyLength) {
+            int i = slot(hash);
+            String existing = slots[i];
+            if (existing != null && existing.equals(s)) {
+                hits++;
+                return existing;
+            }
+            slots[i] = s;
+        }
+        misses++;
+        return s;
+    }
+}
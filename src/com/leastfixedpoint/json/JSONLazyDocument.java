@@ -0,0 +1,578 @@
+package com.leastfixedpoint.json;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * A JSON document held as UTF-8 text plus a compact structural index, decoded only as it is accessed.
+ * <p>
+ * Construction makes a single pass over the input, checking its structure and recording, for each value, its offset
+ * in the input and (for arrays and objects) its number of elements and the extent of its subtree. When a vectorized
+ * {@link JSONStructuralIndex} is available, the pass visits only the token positions it locates, 64 bytes at a time,
+ * rather than every byte of the input. The document's root
+ * is then presented as an ordinary java.util.Map or java.util.List (or, for scalar roots, as the value itself), so
+ * that it works with {@link JSONValue} and {@link JSONWriter} just like the output of {@link JSONReader#read()}.
+ * Operations like {@link JSONValue#get(String)}, {@link JSONValue#get(int)}, {@link JSONValue#size()} and iteration
+ * decode only the strings, numbers and nested containers they actually touch, using a {@link JSONByteReader}
+ * positioned over the input; untouched subtrees cost nothing beyond their index entries. Decoded values are
+ * remembered, so each is decoded at most once. As with JSONReader, a key repeated within an object takes the value of
+ * its last appearance.
+ * <p>
+ * Only structure is validated up front. A malformed number or atom is reported when it is first accessed, as an
+ * IllegalStateException wrapping the JSONSyntaxError, since the collection interfaces do not permit checked
+ * exceptions. The views are read-only, and are not safe for use by multiple threads at once. The input array must not
+ * be modified while the document is in use.
+ */
+public class JSONLazyDocument {
+    /** Each node occupies three consecutive entries in the index. */
+    protected static final int START = 0;
+    protected static final int NEXT = 1;
+    protected static final int COUNT = 2;
+    protected static final int NODE_SIZE = 3;
+
+    protected final byte[] bytes;
+    protected final int offset;
+    protected final int end;
+    protected final JSONByteReader reader;
+
+    protected int[] index = new int[NODE_SIZE * 16];
+    protected int nodeCount = 0;
+    protected Object root;
+
+    /**
+     * Indexes a single JSON value held in the given UTF-8 encoded bytes.
+     * @throws JSONSyntaxError if the input is structurally malformed or has trailing junk
+     * @throws EOFException if the input ends before the value is complete
+     */
+    public JSONLazyDocument(byte[] bytes) throws IOException {
+        this(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Indexes a single JSON value held in the given slice of UTF-8 encoded bytes.
+     * @throws JSONSyntaxError if the input is structurally malformed or has trailing junk
+     * @throws EOFException if the input ends before the value is complete
+     */
+    public JSONLazyDocument(byte[] bytes, int offset, int length) throws IOException {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.end = offset + length;
+        this.reader = new JSONByteReader(bytes, offset, length);
+        buildIndex();
+    }
+
+    /**
+     * Indexes the given UTF-8 encoded JSON text, returning its root as a JSONValue.
+     */
+    public static JSONValue readValue(byte[] bytes) throws IOException {
+        return new JSONLazyDocument(bytes).rootValue();
+    }
+
+    /**
+     * Indexes the given JSON text, returning its root as a JSONValue.
+     */
+    public static JSONValue readValue(String s) throws IOException {
+        return readValue(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The reader used to decode scalars. Configure it (for example, with
+     * {@link JSONReader#setNumberPolicy(JSONReader.NumberPolicy)}) before accessing the document.
+     */
+    public JSONByteReader getReader() {
+        return reader;
+    }
+
+    /** Number of values (including object keys) in the document. */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /** The root of the document: a read-only lazy Map or List, or a scalar. */
+    public Object root() throws IOException {
+        if (root == null) root = decode(0);
+        return root;
+    }
+
+    /** As root(), but wrapped in {@link JSONValue}. */
+    public JSONValue rootValue() throws IOException {
+        return JSONValue.wrap(root());
+    }
+
+    //---------------------------------------------------------------------------
+    // Index construction
+
+    private static final int S_VALUE = 0;
+    private static final int S_VALUE_OR_END = 1;
+    private static final int S_KEY = 2;
+    private static final int S_KEY_OR_END = 3;
+    private static final int S_COLON = 4;
+    private static final int S_COMMA_OR_END = 5;
+    private static final int S_DONE = 6;
+
+    protected int newNode(int start) {
+        int i = nodeCount * NODE_SIZE;
+        if (i == index.length) index = Arrays.copyOf(index, index.length * 2);
+        index[i + START] = start;
+        index[i + NEXT] = nodeCount + 1;
+        index[i + COUNT] = 0;
+        return nodeCount++;
+    }
+
+    private int[] stack;
+    private int depth;
+    private int state;
+
+    /**
+     * True if the index should be built from a {@link JSONStructuralIndex}; by default, only when it is vectorized.
+     */
+    protected boolean useStructuralIndex() {
+        return JSONStructuralIndex.isVectorized();
+    }
+
+    /**
+     * Builds the index by walking the token positions found by {@link JSONStructuralIndex}, or, if that is not to be
+     * used or cannot handle the input, by scanning byte by byte.
+     */
+    protected void buildIndex() throws IOException {
+        stack = new int[16];
+        depth = 0;
+        state = S_VALUE;
+        JSONStructuralIndex tokens = useStructuralIndex() ? JSONStructuralIndex.scan(bytes, offset, end - offset) : null;
+        if (tokens != null) {
+            walkIndex(tokens);
+        } else {
+            scanIndex();
+        }
+        stack = null;
+    }
+
+    protected void walkIndex(JSONStructuralIndex tokens) throws IOException {
+        final int n = tokens.size();
+        int i = 0;
+        while (state != S_DONE) {
+            if (i == n) throw new EOFException();
+            token(tokens.get(i++));
+        }
+        if (i != n) syntaxError(tokens.get(i), "Expected, but did not see, end-of-file");
+    }
+
+    protected void scanIndex() throws IOException {
+        final byte[] b = bytes;
+        int p = offset;
+        while (state != S_DONE) {
+            p = skipWhiteSpace(p);
+            if (p == end) throw new EOFException();
+            token(p);
+            byte c = b[p];
+            if (c == '"' || c == '\'') {
+                p = skipString(p);
+            } else if (c == '{' || c == '[' || c == '}' || c == ']' || c == ':' || c == ',') {
+                p++;
+            } else {
+                p = skipAtom(p);
+            }
+        }
+        p = skipWhiteSpace(p);
+        if (p != end) syntaxError(p, "Expected, but did not see, end-of-file");
+    }
+
+    /** Advances the index construction state machine over the token starting at p. */
+    protected void token(int p) throws IOException {
+        final byte[] b = bytes;
+        byte c = b[p];
+        int container = (depth > 0) ? stack[depth - 1] : -1;
+        boolean inObject = container >= 0 && b[index[container * NODE_SIZE + START]] == '{';
+        switch (state) {
+            case S_VALUE_OR_END:
+                if (c == ']') {
+                    endContainer(container);
+                    return;
+                }
+                /* FALL THROUGH */
+            case S_VALUE: {
+                int node = newNode(p);
+                if (container >= 0 && !inObject) index[container * NODE_SIZE + COUNT]++;
+                if (c == '{' || c == '[') {
+                    if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+                    stack[depth++] = node;
+                    state = (c == '{') ? S_KEY_OR_END : S_VALUE_OR_END;
+                } else {
+                    if (c != '"' && c != '\'' && c != '-' && !(c >= '0' && c <= '9')
+                            && c != 't' && c != 'f' && c != 'n') {
+                        syntaxError(p, (c == ']' || c == '}' || c == ',' || c == ':')
+                                ? "Unexpected " + (char) c
+                                : "Invalid character: {" + (char) c + "}");
+                    }
+                    state = (depth == 0) ? S_DONE : S_COMMA_OR_END;
+                }
+                break;
+            }
+            case S_KEY_OR_END:
+                if (c == '}') {
+                    endContainer(container);
+                    return;
+                }
+                /* FALL THROUGH */
+            case S_KEY:
+                if (c != '"' && c != '\'') syntaxError(p, "Expected string map key");
+                newNode(p);
+                index[container * NODE_SIZE + COUNT]++;
+                state = S_COLON;
+                break;
+            case S_COLON:
+                if (c != ':') syntaxError(p, "Expected colon separating key from value");
+                state = S_VALUE;
+                break;
+            case S_COMMA_OR_END:
+                if (c == ',') {
+                    state = inObject ? S_KEY : S_VALUE;
+                } else if (c == (inObject ? '}' : ']')) {
+                    endContainer(container);
+                } else {
+                    syntaxError(p, inObject
+                            ? "Expected comma separating map keys or end of map"
+                            : "Expected comma separating array values or end of array");
+                }
+                break;
+        }
+    }
+
+    private void endContainer(int container) {
+        index[container * NODE_SIZE + NEXT] = nodeCount;
+        depth--;
+        state = (depth == 0) ? S_DONE : S_COMMA_OR_END;
+    }
+
+    protected int skipWhiteSpace(int p) throws IOException {
+        final byte[] b = bytes;
+        while (p < end) {
+            byte c = b[p];
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                p++;
+            } else if (c == '/') {
+                if (p + 1 == end || b[p + 1] != '/') syntaxError(p, "Invalid comment");
+                while (p < end && b[p] != '\n') p++;
+            } else if (c < 0 || c < ' ') {
+                // Rare: other whitespace, including non-ASCII whitespace and the BOM. Defer to the reader's rules.
+                reader.pos = p;
+                reader.skipWhiteSpace();
+                if (reader.pos == p) return p;
+                p = reader.pos;
+            } else {
+                return p;
+            }
+        }
+        return p;
+    }
+
+    /** Skips a string literal starting at p, returning the position just after its closing delimiter. */
+    protected int skipString(int p) throws IOException {
+        final byte[] b = bytes;
+        final byte sep = b[p++];
+        while (p < end) {
+            byte c = b[p];
+            if (c == sep) return p + 1;
+            p += (c == '\\') ? 2 : 1;
+        }
+        throw new EOFException();
+    }
+
+    /** Skips a number or atom starting at p, returning the position of the delimiter following it. */
+    protected int skipAtom(int p) {
+        final byte[] b = bytes;
+        while (p < end) {
+            byte c = b[p];
+            if (c == ',' || c == ']' || c == '}' || c == ':' || c == ' ' || c == '\n' || c == '\r' || c == '\t'
+                    || c == '/' || c == '"' || c == '[' || c == '{') {
+                return p;
+            }
+            p++;
+        }
+        return p;
+    }
+
+    protected void syntaxError(int p, String message) throws JSONSyntaxError {
+        resetReader(p);
+        reader.syntaxError(message);
+    }
+
+    //---------------------------------------------------------------------------
+    // Decoding
+
+    private void resetReader(int p) {
+        reader.line = 0;
+        reader.lineScan = offset;
+        reader.lineStart = 0;
+        reader.pendingCR = false;
+        reader.mark = -1;
+        reader.pos = p;
+    }
+
+    protected int start(int node) {
+        return index[node * NODE_SIZE + START];
+    }
+
+    protected int next(int node) {
+        return index[node * NODE_SIZE + NEXT];
+    }
+
+    protected int count(int node) {
+        return index[node * NODE_SIZE + COUNT];
+    }
+
+    /** Produces the Java representation of the given node: a view for containers, a decoded value otherwise. */
+    protected Object decode(int node) throws IOException {
+        int p = start(node);
+        switch (bytes[p]) {
+            case '{': return new LazyMap(node);
+            case '[': return new LazyList(node);
+            case '"':
+            case '\'':
+                resetReader(p);
+                return reader.nextLexeme();
+            default:
+                resetReader(p);
+                Object value = reader.nextLexeme();
+                if (reader.pos != skipAtom(p)) syntaxError(reader.pos, "Invalid input following value");
+                return value;
+        }
+    }
+
+    protected String decodeKey(int node) throws IOException {
+        int p = start(node);
+        resetReader(p + 1);
+        return (String) reader.string((char) bytes[p]);
+    }
+
+    /** Compares the key at the given node with the given string, decoding the key only if it contains escapes or
+     * non-ASCII characters. */
+    protected boolean keyEquals(int node, String key) throws IOException {
+        final byte[] b = bytes;
+        int p = start(node);
+        final byte sep = b[p++];
+        final int n = key.length();
+        for (int i = 0; i < n; i++, p++) {
+            byte c = b[p];
+            if (c == sep) return false;
+            if (c < 0 || c == '\\') return decodeKey(node).equals(key);
+            if (c != key.charAt(i)) return false;
+        }
+        byte c = b[p];
+        if (c == sep) return true;
+        if (c < 0 || c == '\\') return decodeKey(node).equals(key);
+        return false;
+    }
+
+    /** Wraps IOExceptions arising from deferred decoding, since the collection interfaces do not permit them. */
+    protected static RuntimeException decodingFailed(IOException e) {
+        return new IllegalStateException("Malformed JSON in lazily-decoded document", e);
+    }
+
+    protected class LazyList extends AbstractList<Object> implements RandomAccess {
+        protected final int node;
+        protected int[] children;
+        protected Object[] values;
+
+        LazyList(int node) {
+            this.node = node;
+        }
+
+        @Override
+        public int size() {
+            return count(node);
+        }
+
+        @Override
+        public Object get(int i) {
+            if (i < 0 || i >= size()) throw new IndexOutOfBoundsException(i);
+            if (children == null) {
+                children = new int[size()];
+                values = new Object[size()];
+                for (int j = 0, child = node + 1; j < children.length; j++, child = next(child)) children[j] = child;
+            }
+            Object v = values[i];
+            if (v == null) {
+                try {
+                    v = values[i] = decode(children[i]);
+                } catch (IOException e) {
+                    throw decodingFailed(e);
+                }
+            }
+            return v;
+        }
+    }
+
+    protected class LazyMap extends AbstractMap<String, Object> {
+        protected final int node;
+        protected Object[] values;
+        /** Key node of the member most recently located by find(). */
+        protected int found;
+        /**
+         * The keys of the object, each once, in order of first appearance; and, for each, the position and key node
+         * of its last appearance, which supplies its value. Null until needed by size() or iteration.
+         */
+        protected String[] keys;
+        protected int[] keyMembers;
+        protected int[] keyNodes;
+
+        LazyMap(int node) {
+            this.node = node;
+        }
+
+        /**
+         * The number of distinct keys. Unless the object has at most one member, the first call decodes its keys (but
+         * not its values), since a key may be repeated.
+         */
+        @Override
+        public int size() {
+            int n = count(node);
+            if (n <= 1) return n;
+            resolveKeys();
+            return keys.length;
+        }
+
+        /**
+         * Fills in {@link #keys}, {@link #keyMembers} and {@link #keyNodes}. As with JSONReader, a key appearing more
+         * than once takes the value of its last appearance.
+         */
+        protected void resolveKeys() {
+            if (keys != null) return;
+            int n = count(node);
+            String[] ks = new String[n];
+            int[] members = new int[n];
+            int[] nodes = new int[n];
+            Map<String, Integer> slots = new HashMap<>(n * 2);
+            int size = 0;
+            try {
+                for (int i = 0, k = node + 1; i < n; i++, k = next(k + 1)) {
+                    String key = decodeKey(k);
+                    Integer slot = slots.putIfAbsent(key, size);
+                    int s = (slot == null) ? size++ : slot;
+                    ks[s] = key;
+                    members[s] = i;
+                    nodes[s] = k;
+                }
+            } catch (IOException e) {
+                throw decodingFailed(e);
+            }
+            keyMembers = Arrays.copyOf(members, size);
+            keyNodes = Arrays.copyOf(nodes, size);
+            keys = Arrays.copyOf(ks, size);
+        }
+
+        /**
+         * Returns the position of the last member with the given key, or -1. Leaves its key node in found.
+         */
+        protected int find(Object key) {
+            if (!(key instanceof String)) return -1;
+            int match = -1;
+            try {
+                for (int i = 0, k = node + 1, n = count(node); i < n; i++, k = next(k + 1)) {
+                    if (keyEquals(k, (String) key)) {
+                        found = k;
+                        match = i;
+                    }
+                }
+            } catch (IOException e) {
+                throw decodingFailed(e);
+            }
+            return match;
+        }
+
+        protected Object value(int i, int valueNode) {
+            if (values == null) values = new Object[count(node)];
+            Object v = values[i];
+            if (v == null) {
+                try {
+                    v = values[i] = decode(valueNode);
+                } catch (IOException e) {
+                    throw decodingFailed(e);
+                }
+            }
+            return v;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return find(key) >= 0;
+        }
+
+        @Override
+        public Object get(Object key) {
+            int i = find(key);
+            return (i < 0) ? null : value(i, found + 1);
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public int size() {
+                    return LazyMap.this.size();
+                }
+
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    resolveKeys();
+                    return new Iterator<Map.Entry<String, Object>>() {
+                        int i = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return i < keys.length;
+                        }
+
+                        @Override
+                        public Map.Entry<String, Object> next() {
+                            if (!hasNext()) throw new NoSuchElementException();
+                            final String key = keys[i];
+                            final int member = keyMembers[i];
+                            final int keyNode = keyNodes[i];
+                            i++;
+                            return new Map.Entry<String, Object>() {
+                                @Override
+                                public String getKey() {
+                                    return key;
+                                }
+
+                                @Override
+                                public Object getValue() {
+                                    return value(member, keyNode + 1);
+                                }
+
+                                @Override
+                                public Object setValue(Object value) {
+                                    throw new UnsupportedOperationException();
+                                }
+
+                                @Override
+                                public boolean equals(Object o) {
+                                    if (!(o instanceof Map.Entry)) return false;
+                                    Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+                                    return key.equals(e.getKey()) && getValue().equals(e.getValue());
+                                }
+
+                                @Override
+                                public int hashCode() {
+                                    return key.hashCode() ^ getValue().hashCode();
+                                }
+                            };
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.leastfixedpoint.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Parse UTF-8 encoded JSON text straight out of a memory-mapped file.
+ * <p>
+ * The file is mapped a chunk at a time with {@link FileChannel#map}, so files larger than 2GB are supported, and
+ * values are decoded directly from the mapped region without first being copied onto the heap. Apart from the values
+ * returned, memory use does not depend on the size of the file. As with {@link JSONReader}, the file may hold a single
+ * JSON document or many adjacent (e.g. newline-delimited) JSON values, to be retrieved by calling
+ * {@link JSONReader#read()} repeatedly until it throws {@link java.io.EOFException}.
+ * <p>
+ * The file must not be modified while it is being read. Closing the reader closes the underlying channel; mapped
+ * chunks are released by the garbage collector once they are no longer in use.
+ * <p>
+ * The inherited reset methods retarget the reader onto other input, after which it no longer maps any file; a
+ * channel being read is not closed by them. Use {@link #reset(FileChannel)} to start reading another file.
+ */
+public class JSONMappedFileReader extends JSONByteReader implements Closeable {
+    /** Default size of each mapped chunk of the file. */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 30;
+
+    protected FileChannel channel;
+    protected long size;
+
+    /**
+     * Construct a reader over the given file, opening it for reading.
+     */
+    public JSONMappedFileReader(Path path) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    /**
+     * Construct a reader over the given channel, starting at its current position.
+     */
+    public JSONMappedFileReader(FileChannel channel) throws IOException {
+        this(channel, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Construct a reader over the given channel, starting at its current position, and mapping it chunkSize bytes
+     * at a time. A chunk is enlarged if a single token does not fit in it.
+     */
+    public JSONMappedFileReader(FileChannel channel, int chunkSize) throws IOException {
+        super(ByteBuffer.allocate(0), 0, 0);
+        this.channel = channel;
+        this.size = channel.size();
+        this.base = channel.position();
+        this.lineStart = this.base;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Discards all input and internal state, and prepares to read the given channel from its current position, just
+     * as a freshly constructed JSONMappedFileReader would. The chunk size is retained. The previous channel, if any,
+     * is not closed.
+     */
+    public void reset(FileChannel channel) throws IOException {
+        super.reset(ByteBuffer.allocate(0), 0, 0);
+        this.channel = channel;
+        this.size = channel.size();
+        this.base = channel.position();
+        this.lineStart = this.base;
+    }
+
+    @Override
+    public void reset(InputStream in) {
+        this.channel = null;
+        super.reset(in);
+    }
+
+    @Override
+    protected void reset(ByteBuffer window, int pos, int limit) {
+        this.channel = null;
+        super.reset(window, pos, limit);
+    }
+
+    /**
+     * Reads and returns a single JSON value from the given file.
+     * Calls expectEOF() after reading, to ensure no trailing junk is present.
+     */
+    public static Object readFrom(Path path) throws IOException {
+        try (JSONMappedFileReader r = new JSONMappedFileReader(path)) {
+            Object result = r.read();
+            r.expectEOF();
+            return result;
+        }
+    }
+
+    /**
+     * Reads and returns a single JSONValue from the given file.
+     * Calls expectEOF() after reading, to ensure no trailing junk is present.
+     */
+    public static JSONValue readValue(Path path) throws IOException {
+        return JSONValue.wrap(readFrom(path));
+    }
+
+    /**
+     * Retrieve the underlying FileChannel, or null if this reader has been reset onto other input.
+     */
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    @Override
+    protected boolean fill() throws IOException {
+        if (channel == null) return super.fill();
+        int keep = (mark >= 0) ? mark : pos;
+        int retained = limit - keep;
+        long start = base + keep;
+        if (eof || size - start <= retained) {
+            eof = true;
+            return false;
+        }
+        discardPosition(keep);
+        long length = Math.min(size - start, Math.max(chunkSize, 2L * retained));
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(length, Integer.MAX_VALUE - 8));
+        pos -= keep;
+        limit = window.limit();
+        if (mark >= 0) mark -= keep;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) channel.close();
+    }
+}
@@ -0,0 +1,125 @@
+package com.leastfixedpoint.json;
+
+import java.math.BigDecimal;
+
+/**
+ * A JSON number kept as its original source text, and converted to a Java numeric type only on demand. Produced by
+ * {@link JSONReader} when its number policy is {@link JSONReader.NumberPolicy#LAZY}.
+ * <p>
+ * Conversions to long and double take an allocation-free fast path for numbers of up to 18 significant digits.
+ * Equality and hashing follow {@link BigDecimal}, so that "1.0" and "1.00" are distinct while "1e2" and "1E+2" are
+ * the same number. Writing a JSONNumber with {@link JSONWriter} reproduces its source text.
+ */
+public final class JSONNumber extends Number {
+    private final String text;
+    private BigDecimal bigDecimal;
+
+    JSONNumber(String text) {
+        this.text = text;
+    }
+
+    /** Exact powers of ten representable as doubles. */
+    static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Computes mantissa * 10^-scale, correctly rounded, when both the mantissa and the power of ten are exactly
+     * representable as doubles. Returns NaN otherwise, in which case the caller must fall back to
+     * {@link Double#parseDouble(String)}.
+     */
+    static double fastDouble(boolean negative, long mantissa, long scale) {
+        if (mantissa > (1L << 53) || scale < -22 || scale > 22) return Double.NaN;
+        double d = (double) mantissa;
+        d = (scale < 0) ? d * POWERS_OF_TEN[(int) -scale] : d / POWERS_OF_TEN[(int) scale];
+        return negative ? -d : d;
+    }
+
+    /** The source text of this number. */
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    public BigDecimal bigDecimalValue() {
+        if (bigDecimal == null) bigDecimal = new BigDecimal(text);
+        return bigDecimal;
+    }
+
+    @Override
+    public int intValue() {
+        return (int) longValue();
+    }
+
+    @Override
+    public long longValue() {
+        final String t = text;
+        final int n = t.length();
+        int i = (n > 0 && t.charAt(0) == '-') ? 1 : 0;
+        if (n - i > 18) return bigDecimalValue().longValue();
+        long v = 0;
+        for (int j = i; j < n; j++) {
+            int d = t.charAt(j) - '0';
+            if (d < 0 || d > 9) return bigDecimalValue().longValue();
+            v = v * 10 + d;
+        }
+        return (i == 1) ? -v : v;
+    }
+
+    @Override
+    public float floatValue() {
+        return Float.parseFloat(text);
+    }
+
+    @Override
+    public double doubleValue() {
+        final String t = text;
+        final int n = t.length();
+        int i = 0;
+        boolean negative = false;
+        if (n > 0 && t.charAt(0) == '-') {
+            negative = true;
+            i++;
+        }
+        long mantissa = 0;
+        int significant = 0;
+        long scale = 0;
+        boolean fraction = false;
+        for (; i < n; i++) {
+            char c = t.charAt(i);
+            if (c == '.') {
+                fraction = true;
+            } else if (c >= '0' && c <= '9') {
+                if (significant == 18) return Double.parseDouble(t);
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) significant++;
+                if (fraction) scale++;
+            } else {
+                break;
+            }
+        }
+        if (i < n) {
+            // Exponent. Anything beyond a few digits is far outside the fast path anyway.
+            i++;
+            boolean negativeExponent = false;
+            if (i < n && (t.charAt(i) == '+' || t.charAt(i) == '-')) negativeExponent = t.charAt(i++) == '-';
+            if (n - i > 4) return Double.parseDouble(t);
+            int e = 0;
+            for (; i < n; i++) e = e * 10 + (t.charAt(i) - '0');
+            scale += negativeExponent ? e : -e;
+        }
+        double d = fastDouble(negative, mantissa, scale);
+        return Double.isNaN(d) ? Double.parseDouble(t) : d;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return (other instanceof JSONNumber) && bigDecimalValue().equals(((JSONNumber) other).bigDecimalValue());
+    }
+
+    @Override
+    public int hashCode() {
+        return bigDecimalValue().hashCode();
+    }
+}
@@ -0,0 +1,402 @@
+package com.leastfixedpoint.json;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Parse a sequence of adjacent (e.g. newline-delimited) UTF-8 encoded JSON values in parallel.
+ * <p>
+ * The input, a byte array or a memory-mapped file, is split into chunks at boundaries between top-level values, and
+ * each chunk is parsed by its own {@link JSONByteReader} on a {@link ForkJoinPool}. Results are available either in
+ * their original order, from {@link #readAll()}, or in whatever order chunks complete, from {@link #stream()}.
+ * <p>
+ * By default, boundaries are found by a quick sequential pre-scan of the input that tracks nesting depth and string
+ * literals, splitting only at whitespace between top-level values. If the input is known to hold exactly one value
+ * per line, as in NDJSON, {@link #setNewlineDelimited(boolean)} lets chunks be split at any newline without a
+ * pre-scan; values must then not span lines, and one that is split between chunks is reported as a syntax error.
+ * <p>
+ * Syntax errors report the line number within the whole input, just as a sequential reader would. The input must not
+ * be modified while it is being read.
+ */
+public class JSONParallelReader {
+    /** Inputs are not split into chunks smaller than this, by default. */
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 1 << 20;
+    /** Chunks of a file are mapped individually, and so are kept well below 2GB. */
+    protected static final long MAX_CHUNK_SIZE = 1L << 30;
+    /** Size of the pieces in which a file is mapped for scanning. */
+    protected static final int SCAN_WINDOW_SIZE = 1 << 24;
+
+    protected final ByteBuffer data;
+    protected final FileChannel channel;
+    protected final long base;
+    protected final long size;
+
+    protected ForkJoinPool pool = ForkJoinPool.commonPool();
+    protected boolean newlineDelimited = false;
+    protected int minChunkSize = DEFAULT_MIN_CHUNK_SIZE;
+    protected JSONReader.NumberPolicy numberPolicy = JSONReader.NumberPolicy.BIG_DECIMAL;
+    protected JSONKeyCache keyCache = null;
+
+    /**
+     * Construct a reader over the given UTF-8 encoded bytes.
+     */
+    public JSONParallelReader(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Construct a reader over the given slice of UTF-8 encoded bytes.
+     */
+    public JSONParallelReader(byte[] bytes, int offset, int length) {
+        this.data = ByteBuffer.wrap(bytes, offset, length).slice();
+        this.channel = null;
+        this.base = 0;
+        this.size = length;
+    }
+
+    /**
+     * Construct a reader over the given channel, from its current position to its end. Each chunk is mapped
+     * separately, so files larger than 2GB are supported. The channel is not closed by the reader.
+     */
+    public JSONParallelReader(FileChannel channel) throws IOException {
+        this.data = null;
+        this.channel = channel;
+        this.base = channel.position();
+        this.size = channel.size() - base;
+    }
+
+    /**
+     * Reads and returns, in order, all the JSON values in the given bytes.
+     */
+    public static List<Object> readAll(byte[] bytes) throws IOException {
+        return new JSONParallelReader(bytes).readAll();
+    }
+
+    /**
+     * Reads and returns, in order, all the JSON values in the given file.
+     */
+    public static List<Object> readAll(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new JSONParallelReader(channel).readAll();
+        }
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Sets the pool on which chunks are parsed. By default, the common pool.
+     */
+    public void setPool(ForkJoinPool value) {
+        pool = value;
+    }
+
+    public boolean isNewlineDelimited() {
+        return newlineDelimited;
+    }
+
+    /**
+     * If true, the input holds exactly one value per line, and may be split at any newline.
+     */
+    public void setNewlineDelimited(boolean value) {
+        newlineDelimited = value;
+    }
+
+    public int getMinChunkSize() {
+        return minChunkSize;
+    }
+
+    public void setMinChunkSize(int value) {
+        minChunkSize = value;
+    }
+
+    public JSONReader.NumberPolicy getNumberPolicy() {
+        return numberPolicy;
+    }
+
+    /**
+     * Sets the number policy of the reader used for each chunk; see {@link JSONReader#setNumberPolicy}.
+     */
+    public void setNumberPolicy(JSONReader.NumberPolicy value) {
+        numberPolicy = value;
+    }
+
+    public JSONKeyCache getKeyCache() {
+        return keyCache;
+    }
+
+    /**
+     * Sets a key cache to be shared by the readers used for each chunk; see {@link JSONReader#setKeyCache}.
+     */
+    public void setKeyCache(JSONKeyCache value) {
+        keyCache = value;
+    }
+
+    /**
+     * Reads all the values in the input, in parallel, returning them in their original order.
+     * Throws the error, if any, from the earliest chunk that failed.
+     */
+    public List<Object> readAll() throws IOException {
+        long[] bounds = chunkBoundaries();
+        List<Future<List<Object>>> futures = new ArrayList<>();
+        for (int i = 0; i < bounds.length - 1; i++) {
+            final int chunk = i;
+            futures.add(pool.submit(() -> parseChunk(bounds, chunk)));
+        }
+        List<Object> result = new ArrayList<>();
+        try {
+            for (Future<List<Object>> f : futures) result.addAll(f.get());
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(false));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(false));
+            throw unwrap(e);
+        }
+        return result;
+    }
+
+    /**
+     * Reads all the values in the input, in parallel, yielding them in no particular order as chunks complete.
+     * Errors are thrown from the stream as UncheckedIOException. Closing the stream cancels outstanding chunks.
+     */
+    public Stream<Object> stream() throws IOException {
+        long[] bounds = chunkBoundaries();
+        ExecutorCompletionService<List<Object>> completion = new ExecutorCompletionService<>(pool);
+        List<Future<List<Object>>> futures = new ArrayList<>();
+        for (int i = 0; i < bounds.length - 1; i++) {
+            final int chunk = i;
+            futures.add(completion.submit(() -> parseChunk(bounds, chunk)));
+        }
+        Iterator<List<Object>> chunks = new Iterator<List<Object>>() {
+            int remaining = futures.size();
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public List<Object> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                remaining--;
+                try {
+                    return completion.take().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UncheckedIOException(new InterruptedIOException());
+                } catch (ExecutionException e) {
+                    throw new UncheckedIOException(unwrap(e));
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(chunks, 0), false)
+                .flatMap(List::stream)
+                .onClose(() -> futures.forEach(f -> f.cancel(false)));
+    }
+
+    /** Extracts the IOException thrown by a chunk, which the pool may have wrapped. */
+    protected static IOException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        for (Throwable t = cause; t != null; t = t.getCause()) {
+            if (t instanceof IOException) return (IOException) t;
+        }
+        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if (cause instanceof Error) throw (Error) cause;
+        return new IOException(cause);
+    }
+
+    //---------------------------------------------------------------------------
+    // Chunking
+
+    /** Maps (or slices) the given range of the input. */
+    protected ByteBuffer region(long start, long end) throws IOException {
+        if (channel != null) return channel.map(FileChannel.MapMode.READ_ONLY, base + start, end - start);
+        return data.slice((int) start, (int) (end - start));
+    }
+
+    /**
+     * Returns the offsets at which the input is to be split: the first is zero, the last is the size of the input,
+     * and each chunk lies between adjacent entries.
+     */
+    protected long[] chunkBoundaries() throws IOException {
+        int parallelism = Math.max(1, pool.getParallelism());
+        long chunks = Math.max(1, Math.min(size / Math.max(1, minChunkSize), 4L * parallelism));
+        chunks = Math.max(chunks, (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+        long target = Math.max(1, size / chunks);
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        if (newlineDelimited) {
+            long p = target;
+            while (p < size) {
+                long b = nextLine(p);
+                if (b >= size) break;
+                bounds.add(b);
+                p = b + target;
+            }
+        } else {
+            scanBoundaries(target, bounds);
+        }
+        bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) result[i] = bounds.get(i);
+        return result;
+    }
+
+    /** Returns the offset just after the first newline at or after p, or the size of the input. */
+    protected long nextLine(long p) throws IOException {
+        while (p < size) {
+            long end = Math.min(size, p + SCAN_WINDOW_SIZE);
+            ByteBuffer w = region(p, end);
+            for (int i = 0, n = w.limit(); i < n; i++) {
+                if (w.get(i) == '\n') return p + i + 1;
+            }
+            p = end;
+        }
+        return size;
+    }
+
+    /**
+     * Scans the whole input, adding to bounds the offset following the first whitespace between top-level values
+     * after each multiple of target bytes.
+     */
+    protected void scanBoundaries(long target, List<Long> bounds) throws IOException {
+        int depth = 0;
+        byte quote = 0;
+        boolean escape = false;
+        boolean comment = false;
+        long next = target;
+        for (long p = 0; p < size; p += SCAN_WINDOW_SIZE) {
+            ByteBuffer w = region(p, Math.min(size, p + SCAN_WINDOW_SIZE));
+            for (int i = 0, n = w.limit(); i < n; i++) {
+                byte c = w.get(i);
+                if (quote != 0) {
+                    if (escape) {
+                        escape = false;
+                    } else if (c == '\\') {
+                        escape = true;
+                    } else if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (comment) {
+                    if (c == '\n') comment = false;
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                } else if (c == '/') {
+                    comment = true;
+                } else if (depth == 0 && p + i >= next && (c == ' ' || c == '\n' || c == '\t')) {
+                    // Never between '\r' and '\n', so each chunk's line terminators are complete.
+                    long b = p + i + 1;
+                    if (b < size) bounds.add(b);
+                    next = b + target;
+                }
+            }
+        }
+    }
+
+    /** Counts line terminators in the given range of the input, as {@link JSONReader} does. */
+    protected int countLines(long start, long end) throws IOException {
+        int lines = 0;
+        boolean cr = false;
+        for (long p = start; p < end; p += SCAN_WINDOW_SIZE) {
+            ByteBuffer w = region(p, Math.min(end, p + SCAN_WINDOW_SIZE));
+            for (int i = 0, n = w.limit(); i < n; i++) {
+                byte c = w.get(i);
+                if (c == '\n') {
+                    if (!cr) lines++;
+                    cr = false;
+                } else {
+                    if (c == '\r') lines++;
+                    cr = c == '\r';
+                }
+            }
+        }
+        return lines;
+    }
+
+    /** Returns the offset of the start of the line containing the given offset. */
+    protected long lineStart(long offset) throws IOException {
+        for (long p = offset; p > 0; p -= SCAN_WINDOW_SIZE) {
+            long start = Math.max(0, p - SCAN_WINDOW_SIZE);
+            ByteBuffer w = region(start, p);
+            for (int i = (int) (p - start) - 1; i >= 0; i--) {
+                byte c = w.get(i);
+                if (c == '\n' || c == '\r') return start + i + 1;
+            }
+        }
+        return 0;
+    }
+
+    //---------------------------------------------------------------------------
+    // Parsing
+
+    /**
+     * Constructs the reader for a chunk. Override to configure readers further.
+     */
+    protected JSONByteReader newReader(ByteBuffer chunk) {
+        JSONByteReader r = new JSONByteReader(chunk);
+        r.setNumberPolicy(numberPolicy);
+        r.setKeyCache(keyCache);
+        return r;
+    }
+
+    /**
+     * Parses the given chunk. Line and column numbers are only needed if there is an error, so the chunk is first
+     * parsed as if it started a line, on line zero; on error, it is parsed again from its true starting line and
+     * column to report the error exactly.
+     */
+    protected List<Object> parseChunk(long[] bounds, int chunk) throws IOException {
+        try {
+            return parseChunk(bounds, chunk, 0, bounds[chunk]);
+        } catch (JSONSyntaxError e) {
+            if (bounds[chunk] == 0) throw e;
+            return parseChunk(bounds, chunk, countLines(0, bounds[chunk]), lineStart(bounds[chunk]));
+        }
+    }
+
+    /**
+     * Parses the given chunk, given the number of line terminators before it and the offset of the start of the
+     * line it starts on.
+     */
+    protected List<Object> parseChunk(long[] bounds, int chunk, int startLine, long lineStart) throws IOException {
+        JSONByteReader r = newReader(region(bounds[chunk], bounds[chunk + 1]));
+        r.line = startLine;
+        r.base += bounds[chunk];
+        r.lineStart = lineStart;
+        boolean last = chunk == bounds.length - 2;
+        List<Object> values = new ArrayList<>();
+        while (true) {
+            r.skipWhiteSpace();
+            if (r.atEOF()) return values;
+            try {
+                values.add(r.read());
+            } catch (EOFException e) {
+                if (last) throw e;
+                r.syntaxError(newlineDelimited ? "Value continues past end of line" : "Value continues past chunk");
+            }
+        }
+    }
+}
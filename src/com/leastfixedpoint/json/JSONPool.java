@@ -0,0 +1,65 @@
+package com.leastfixedpoint.json;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.function.Supplier;
+
+/**
+ * Per-thread cache of a single reusable instance, backing the static helpers of {@link JSONReader} and
+ * {@link JSONWriter}. An instance is marked busy while in use, so that reentrant calls on the same thread (from a
+ * {@link JSONSerializable}, say) get a fresh instance rather than clobbering the cached one. Virtual threads are
+ * short-lived and numerous, so caching per virtual thread would retain memory without much reuse; on virtual threads,
+ * {@link #acquire()} always returns null.
+ */
+final class JSONPool<T> {
+    private static final MethodHandle IS_VIRTUAL = isVirtualHandle();
+
+    private final ThreadLocal<Entry<T>> entries;
+
+    static final class Entry<T> {
+        final T value;
+        boolean busy;
+
+        Entry(T value) {
+            this.value = value;
+        }
+
+        void release() {
+            busy = false;
+        }
+    }
+
+    JSONPool(Supplier<T> factory) {
+        this.entries = ThreadLocal.withInitial(() -> new Entry<>(factory.get()));
+    }
+
+    /**
+     * Returns this thread's entry, marked busy, or null if it is already busy or the current thread is virtual.
+     * Callers must {@link Entry#release()} the entry when done with it.
+     */
+    Entry<T> acquire() {
+        if (isVirtualThread()) return null;
+        Entry<T> e = entries.get();
+        if (e.busy) return null;
+        e.busy = true;
+        return e;
+    }
+
+    static boolean isVirtualThread() {
+        if (IS_VIRTUAL == null) return false;
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(Thread.currentThread());
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    private static MethodHandle isVirtualHandle() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
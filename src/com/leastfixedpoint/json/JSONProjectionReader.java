@@ -0,0 +1,321 @@
+package com.leastfixedpoint.json;
+
+import com.leastfixedpoint.json.JSONReader.Lexeme;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads only selected parts of JSON values, skipping everything else without constructing it.
+ * <p>
+ * Paths are given up front, either as JSON Pointers (RFC 6901), such as {@code "/user/id"}, or as simple path
+ * expressions, such as {@code "$.user.id"} or {@code "$.items[*].price"}. Path expressions start with {@code $}
+ * (the whole value), followed by any number of steps: {@code .name} or {@code ['name']} selects an object member,
+ * {@code [n]} selects an array element, and {@code .*} or {@code [*]} selects every member or element. A JSON
+ * Pointer reference token made up of digits selects both the object member of that name and the array element at
+ * that index.
+ * <p>
+ * Input is walked with a {@link JSONEventReader}. Subtrees that no path can reach are discarded with
+ * {@link JSONEventReader#skipValue()}, which only tracks bracket nesting and string state; subtrees selected by a
+ * path are read in full with {@link JSONEventReader#nextValue()}. Only the arrays and objects lying on the way to a
+ * selected value are visited token by token.
+ * <p>
+ * {@link #read()} returns a pruned copy of each value, in the representation documented for {@link JSONReader}:
+ * every array or object lying on the way to some path is kept, holding only the members and elements that lead to,
+ * or are, selected values. Alternatively, {@link #read(MatchHandler)} reports each selected value to a callback,
+ * constructing nothing else.
+ */
+public class JSONProjectionReader {
+    protected JSONEventReader events;
+    protected Node root = new Node();
+    protected List<Node> rootNodes = Arrays.asList(root);
+
+    /**
+     * Receives each value selected by a path.
+     */
+    public interface MatchHandler {
+        /**
+         * Called with the path (exactly as given to the JSONProjectionReader constructor) and the selected value.
+         */
+        void match(String path, Object value) throws IOException;
+    }
+
+    /**
+     * Construct a projection reader selecting the given paths from values read by the given JSONReader. Throws
+     * IllegalArgumentException if a path is malformed.
+     */
+    public JSONProjectionReader(JSONReader reader, String... paths) {
+        this(reader, Arrays.asList(paths));
+    }
+
+    /**
+     * Construct a projection reader selecting the given paths from values read by the given JSONReader. Throws
+     * IllegalArgumentException if a path is malformed.
+     */
+    public JSONProjectionReader(JSONReader reader, Collection<String> paths) {
+        this.events = new JSONEventReader(reader);
+        for (String path : paths) {
+            insert(root, parsePath(path), 0, path);
+        }
+    }
+
+    /**
+     * Selects the given paths from a single JSON value held in a string, returning the pruned value.
+     */
+    public static Object readFrom(String s, String... paths) throws IOException {
+        JSONReader reader = new JSONReader(s);
+        Object result = new JSONProjectionReader(reader, paths).read();
+        reader.expectEOF();
+        return result;
+    }
+
+    /**
+     * Selects the given paths from a single UTF-8 encoded JSON value, returning the pruned value.
+     */
+    public static Object readFrom(byte[] bytes, String... paths) throws IOException {
+        JSONByteReader reader = new JSONByteReader(bytes);
+        Object result = new JSONProjectionReader(reader, paths).read();
+        reader.expectEOF();
+        return result;
+    }
+
+    /**
+     * Retrieve the underlying event reader.
+     */
+    public JSONEventReader getEventReader() {
+        return events;
+    }
+
+    /**
+     * Reads the next JSON value, returning its pruned copy; or null, if the value is neither selected by any path
+     * nor an array or object. Throws EOFException at the end of the input.
+     */
+    public Object read() throws IOException {
+        return project(rootNodes, true, null);
+    }
+
+    /**
+     * As read(), but wraps the result in {@link JSONValue}.
+     */
+    public JSONValue readValue() throws IOException {
+        return JSONValue.wrap(read());
+    }
+
+    /**
+     * Reads the next JSON value, passing each selected part of it to the given handler, in input order. Returns
+     * false at the end of the input.
+     */
+    public boolean read(MatchHandler handler) throws IOException {
+        if (events.beforeValue() == -1) return false;
+        project(rootNodes, false, handler);
+        return true;
+    }
+
+    protected Object project(List<Node> nodes, boolean build, MatchHandler handler) throws IOException {
+        for (Node n : nodes) {
+            if (n.paths != null) {
+                Object value = events.nextValue();
+                if (value == null) throw new EOFException();
+                if (handler != null) {
+                    for (Node m : nodes) report(m, value, handler);
+                }
+                return value;
+            }
+        }
+        Object token = events.next();
+        if (token == Lexeme.OBJECT_START) return projectObject(nodes, build, handler);
+        if (token == Lexeme.ARRAY_START) return projectArray(nodes, build, handler);
+        if (token == null) throw new EOFException();
+        return null;
+    }
+
+    protected Map<String, Object> projectObject(List<Node> nodes, boolean build, MatchHandler handler)
+            throws IOException
+    {
+        Map<String, Object> result = build ? new HashMap<>() : null;
+        while (true) {
+            Object key = events.next();
+            if (key == Lexeme.OBJECT_END) return result;
+            if (key == null) throw new EOFException();
+            List<Node> children = children(nodes, (String) key, -1);
+            if (children == null) {
+                events.skipValue();
+                continue;
+            }
+            Object value = project(children, build, handler);
+            if (build && value != null) result.put((String) key, value);
+        }
+    }
+
+    protected List<Object> projectArray(List<Node> nodes, boolean build, MatchHandler handler) throws IOException {
+        List<Object> result = build ? new ArrayList<>() : null;
+        for (int i = 0; ; i++) {
+            List<Node> children = children(nodes, null, i);
+            if (children == null) {
+                if (events.skipValue()) continue;
+                break;
+            }
+            if (events.beforeValue() == -1) break;
+            Object value = project(children, build, handler);
+            if (build && value != null) result.add(value);
+        }
+        if (events.next() != Lexeme.ARRAY_END) throw new EOFException();
+        return result;
+    }
+
+    /**
+     * Returns the trie nodes reached from the given nodes by the object member with the given key or, if key is
+     * null, by the array element with the given index; or null, if there are none.
+     */
+    protected static List<Node> children(List<Node> nodes, String key, int index) {
+        List<Node> result = null;
+        for (Node n : nodes) {
+            Node c = (key != null)
+                    ? ((n.keys == null) ? null : n.keys.get(key))
+                    : ((n.indexes == null) ? null : n.indexes.get(index));
+            if (c != null) {
+                if (result == null) result = new ArrayList<>(2);
+                result.add(c);
+            }
+            if (n.wildcard != null) {
+                if (result == null) result = new ArrayList<>(2);
+                result.add(n.wildcard);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reports the given value to the handler for every path ending at the given node, and every value nested
+     * within it that is selected by a longer path passing through the node.
+     */
+    protected static void report(Node n, Object value, MatchHandler handler) throws IOException {
+        if (n.paths != null) {
+            for (String path : n.paths) handler.match(path, value);
+        }
+        if (value instanceof Map) {
+            if (n.keys == null && n.wildcard == null) return;
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                Node c = (n.keys == null) ? null : n.keys.get(e.getKey());
+                if (c != null) report(c, e.getValue(), handler);
+                if (n.wildcard != null) report(n.wildcard, e.getValue(), handler);
+            }
+        } else if (value instanceof List) {
+            if (n.indexes == null && n.wildcard == null) return;
+            List<?> items = (List<?>) value;
+            for (int i = 0; i < items.size(); i++) {
+                Node c = (n.indexes == null) ? null : n.indexes.get(i);
+                if (c != null) report(c, items.get(i), handler);
+                if (n.wildcard != null) report(n.wildcard, items.get(i), handler);
+            }
+        }
+    }
+
+    protected static void insert(Node n, List<Object> steps, int i, String path) {
+        if (i == steps.size()) {
+            if (n.paths == null) n.paths = new ArrayList<>(1);
+            n.paths.add(path);
+            return;
+        }
+        Object step = steps.get(i);
+        if (step == WILDCARD) {
+            if (n.wildcard == null) n.wildcard = new Node();
+            insert(n.wildcard, steps, i + 1, path);
+        } else if (step instanceof String) {
+            if (n.keys == null) n.keys = new HashMap<>();
+            insert(n.keys.computeIfAbsent((String) step, k -> new Node()), steps, i + 1, path);
+        } else if (step instanceof Integer) {
+            if (n.indexes == null) n.indexes = new HashMap<>();
+            insert(n.indexes.computeIfAbsent((Integer) step, k -> new Node()), steps, i + 1, path);
+        } else {
+            for (Object alternative : (Object[]) step) {
+                List<Object> s = new ArrayList<>(steps);
+                s.set(i, alternative);
+                insert(n, s, i, path);
+            }
+        }
+    }
+
+    /**
+     * Parses a JSON Pointer or path expression into a list of steps: a String selects an object member, an Integer
+     * an array element, WILDCARD every member or element, and an Object[] any of its alternatives.
+     */
+    protected static List<Object> parsePath(String path) {
+        List<Object> steps = new ArrayList<>();
+        if (path.isEmpty() || path.charAt(0) == '/') {
+            int i = 0;
+            while (i < path.length()) {
+                int j = path.indexOf('/', i + 1);
+                if (j == -1) j = path.length();
+                String token = path.substring(i + 1, j).replace("~1", "/").replace("~0", "~");
+                Integer index = parseIndex(token);
+                steps.add((index == null) ? token : new Object[] { token, index });
+                i = j;
+            }
+            return steps;
+        }
+        if (path.charAt(0) != '$') throw badPath(path);
+        int i = 1;
+        while (i < path.length()) {
+            char c = path.charAt(i);
+            if (c == '.') {
+                int j = i + 1;
+                while (j < path.length() && path.charAt(j) != '.' && path.charAt(j) != '[') j++;
+                String name = path.substring(i + 1, j);
+                if (name.isEmpty()) throw badPath(path);
+                steps.add(name.equals("*") ? WILDCARD : name);
+                i = j;
+            } else if (c == '[') {
+                int j = path.indexOf(']', i);
+                if (j == -1) throw badPath(path);
+                String sel = path.substring(i + 1, j);
+                if (sel.equals("*")) {
+                    steps.add(WILDCARD);
+                } else if (sel.length() >= 2
+                        && (sel.charAt(0) == '\'' || sel.charAt(0) == '"')
+                        && sel.charAt(sel.length() - 1) == sel.charAt(0)) {
+                    steps.add(sel.substring(1, sel.length() - 1));
+                } else {
+                    Integer index = parseIndex(sel);
+                    if (index == null) throw badPath(path);
+                    steps.add(index);
+                }
+                i = j + 1;
+            } else {
+                throw badPath(path);
+            }
+        }
+        return steps;
+    }
+
+    private static Integer parseIndex(String s) {
+        if (s.isEmpty() || s.length() > 9) return null;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return null;
+        }
+        return Integer.valueOf(s);
+    }
+
+    private static IllegalArgumentException badPath(String path) {
+        return new IllegalArgumentException("Invalid path expression: " + path);
+    }
+
+    protected static final Object WILDCARD = new Object();
+
+    /**
+     * A node in the trie of paths. Each field is null when no path continues that way.
+     */
+    protected static final class Node {
+        Map<String, Node> keys;
+        Map<Integer, Node> indexes;
+        Node wildcard;
+        List<String> paths;
+    }
+}
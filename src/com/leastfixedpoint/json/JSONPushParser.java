@@ -0,0 +1,538 @@
+package com.leastfixedpoint.json;
+
+import com.leastfixedpoint.json.JSONReader.Lexeme;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Non-blocking, push-style counterpart to {@link JSONEventReader}, for use with NIO selectors, asynchronous channels
+ * and the like.
+ * <p>
+ * Rather than pulling input from a Reader, this class is given input as it arrives, in chunks of any size, by calling
+ * {@link #feed(byte[], int, int)} (for UTF-8 encoded bytes) or {@link #feed(char[], int, int)} (for characters).
+ * Calling {@link #next()} then yields the same tokens JSONEventReader would, until the input fed so far is exhausted,
+ * whereupon it returns {@link #NEED_INPUT}. Strings, numbers and atoms may be split across chunks at any point,
+ * including within a UTF-8 sequence or an escape; the partial token is kept, and completed by later input. Once
+ * {@link #endOfInput()} has been called, next() returns null at the end of the input, or throws EOFException if the
+ * input ends part-way through a value.
+ * <p>
+ * A parser holds no reference to the arrays given to feed(), and may be fed again at any time. Feed it either bytes
+ * or characters, not both.
+ * <p>
+ * The parser shares JSONEventReader's {@link JSONEventStateMachine state machine}, but not its methods for reading
+ * or skipping whole values, since those need input that can be pulled on demand.
+ */
+public class JSONPushParser extends JSONEventStateMachine {
+    /**
+     * Returned by {@link #next()} when no further token can be produced until more input is fed.
+     */
+    public static final Object NEED_INPUT = new Object() {
+        @Override
+        public String toString() {
+            return "NEED_INPUT";
+        }
+    };
+
+    protected final Tokenizer tokenizer;
+
+    public JSONPushParser() {
+        this(new Tokenizer());
+    }
+
+    protected JSONPushParser(Tokenizer tokenizer) {
+        super(tokenizer);
+        this.tokenizer = tokenizer;
+    }
+
+    public JSONReader.NumberPolicy getNumberPolicy() {
+        return tokenizer.getNumberPolicy();
+    }
+
+    /**
+     * See {@link JSONReader#setNumberPolicy(JSONReader.NumberPolicy)}.
+     */
+    public void setNumberPolicy(JSONReader.NumberPolicy value) {
+        tokenizer.setNumberPolicy(value);
+    }
+
+    public JSONKeyCache getKeyCache() {
+        return tokenizer.getKeyCache();
+    }
+
+    /**
+     * See {@link JSONReader#setKeyCache(JSONKeyCache)}.
+     */
+    public void setKeyCache(JSONKeyCache value) {
+        tokenizer.setKeyCache(value);
+    }
+
+    /**
+     * Supplies more UTF-8 encoded input. The bytes are decoded immediately, so the array may be reused as soon as
+     * this method returns.
+     */
+    public void feed(byte[] bytes, int offset, int length) {
+        tokenizer.feed(bytes, offset, length);
+    }
+
+    public void feed(byte[] bytes) {
+        feed(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Supplies the remaining bytes of the given buffer as UTF-8 encoded input, advancing its position to its limit.
+     */
+    public void feed(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            feed(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+        } else {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            feed(bytes);
+        }
+    }
+
+    /**
+     * Supplies more input characters. The characters are copied, so the array may be reused as soon as this method
+     * returns.
+     */
+    public void feed(char[] chars, int offset, int length) {
+        tokenizer.feed(chars, offset, length);
+    }
+
+    public void feed(CharSequence chars) {
+        char[] cs = chars.toString().toCharArray();
+        feed(cs, 0, cs.length);
+    }
+
+    /**
+     * Signals that no more input will be fed.
+     */
+    public void endOfInput() {
+        tokenizer.endOfInput();
+    }
+
+    /**
+     * Yields the next JSON token, as {@link JSONEventReader#next()} does; or {@link #NEED_INPUT}, if the input fed so
+     * far holds no further complete token; or null, once {@link #endOfInput()} has been called and all input
+     * consumed.
+     * @throws EOFException if the input ended part-way through a value
+     */
+    public Object next() throws IOException {
+        while (true) {
+            Object token = tokenizer.token();
+            if (token == NEED_INPUT) return token;
+            if (token == null) {
+                if (!atBoundary()) throw new EOFException();
+                return null;
+            }
+            if (token instanceof String && tokenizer.keyCache != null && atKey()) {
+                token = tokenizer.keyCache.intern((String) token);
+            }
+            token = accept(token);
+            if (token != null) return token;
+        }
+    }
+
+    /**
+     * Resumable tokenizer. Input is appended to the window by feed(); token() consumes as much of it as it can,
+     * keeping the state of any partial token in fields until the rest of it arrives.
+     */
+    protected static class Tokenizer extends JSONReader {
+        protected static final int L_WHITESPACE = 0;
+        protected static final int L_COMMENT_START = 1;
+        protected static final int L_COMMENT = 2;
+        protected static final int L_ATOM = 3;
+        protected static final int L_STRING = 4;
+        protected static final int L_ESCAPE = 5;
+        protected static final int L_UNICODE = 6;
+        protected static final int L_NUMBER = 7;
+
+        protected static final int N_START = 0;
+        protected static final int N_INTEGER = 1;
+        protected static final int N_FRACTION = 2;
+        protected static final int N_EXPONENT_SIGN = 3;
+        protected static final int N_EXPONENT = 4;
+
+        protected int lexState = L_WHITESPACE;
+        protected boolean endOfInput = false;
+
+        /** Partial atom. */
+        protected String atom;
+        protected Object atomValue;
+        protected int atomIndex;
+
+        /** Partial string: text before tokenStart has already been moved to text. */
+        protected char sep;
+        protected int tokenStart;
+        protected final StringBuilder text = new StringBuilder();
+        protected int hexCount;
+        protected int hexValue;
+
+        /** Partial number; the digits accumulate in the num* fields as they do in {@link #scanNumber()}. */
+        protected int numState;
+        protected int numDigits;
+        protected boolean numNegativeExponent;
+        protected int numExponentDigits;
+
+        /** Partial UTF-8 sequence. */
+        protected int utf8Count;
+        protected int utf8Value;
+        protected int utf8Min;
+
+        /** Initial size of the window; small, as there may be many idle parsers. It grows as needed. */
+        protected static final int INITIAL_BUFFER_SIZE = 256;
+
+        protected Tokenizer() {
+            this.cbuf = new char[INITIAL_BUFFER_SIZE];
+        }
+
+        protected void endOfInput() {
+            if (utf8Count > 0) {
+                utf8Count = 0;
+                char[] b = ensureSpace(1);
+                b[limit++] = '\uFFFD';
+            }
+            endOfInput = true;
+        }
+
+        /**
+         * Discards consumed input, after saving any part of a token in progress, and returns the window with room for
+         * at least n more characters at limit.
+         */
+        protected char[] ensureSpace(int n) {
+            if (pos > 0) {
+                if (lexState == L_STRING || lexState == L_NUMBER) {
+                    text.append(cbuf, tokenStart, pos - tokenStart);
+                    tokenStart = 0;
+                }
+                discardPosition(pos);
+                System.arraycopy(cbuf, pos, cbuf, 0, limit - pos);
+                limit -= pos;
+                pos = 0;
+            }
+            if (limit + n > cbuf.length) {
+                cbuf = Arrays.copyOf(cbuf, Math.max(cbuf.length * 2, limit + n));
+            }
+            return cbuf;
+        }
+
+        protected void feed(char[] chars, int offset, int length) {
+            if (endOfInput) throw new IllegalStateException("Input already ended");
+            char[] b = ensureSpace(length);
+            System.arraycopy(chars, offset, b, limit, length);
+            limit += length;
+        }
+
+        protected void feed(byte[] bytes, int offset, int length) {
+            if (endOfInput) throw new IllegalStateException("Input already ended");
+            // Each byte decodes to at most one char, except that a pending sequence may complete as a surrogate pair.
+            final char[] b = ensureSpace(length + 1);
+            int n = limit;
+            final int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                byte c = bytes[i];
+                if (utf8Count == 0) {
+                    if (c >= 0) {
+                        b[n++] = (char) c;
+                    } else if ((c & 0xe0) == 0xc0) {
+                        utf8Count = 1; utf8Value = c & 0x1f; utf8Min = 0x80;
+                    } else if ((c & 0xf0) == 0xe0) {
+                        utf8Count = 2; utf8Value = c & 0x0f; utf8Min = 0x800;
+                    } else if ((c & 0xf8) == 0xf0) {
+                        utf8Count = 3; utf8Value = c & 0x07; utf8Min = 0x10000;
+                    } else {
+                        b[n++] = '\uFFFD';
+                    }
+                } else if ((c & 0xc0) != 0x80) {
+                    // Truncated sequence: replace it, then decode this byte afresh.
+                    utf8Count = 0;
+                    b[n++] = '\uFFFD';
+                    i--;
+                } else {
+                    utf8Value = (utf8Value << 6) | (c & 0x3f);
+                    if (--utf8Count == 0) {
+                        int cp = utf8Value;
+                        if (cp < utf8Min || cp > Character.MAX_CODE_POINT
+                                || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE)) {
+                            b[n++] = '\uFFFD';
+                        } else {
+                            n += Character.toChars(cp, b, n);
+                        }
+                    }
+                }
+            }
+            limit = n;
+        }
+
+        /** Result of token() when the input so far is consumed, but more may come. */
+        protected Object needInput() throws EOFException {
+            if (endOfInput) throw new EOFException();
+            return NEED_INPUT;
+        }
+
+        /**
+         * Returns the next lexeme; or NEED_INPUT, if the input fed so far is exhausted; or null, at the end of the
+         * input.
+         */
+        protected Object token() throws IOException {
+            while (true) {
+                final char[] b = cbuf;
+                switch (lexState) {
+                    case L_WHITESPACE: {
+                        int p = pos;
+                        while (p < limit && isWhiteSpace(b[p])) p++;
+                        pos = p;
+                        if (p == limit) return endOfInput ? null : NEED_INPUT;
+                        char c = b[pos++];
+                        switch (c) {
+                            case '"':
+                            case '\'':
+                                sep = c;
+                                tokenStart = pos;
+                                text.setLength(0);
+                                lexState = L_STRING;
+                                continue;
+                            case '[': return Lexeme.ARRAY_START;
+                            case ',': return Lexeme.COMMA;
+                            case ']': return Lexeme.ARRAY_END;
+                            case '{': return Lexeme.OBJECT_START;
+                            case ':': return Lexeme.COLON;
+                            case '}': return Lexeme.OBJECT_END;
+                            case '/':
+                                lexState = L_COMMENT_START;
+                                continue;
+                            case 't': startAtom("true", Boolean.TRUE); continue;
+                            case 'f': startAtom("false", Boolean.FALSE); continue;
+                            case 'n': startAtom("null", JSONNull.INSTANCE); continue;
+                            default:
+                                if (!((c >= '0' && c <= '9') || c == '-')) {
+                                    pos--;
+                                    syntaxError("Invalid character: {" + c + "}");
+                                }
+                                pos--;
+                                startNumber();
+                                continue;
+                        }
+                    }
+
+                    case L_COMMENT_START:
+                        if (pos == limit && !endOfInput) return NEED_INPUT;
+                        if (pos == limit || b[pos] != '/') syntaxError("Invalid comment");
+                        pos++;
+                        lexState = L_COMMENT;
+                        /* FALL THROUGH */
+                    case L_COMMENT: {
+                        int p = pos;
+                        while (p < limit && b[p] != '\n') p++;
+                        pos = p;
+                        if (p == limit) return endOfInput ? null : NEED_INPUT;
+                        lexState = L_WHITESPACE;
+                        continue;
+                    }
+
+                    case L_ATOM:
+                        while (atomIndex < atom.length()) {
+                            if (pos == limit) return needInput();
+                            if (b[pos] != atom.charAt(atomIndex)) syntaxError("Invalid input parsing '" + atom + "'");
+                            pos++;
+                            atomIndex++;
+                        }
+                        lexState = L_WHITESPACE;
+                        return atomValue;
+
+                    case L_STRING: {
+                        int p = pos;
+                        while (p < limit) {
+                            char c = b[p];
+                            if (c == sep || c == '\\') break;
+                            p++;
+                        }
+                        pos = p;
+                        if (p == limit) return needInput();
+                        pos++;
+                        if (b[p] == sep) {
+                            lexState = L_WHITESPACE;
+                            if (text.length() == 0) return new String(b, tokenStart, p - tokenStart);
+                            return text.append(b, tokenStart, p - tokenStart).toString();
+                        }
+                        text.append(b, tokenStart, p - tokenStart);
+                        lexState = L_ESCAPE;
+                        continue;
+                    }
+
+                    case L_ESCAPE: {
+                        if (pos == limit) return needInput();
+                        char c = b[pos];
+                        if (c == 'u') {
+                            pos++;
+                            hexCount = 0;
+                            hexValue = 0;
+                            lexState = L_UNICODE;
+                            continue;
+                        }
+                        char replacement = 0;
+                        switch (c) {
+                            case '"': replacement = '"'; break;
+                            case '\\': replacement = '\\'; break;
+                            case '/': replacement = '/'; break;
+
+                            case 'b': replacement = '\b'; break;
+                            case 'f': replacement = '\f'; break;
+                            case 'n': replacement = '\n'; break;
+                            case 'r': replacement = '\r'; break;
+                            case 't': replacement = '\t'; break;
+                            default: syntaxError("Invalid string escape {" + c + "}");
+                        }
+                        pos++;
+                        endEscape(replacement);
+                        continue;
+                    }
+
+                    case L_UNICODE:
+                        while (hexCount < 4) {
+                            if (pos == limit) return needInput();
+                            char c = b[pos++];
+                            // As in JSONReader, characters other than hex digits are skipped over.
+                            if (c >= '0' && c <= '9') {
+                                hexValue = (hexValue << 4) + c - '0';
+                            } else if (c >= 'a' && c <= 'f') {
+                                hexValue = (hexValue << 4) + c - 'a' + 10;
+                            } else if (c >= 'A' && c <= 'F') {
+                                hexValue = (hexValue << 4) + c - 'A' + 10;
+                            }
+                            hexCount++;
+                        }
+                        endEscape((char) hexValue);
+                        continue;
+
+                    case L_NUMBER: {
+                        Object value = continueNumber();
+                        if (value != NEED_INPUT) lexState = L_WHITESPACE;
+                        return value;
+                    }
+
+                    default:
+                        throw new IllegalStateException();
+                }
+            }
+        }
+
+        protected void startAtom(String atom, Object value) {
+            this.atom = atom;
+            this.atomValue = value;
+            this.atomIndex = 1;
+            this.lexState = L_ATOM;
+        }
+
+        protected void endEscape(char c) {
+            text.append(c);
+            tokenStart = pos;
+            lexState = L_STRING;
+        }
+
+        protected void startNumber() {
+            tokenStart = pos;
+            text.setLength(0);
+            numState = N_START;
+            numNegative = false;
+            numMantissa = 0;
+            numSignificant = 0;
+            numOverflow = false;
+            numFraction = 0;
+            numExponent = 0;
+            numIntegral = true;
+            numDigits = 0;
+            numNegativeExponent = false;
+            numExponentDigits = 0;
+            lexState = L_NUMBER;
+        }
+
+        /**
+         * Continues scanning a number, with the same syntax and arithmetic as {@link #scanNumber()}. Returns its value
+         * once a character that cannot continue it is seen, or NEED_INPUT.
+         */
+        protected Object continueNumber() throws IOException {
+            final char[] b = cbuf;
+            int p = pos;
+            try {
+                while (p < limit) {
+                    char c = b[p];
+                    switch (numState) {
+                        case N_START:
+                            if (c == '-') {
+                                numNegative = true;
+                                p++;
+                            }
+                            numState = N_INTEGER;
+                            continue;
+                        case N_INTEGER:
+                        case N_FRACTION:
+                            if (c >= '0' && c <= '9') {
+                                if (numSignificant < 18) {
+                                    numMantissa = numMantissa * 10 + (c - '0');
+                                    if (numMantissa != 0) numSignificant++;
+                                } else {
+                                    numOverflow = true;
+                                }
+                                numDigits++;
+                                if (numState == N_FRACTION) numFraction++;
+                                p++;
+                            } else if (c == '.' && numState == N_INTEGER) {
+                                numIntegral = false;
+                                numState = N_FRACTION;
+                                p++;
+                            } else if (c == 'e' || c == 'E') {
+                                if (numDigits == 0) break;
+                                numIntegral = false;
+                                numState = N_EXPONENT_SIGN;
+                                p++;
+                            } else {
+                                return endNumber(p);
+                            }
+                            continue;
+                        case N_EXPONENT_SIGN:
+                            if (c == '+' || c == '-') {
+                                numNegativeExponent = c == '-';
+                                p++;
+                            }
+                            numState = N_EXPONENT;
+                            continue;
+                        case N_EXPONENT:
+                            if (c >= '0' && c <= '9') {
+                                if (numExponent < Integer.MAX_VALUE) numExponent = numExponent * 10 + (c - '0');
+                                numExponentDigits++;
+                                p++;
+                                continue;
+                            }
+                            return endNumber(p);
+                    }
+                    break;
+                }
+                if (p < limit || endOfInput) return endNumber(p);
+            } finally {
+                pos = p;
+            }
+            return NEED_INPUT;
+        }
+
+        protected Object endNumber(int p) throws IOException {
+            pos = p;
+            if (numDigits == 0) syntaxError("Invalid number");
+            if (numState >= N_EXPONENT_SIGN) {
+                if (numExponentDigits == 0) syntaxError("Invalid number");
+                if (numNegativeExponent) numExponent = -numExponent;
+            }
+            return numberValue();
+        }
+
+        @Override
+        protected String numberText() {
+            String tail = new String(cbuf, tokenStart, pos - tokenStart);
+            return (text.length() == 0) ? tail : text + tail;
+        }
+    }
+}
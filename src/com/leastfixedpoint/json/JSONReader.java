@@ -27,9 +27,9 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.Reader;
-import java.io.StringReader;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,54 +38,260 @@ import java.util.Map;
  * Parse JSON text to Java values.
  * <p>
  * <ul>
- *     <li>JSON strings are represented as java.lang.String.</li>
+ *     <li>JSON strings are represented as java.lang.String, unless {@link #setStringViews(boolean)} selects
+ *     {@link JSONStringView}s for strings read from in-memory input.</li>
  *     <li>JSON true and false are represented as java.lang.Boolean.</li>
  *     <li>JSON null is represented as {@link JSONNull#INSTANCE}.</li>
- *     <li>JSON numbers are represented as Java java.math.BigDecimal.</li>
+ *     <li>JSON numbers are represented as Java java.math.BigDecimal, unless some other {@link NumberPolicy} is
+ *     selected with {@link #setNumberPolicy(NumberPolicy)}.</li>
  *     <li>JSON arrays are represented as java.util.List.</li>
- *     <li>JSON maps/objects are represented as java.util.Map.</li>
+ *     <li>JSON maps/objects are represented as java.util.Map; read-only {@link JSONCompactMap}s, if selected with
+ *     {@link #setCompactObjects(boolean)} or {@link #setShapeSharing(boolean)}.</li>
  * </ul>
  * <p>
- * Syntax errors are reported with JSONSyntaxError or, in case of short input, EOFException.
+ * Syntax errors are reported with JSONSyntaxError or, in case of short input, EOFException. Nested arrays and
+ * objects are read without recursion, so deeply nested input cannot exhaust the thread's stack; an explicit limit
+ * may be set with {@link #setMaxDepth(int)}.
  * <p>
  * This class is able to read multiple adjacent JSON values from a single input stream. However, some care is needed
- * when doing this, since this class maintains a one-character internal lookahead buffer. Reading a single JSON value
- * generally consumes up to one character more than needed. For example, given a reader with ready input "123x",
- * JSONReader will consume all four bytes. When reading multiple JSON values from a stream, it is important to use the
- * same JSONReader object, since it will maintain its internal lookahead buffer between objects and so will not
- * accidentally discard input.
+ * when doing this, since this class maintains an internal lookahead buffer. Input is pulled from the underlying
+ * Reader in large blocks, so reading a single JSON value generally consumes more input than needed. For example,
+ * given a reader with ready input "123x", JSONReader will consume all four bytes. When reading multiple JSON values
+ * from a stream, it is important to use the same JSONReader object, since it will maintain its internal lookahead
+ * buffer between objects and so will not accidentally discard input.
  * <p>
- * Furthermore, when given a Reader that is not a LineNumberReader, this class creates a wrapping LineNumberReader,
- * which may internally consume input from the underlying reader in a way not under our control.
+ * The position of syntax errors (line, column and offset) is tracked within the lookahead buffer itself, without
+ * wrapping the underlying Reader; see {@link #setPositionTracking(PositionTracking)}. When given a LineNumberReader,
+ * this class instead reads from it one character at a time, so that reading a single JSON value consumes at most one
+ * character more than needed, just as with earlier versions of this class, and line numbers continue from the
+ * LineNumberReader's own.
  * <p>
  * Finally, this class can be used as a simple SAX-style JSON tokenizer; see {@link JSONReader#nextLexeme()} and the
  * class {@link JSONEventReader}.
  */
 public class JSONReader {
-    protected int NO_TOKEN = -2;
     protected int EOF = -1;
 
-    private final StringBuilder buf = new StringBuilder();
-    protected LineNumberReader reader;
-    protected int _buffer = NO_TOKEN;
+    /**
+     * Size of the internal lookahead buffer, in characters, and the number of characters requested from the
+     * underlying Reader at a time.
+     */
+    protected static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * Buffers larger than this, in characters, are not kept for reuse by {@link #reset(Reader)} and friends, or by
+     * the pooled instances behind the static helpers.
+     */
+    protected static final int MAX_RETAINED_BUFFER_SIZE = 65536;
+
+    /** Initial capacities of the stacks used by {@link #container(Lexeme)}. */
+    private static final int INITIAL_STACK_SIZE = 16;
+    private static final int INITIAL_MEMBERS_SIZE = 64;
+
+    /** Stacks larger than this are not kept for reuse by {@link #reset(Reader)} and friends. */
+    private static final int MAX_RETAINED_STACK_SIZE = 1024;
+
+    private static final JSONPool<JSONReader> POOL = new JSONPool<>(JSONReader::new);
+
+    private StringBuilder buf = new StringBuilder();
+    /** Reusable view onto string contents; see {@link #stringChars(char)}. */
+    protected final CharSlice slice = new CharSlice();
+    protected Reader reader;
+
+    /**
+     * Members of the containers being read, innermost last, as values for arrays and alternating keys and values for
+     * objects; and, for each container suspended while reading a nested value, where its members start and whether it
+     * is an object.
+     */
+    private Object[] members = new Object[INITIAL_MEMBERS_SIZE];
+    private int[] frameStarts = new int[INITIAL_STACK_SIZE];
+    private boolean[] frameObjects = new boolean[INITIAL_STACK_SIZE];
+
+    /** See {@link #getContainersRead()} and {@link #getResizesAvoided()}. */
+    protected long containersRead = 0;
+    protected long resizesAvoided = 0;
+
+    /** Recently seen object shapes, indexed by a hash of their keys; see {@link #setShapeSharing(boolean)}. */
+    private JSONShape[] shapes = null;
+    private static final int SHAPE_CACHE_SIZE = 256;
+    /** See {@link #getShapesShared()}. */
+    protected long shapesShared = 0;
+
+    /** Input window. Characters cbuf[pos..limit) have been read but not yet consumed. */
+    protected char[] cbuf;
+    /** True if cbuf was allocated by this reader, rather than supplied by the caller, and so may be reused. */
+    protected boolean ownsBuffer;
+    protected int pos;
+    protected int limit;
+    /** If non-negative, the start of a token in progress, which fill() must keep in the window. */
+    protected int mark = -1;
+    /** Maximum number of characters to request from the underlying reader per fill(). */
+    protected int chunkSize;
+    protected boolean eof = false;
+
+    protected NumberPolicy numberPolicy = NumberPolicy.BIG_DECIMAL;
+    protected JSONKeyCache keyCache = null;
+    protected boolean stringViews = false;
+    protected boolean compactObjects = false;
+    protected boolean shapeSharing = false;
+    protected PositionTracking positionTracking = PositionTracking.FULL;
+    protected int maxDepth = Integer.MAX_VALUE;
+
+    /** Results of the most recent call to {@link #scanNumber()}. */
+    protected boolean numNegative;
+    protected long numMantissa;
+    protected int numSignificant;
+    protected boolean numOverflow;
+    protected int numFraction;
+    protected long numExponent;
+    protected boolean numIntegral;
+
+    /** Input offset corresponding to cbuf[0]. */
+    protected long base = 0;
+    /**
+     * Number of line terminators seen in the input before cbuf[lineScan], or -1 if unknown because input was
+     * discarded without being counted; see {@link PositionTracking#OFFSET}.
+     */
+    protected int line = 0;
+    protected int lineScan;
+    protected boolean pendingCR = false;
+    /** Input offset of the start of the line containing cbuf[lineScan]. */
+    protected long lineStart = 0;
+
+    /**
+     * For subclasses that supply their own input window; see {@link JSONByteReader}.
+     */
+    protected JSONReader() {
+    }
 
     /**
      * Construct a reader that reads JSON text from the given Reader.
-     * If the Reader is not a LineNumberReader, it is wrapped in a LineNumberReader.
+     * If the Reader is a LineNumberReader, it is read one character at a time.
      * @param r Input to the JSONReader.
      */
     public JSONReader(Reader r) {
+        this.reader = r;
+        if (r instanceof LineNumberReader) {
+            this.line = ((LineNumberReader) r).getLineNumber();
+            this.chunkSize = 1;
+            this.cbuf = new char[64];
+        } else {
+            this.chunkSize = DEFAULT_BUFFER_SIZE;
+            this.cbuf = new char[DEFAULT_BUFFER_SIZE];
+        }
+        this.ownsBuffer = true;
+    }
+
+    /**
+     * Construct a reader that reads JSON text directly out of the given character array, without copying it.
+     * The array must not be modified while the reader is in use.
+     */
+    public JSONReader(char[] chars, int offset, int length) {
+        this.reader = null;
+        this.cbuf = chars;
+        this.pos = offset;
+        this.limit = offset + length;
+        this.lineScan = offset;
+        this.base = -offset;
+    }
+
+    /**
+     * Construct a reader that reads JSON text from the given string. The whole text is scanned in memory, without
+     * an intermediate Reader.
+     */
+    public JSONReader(String s) {
+        this(s.toCharArray(), 0, s.length());
+        this.ownsBuffer = true;
+    }
+
+    /**
+     * Discards all input and internal state, and prepares to read JSON text from the given Reader, just as a freshly
+     * constructed JSONReader would. Settings such as the {@link NumberPolicy} and {@link JSONKeyCache} are retained,
+     * as are internal buffers of moderate size.
+     */
+    public void reset(Reader r) {
+        this.reader = r;
         if (r instanceof LineNumberReader) {
-            this.reader = (LineNumberReader) r;
+            this.chunkSize = 1;
+            this.cbuf = scratch(64);
         } else {
-            this.reader = new LineNumberReader(r);
+            this.chunkSize = DEFAULT_BUFFER_SIZE;
+            this.cbuf = scratch(DEFAULT_BUFFER_SIZE);
+        }
+        resetState(0, 0);
+        if (r instanceof LineNumberReader) this.line = ((LineNumberReader) r).getLineNumber();
+    }
+
+    /**
+     * As {@link #reset(Reader)}, but prepares to read the given string. The text is copied into an internal buffer,
+     * which is reused where possible.
+     */
+    public void reset(String s) {
+        this.reader = null;
+        this.cbuf = scratch(s.length());
+        s.getChars(0, s.length(), this.cbuf, 0);
+        resetState(0, s.length());
+    }
+
+    /**
+     * As {@link #reset(Reader)}, but prepares to read directly out of the given character array, without copying
+     * it. The array must not be modified while the reader is in use.
+     */
+    public void reset(char[] chars, int offset, int length) {
+        this.reader = null;
+        this.cbuf = chars;
+        this.ownsBuffer = false;
+        resetState(offset, offset + length);
+    }
+
+    /**
+     * Returns cbuf, if this reader owns it and it is large enough but not excessively so; otherwise a new buffer
+     * of the given size, which this reader then owns.
+     */
+    private char[] scratch(int size) {
+        if (ownsBuffer && cbuf != null && cbuf.length >= size && cbuf.length <= MAX_RETAINED_BUFFER_SIZE) {
+            return cbuf;
         }
+        ownsBuffer = true;
+        return new char[size];
+    }
+
+    protected void resetState(int pos, int limit) {
+        this.pos = pos;
+        this.limit = limit;
+        this.mark = -1;
+        this.eof = false;
+        this.base = -pos;
+        this.line = 0;
+        this.lineScan = pos;
+        this.lineStart = 0;
+        this.pendingCR = false;
+        if (buf.capacity() > MAX_RETAINED_BUFFER_SIZE) buf = new StringBuilder();
+        buf.setLength(0);
+        slice.set(null, 0, 0);
+        if (members.length > MAX_RETAINED_BUFFER_SIZE) members = new Object[INITIAL_MEMBERS_SIZE];
+        if (frameStarts.length > MAX_RETAINED_STACK_SIZE) {
+            frameStarts = new int[INITIAL_STACK_SIZE];
+            frameObjects = new boolean[INITIAL_STACK_SIZE];
+        }
+    }
+
+    /**
+     * Drops references to the input, and any oversized buffers, before a pooled instance goes back into its pool.
+     */
+    private void recycle() {
+        reader = null;
+        if (!ownsBuffer || cbuf.length > MAX_RETAINED_BUFFER_SIZE) {
+            cbuf = null;
+            ownsBuffer = false;
+        }
+        resetState(0, 0);
     }
 
     /**
-     * Retrieve the underlying LineNumberReader.
+     * Retrieve the underlying Reader, or null if this reader was constructed over in-memory text.
      */
-    public LineNumberReader getReader() {
+    public Reader getReader() {
         return reader;
     }
 
@@ -110,7 +316,7 @@ public class JSONReader {
      * Calls expectEOF() after reading, to ensure no trailing junk is present.
      */
     public static Object readFrom(String s) throws IOException {
-        return readFrom(new StringReader(s), true);
+        return readFrom(s, true);
     }
 
     /**
@@ -127,7 +333,15 @@ public class JSONReader {
      * Otherwise, ignores any input following the JSON value returned.
      */
     public static Object readFrom(String s, boolean ensureSingleValue) throws IOException {
-        return readFrom(new StringReader(s), ensureSingleValue);
+        JSONPool.Entry<JSONReader> e = POOL.acquire();
+        if (e == null) return readFrom(new JSONReader(s), ensureSingleValue);
+        try {
+            e.value.reset(s);
+            return readFrom(e.value, ensureSingleValue);
+        } finally {
+            e.value.recycle();
+            e.release();
+        }
     }
 
     /**
@@ -150,30 +364,269 @@ public class JSONReader {
      * of JSONReader should be used to parse the whole stream.
      */
     protected static Object readFrom(Reader r, boolean ensureSingleValue) throws IOException {
-        JSONReader jsonReader = new JSONReader(r);
+        JSONPool.Entry<JSONReader> e = POOL.acquire();
+        if (e == null) return readFrom(new JSONReader(r), ensureSingleValue);
+        try {
+            e.value.reset(r);
+            return readFrom(e.value, ensureSingleValue);
+        } finally {
+            e.value.recycle();
+            e.release();
+        }
+    }
+
+    private static Object readFrom(JSONReader jsonReader, boolean ensureSingleValue) throws IOException {
         Object result = jsonReader.read();
         if (ensureSingleValue) jsonReader.expectEOF();
         return result;
     }
 
+    /**
+     * Retrieve the representation used for JSON numbers.
+     */
+    public NumberPolicy getNumberPolicy() {
+        return numberPolicy;
+    }
+
+    /**
+     * Select the representation used for JSON numbers read in future.
+     */
+    public void setNumberPolicy(NumberPolicy value) {
+        numberPolicy = value;
+    }
+
+    /**
+     * Retrieve the cache used to canonicalize object keys, or null if keys are not cached.
+     */
+    public JSONKeyCache getKeyCache() {
+        return keyCache;
+    }
+
+    /**
+     * Install a cache for canonicalizing object keys read by {@link #read()}, or null to disable key caching.
+     * The same cache may be shared among several readers.
+     */
+    public void setKeyCache(JSONKeyCache value) {
+        keyCache = value;
+    }
+
+    /**
+     * Answers true iff strings are read as {@link JSONStringView}s where possible.
+     */
+    public boolean getStringViews() {
+        return stringViews;
+    }
+
+    /**
+     * If given true, strings without escapes read in future from in-memory character input (a String or char
+     * array) are returned as {@link JSONStringView}s onto the input, rather than copied into new Strings. Object
+     * keys are always Strings. Has no effect on readers over a Reader or on {@link JSONByteReader}s.
+     */
+    public void setStringViews(boolean value) {
+        stringViews = value;
+    }
+
+    /**
+     * Answers true iff JSON objects are read as {@link JSONCompactMap}s.
+     */
+    public boolean getCompactObjects() {
+        return compactObjects;
+    }
+
+    /**
+     * Select whether JSON objects are read as read-only {@link JSONCompactMap}s, which take much less memory than
+     * HashMaps and preserve the order of their keys, rather than as HashMaps.
+     */
+    public void setCompactObjects(boolean value) {
+        compactObjects = value;
+    }
+
+    /**
+     * Answers true iff JSON objects are read as {@link JSONCompactMap}s sharing {@link JSONShape}s.
+     */
+    public boolean getShapeSharing() {
+        return shapeSharing;
+    }
+
+    /**
+     * Select whether JSON objects are read as {@link JSONCompactMap}s that share a single {@link JSONShape} with
+     * recently read objects having the same keys in the same order, as is usual for records in a stream of
+     * newline-delimited JSON. Each such object then costs only an array of its values. Implies compact objects,
+     * whatever the setting of {@link #setCompactObjects(boolean)}.
+     */
+    public void setShapeSharing(boolean value) {
+        shapeSharing = value;
+    }
+
+    /**
+     * The number of objects read by this reader since it was constructed that shared the shape of an earlier object.
+     */
+    public long getShapesShared() {
+        return shapesShared;
+    }
+
+    /**
+     * Retrieve the extent to which input positions are tracked for error reporting.
+     */
+    public PositionTracking getPositionTracking() {
+        return positionTracking;
+    }
+
+    /**
+     * Select the extent to which input positions are tracked for error reporting.
+     */
+    public void setPositionTracking(PositionTracking value) {
+        positionTracking = value;
+    }
+
+    /**
+     * Retrieve the maximum nesting depth of arrays and objects accepted by {@link #read()}.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Limit the nesting depth of arrays and objects accepted by {@link #read()}; deeper input is rejected with a
+     * JSONSyntaxError. A top-level array or object has depth 1. Since nesting is tracked on the heap rather than on
+     * the thread's stack, the default is Integer.MAX_VALUE, i.e. no limit.
+     */
+    public void setMaxDepth(int value) {
+        maxDepth = value;
+    }
+
+    /**
+     * The number of arrays and objects built by this reader since it was constructed.
+     */
+    public long getContainersRead() {
+        return containersRead;
+    }
+
+    /**
+     * The number of times the backing arrays of the Lists and hash tables of the Maps built by this reader would have
+     * had to grow, had they started at their default capacities and been filled one member at a time. Since each
+     * container is allocated at its final size once all its members have been read, none of these resizes actually
+     * happen.
+     */
+    public long getResizesAvoided() {
+        return resizesAvoided;
+    }
+
+    /**
+     * Refills the input window. Only called when pos == limit. Input before the mark (or before pos, if no token
+     * is in progress) is discarded; the window grows if a single token outgrows it. Returns false at end of input.
+     */
+    protected boolean fill() throws IOException {
+        if (eof || reader == null) return false;
+        int keep = (mark >= 0) ? mark : pos;
+        if (keep > 0) {
+            discardPosition(keep);
+            int retained = limit - keep;
+            System.arraycopy(cbuf, keep, cbuf, 0, retained);
+            pos -= keep;
+            limit = retained;
+            if (mark >= 0) mark -= keep;
+        }
+        if (limit == cbuf.length) {
+            cbuf = Arrays.copyOf(cbuf, cbuf.length * 2);
+        }
+        int n;
+        do {
+            n = reader.read(cbuf, limit, Math.min(chunkSize, cbuf.length - limit));
+        } while (n == 0);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    /**
+     * Advances line counting to cbuf[to], unless the line number is already unknown.
+     */
+    protected void countLines(int to) {
+        if (line < 0 || to <= lineScan) return;
+        final char[] b = cbuf;
+        int n = line;
+        boolean cr = pendingCR;
+        int last = -1;
+        for (int i = lineScan; i < to; i++) {
+            char c = b[i];
+            if (c == '\n') {
+                if (!cr) n++;
+                cr = false;
+                last = i;
+            } else if (c == '\r') {
+                n++;
+                cr = true;
+                last = i;
+            } else {
+                cr = false;
+            }
+        }
+        line = n;
+        pendingCR = cr;
+        lineScan = to;
+        if (last >= 0) lineStart = base + last + 1;
+    }
+
+    /**
+     * Accounts for the first n characters of the window being discarded, as when fill() compacts the window. The
+     * caller is responsible for moving the window's contents and adjusting pos, limit and mark.
+     */
+    protected void discardPosition(int n) {
+        if (positionTracking == PositionTracking.FULL) {
+            countLines(n);
+        } else if (n > lineScan) {
+            line = -1;
+        }
+        base += n;
+        lineScan -= n;
+    }
+
+    /**
+     * Number of line terminators consumed so far, or -1 if unknown. Like {@link LineNumberReader#getLineNumber()},
+     * counts from zero, and treats each of "\n", "\r" and "\r\n" as a single terminator.
+     */
+    protected int lineNumber() {
+        countLines(pos);
+        return line;
+    }
+
+    /**
+     * Number of characters consumed since the last line terminator, or -1 if unknown. Counts from zero.
+     */
+    protected int columnNumber() {
+        countLines(pos);
+        return (line < 0) ? -1 : (int) (offset() - lineStart);
+    }
+
+    /**
+     * Number of characters (for {@link JSONByteReader}, bytes) consumed so far. For readers over in-memory input,
+     * counts from the start of the input given to the constructor; for {@link JSONMappedFileReader}, from the start
+     * of the file.
+     */
+    protected long offset() {
+        return base + pos;
+    }
+
     protected void drop() throws IOException {
-        this._buffer = NO_TOKEN;
+        if (pos < limit) pos++;
     }
 
     protected int buffer() throws IOException {
-        if (this._buffer == NO_TOKEN) {
-            this._buffer = reader.read();
-        }
-        return this._buffer;
+        if (pos == limit && !fill()) return EOF;
+        return cbuf[pos];
     }
 
     protected boolean atEOF() throws IOException {
-        return this.buffer() == EOF;
+        return pos == limit && !fill();
     }
 
     protected char curr() throws IOException {
         if (atEOF()) throw new EOFException();
-        return (char) this._buffer;
+        return cbuf[pos];
     }
 
     protected boolean check(char expected) throws IOException {
@@ -182,25 +635,45 @@ public class JSONReader {
 
     protected boolean checkDrop(char expected) throws IOException {
         if (check(expected)) {
-            drop();
+            pos++;
             return true;
         } else {
             return false;
         }
     }
 
+    protected static boolean isWhiteSpace(char c) {
+        if (c == ' ') return true;
+        if (c < '\u0080') return c < ' ' && Character.isWhitespace(c);
+        return c == '\uFEFF' /* BOM */ || Character.isWhitespace(c);
+    }
+
     protected void skipWhiteSpace() throws IOException {
-        while (!atEOF()) {
-            while (Character.isWhitespace(this.buffer()) || this.buffer() == '\uFEFF' /* BOM */) drop();
-            if (checkDrop('/')) {
-                if (checkDrop('/')) {
-                    //noinspection StatementWithEmptyBody
-                    while (!atEOF() && !check('\n')) drop();
-                    continue;
-                }
-                syntaxError("Invalid comment");
+        while (true) {
+            final char[] b = cbuf;
+            final int lim = limit;
+            int p = pos;
+            while (p < lim && isWhiteSpace(b[p])) p++;
+            pos = p;
+            if (p == lim) {
+                if (!fill()) return;
+                continue;
             }
-            break;
+            if (b[p] != '/') return;
+            pos = p + 1;
+            if (!checkDrop('/')) syntaxError("Invalid comment");
+            skipLineComment();
+        }
+    }
+
+    private void skipLineComment() throws IOException {
+        while (true) {
+            final char[] b = cbuf;
+            final int lim = limit;
+            int p = pos;
+            while (p < lim && b[p] != '\n') p++;
+            pos = p;
+            if (p < lim || !fill()) return;
         }
     }
 
@@ -241,10 +714,9 @@ public class JSONReader {
 
     protected Object readAtom(String atom, Object value) throws IOException {
         for (int i = 0; i < atom.length(); i++) {
-            if (!checkDrop(atom.charAt(i))) {
-                if (atEOF()) throw new EOFException();
-                syntaxError("Invalid input parsing '" + atom + "'");
-            }
+            if (pos == limit && !fill()) throw new EOFException();
+            if (cbuf[pos] != atom.charAt(i)) syntaxError("Invalid input parsing '" + atom + "'");
+            pos++;
         }
         return value;
     }
@@ -256,12 +728,12 @@ public class JSONReader {
      */
     public Object nextLexeme() throws IOException {
         skipWhiteSpace();
-        switch (curr()) {
+        char c = curr();
+        switch (c) {
             case '"': // fall through
             case '\'':
-                char sep = curr();
                 drop();
-                return string(sep);
+                return string(c);
             case '[': drop(); return Lexeme.ARRAY_START;
             case ',': drop(); return Lexeme.COMMA;
             case ']': drop(); return Lexeme.ARRAY_END;
@@ -272,7 +744,7 @@ public class JSONReader {
             case 'f': return readAtom("false", Boolean.FALSE);
             case 'n': return readAtom("null", JSONNull.INSTANCE);
             default:
-                if (!(Character.isDigit(curr()) || check('-'))) syntaxError("Invalid character: {" + curr() + "}");
+                if (!((c >= '0' && c <= '9') || c == '-')) syntaxError("Invalid character: {" + c + "}");
                 return number();
         }
     }
@@ -281,10 +753,9 @@ public class JSONReader {
         Object lexeme = nextLexeme();
         if (lexeme instanceof Lexeme) {
             switch ((Lexeme) lexeme) {
-                case ARRAY_START:
-                    return array();
+                case ARRAY_START: // fall through
                 case OBJECT_START:
-                    return object();
+                    return container((Lexeme) lexeme);
                 default:
                     return lexeme;
             }
@@ -293,116 +764,397 @@ public class JSONReader {
         }
     }
 
-    protected Map<String, Object> object() throws IOException {
-        Map<String, Object> ret = new HashMap<>();
-        Object _key = _read();
-        if (_key == Lexeme.OBJECT_END) {
-            return ret;
+    /**
+     * As nextLexeme(), but canonicalizes string results using the key cache, if there is one.
+     */
+    protected Object readKey() throws IOException {
+        if (keyCache == null) return keyString(nextLexeme());
+        skipWhiteSpace();
+        char c = curr();
+        if (c == '"' || c == '\'') {
+            drop();
+            return key(c);
         }
-        while (true) {
-            if (!(_key instanceof String)) {
-                expectedMapKey();
-            }
-            if (_read() != Lexeme.COLON) {
-                expectedMapColon();
-            }
-            ret.put((String) _key, read());
-            _key = _read();
-            if (_key == Lexeme.OBJECT_END) {
-                return ret;
-            }
-            if (_key != Lexeme.COMMA) {
-                expectedMapComma();
+        return nextLexeme();
+    }
+
+    /**
+     * Read an object key with a specific delimiter, looking it up in the key cache. Keys lying wholly within the
+     * window and containing no escapes are found without allocating; others are read with string() and then
+     * canonicalized.
+     */
+    protected Object key(char sep) throws IOException {
+        final char[] b = cbuf;
+        final int lim = limit;
+        final int start = pos;
+        int h = 0;
+        for (int p = start; p < lim; p++) {
+            char c = b[p];
+            if (c == sep) {
+                pos = p + 1;
+                return keyCache.intern(b, start, p - start, h);
             }
-            _key = _read();
+            if (c == '\\') break;
+            h = 31 * h + c;
         }
+        return keyCache.intern((String) string(sep));
+    }
+
+    /**
+     * Converts a {@link JSONStringView} read in key position to a String; returns other lexemes unchanged.
+     */
+    protected static Object keyString(Object lexeme) {
+        return (lexeme instanceof JSONStringView) ? lexeme.toString() : lexeme;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Map<String, Object> object() throws IOException {
+        return (Map<String, Object>) container(Lexeme.OBJECT_START);
     }
 
+    @SuppressWarnings("unchecked")
     protected List<Object> array() throws IOException {
-        List<Object> ret = new ArrayList<>();
-        Object _value = _read();
-        if (_value == Lexeme.ARRAY_END) {
-            return ret;
-        }
-        while (true) {
-            ret.add(valueGuard(_value));
-            _value = _read();
-            if (_value == Lexeme.ARRAY_END) {
-                return ret;
-            }
-            if (_value != Lexeme.COMMA) {
-                expectedArrayComma();
+        return (List<Object>) container(Lexeme.ARRAY_START);
+    }
+
+    /**
+     * Reads the rest of an array or object whose opening lexeme has just been consumed, including everything nested
+     * within it. Rather than recursing for each nested value, this keeps enclosing containers on an explicit stack,
+     * so that the depth of input that can be read depends on {@link #setMaxDepth(int)} and not on the size of the
+     * thread's stack. The members of each container are gathered on the stack too, and the container itself is only
+     * built, at exactly the right size, by {@link #newArray} or {@link #newObject} once it is complete.
+     */
+    protected Object container(Lexeme opener) throws IOException {
+        if (maxDepth < 1) nestingTooDeep();
+        boolean isObject = opener == Lexeme.OBJECT_START;
+        int start = 0; // where the current container's members start
+        int top = 0; // where the next member goes
+        int depth = 0; // number of containers suspended on the stack
+        boolean first = true;
+        try {
+            while (true) {
+                if (top + 2 > members.length) members = Arrays.copyOf(members, members.length * 2);
+                Object value = null;
+                boolean closed;
+                if (isObject) {
+                    Object _key = readKey();
+                    closed = first && _key == Lexeme.OBJECT_END;
+                    if (!closed) {
+                        if (!(_key instanceof String)) {
+                            expectedMapKey();
+                        }
+                        if (nextLexeme() != Lexeme.COLON) {
+                            expectedMapColon();
+                        }
+                        members[top++] = _key;
+                        value = nextLexeme();
+                    }
+                } else {
+                    value = nextLexeme();
+                    closed = first && value == Lexeme.ARRAY_END;
+                }
+                if (!closed) {
+                    if (value == Lexeme.ARRAY_START || value == Lexeme.OBJECT_START) {
+                        if (depth + 1 >= maxDepth) nestingTooDeep();
+                        if (depth == frameStarts.length) {
+                            frameStarts = Arrays.copyOf(frameStarts, depth * 2);
+                            frameObjects = Arrays.copyOf(frameObjects, depth * 2);
+                        }
+                        frameStarts[depth] = start;
+                        frameObjects[depth] = isObject;
+                        depth++;
+                        start = top;
+                        isObject = value == Lexeme.OBJECT_START;
+                        first = true;
+                        continue;
+                    }
+                    members[top++] = valueGuard(value);
+                }
+                // The current container's latest member is complete. Consume the comma following it or, failing
+                // that, the container's closer and the closers of any enclosing containers completed with it.
+                while (true) {
+                    if (!closed) {
+                        Object separator = nextLexeme();
+                        if (separator == Lexeme.COMMA) break;
+                        if (isObject) {
+                            if (separator != Lexeme.OBJECT_END) expectedMapComma();
+                        } else {
+                            if (separator != Lexeme.ARRAY_END) expectedArrayComma();
+                        }
+                    }
+                    Object done = isObject ? newObject(members, start, top) : newArray(members, start, top);
+                    Arrays.fill(members, start, top, null);
+                    top = start;
+                    if (depth == 0) return done;
+                    depth--;
+                    start = frameStarts[depth];
+                    isObject = frameObjects[depth];
+                    members[top++] = done;
+                    closed = false;
+                }
+                first = false;
             }
-            _value = _read();
+        } finally {
+            // Only nonzero if an exception is propagating; don't retain partially-read containers.
+            Arrays.fill(members, 0, top, null);
         }
     }
 
-    private boolean checkShift(char expected) throws IOException {
-        if (check(expected)) {
-            shift();
-            return true;
-        }
-        return false;
+    /**
+     * Builds the List representing a JSON array, given its elements, members[from] to members[to - 1].
+     */
+    protected List<Object> newArray(Object[] members, int from, int to) {
+        int n = to - from;
+        ArrayList<Object> list = new ArrayList<>(n);
+        for (int i = from; i < to; i++) list.add(members[i]);
+        containersRead++;
+        for (int capacity = 10; capacity < n; capacity += capacity >> 1) resizesAvoided++;
+        return list;
     }
 
-    protected Object number() throws IOException {
-        buf.setLength(0);
+    /**
+     * Builds the Map representing a JSON object, given its keys and values, alternating in members[from] to
+     * members[to - 1]. Later occurrences of a repeated key replace earlier ones.
+     */
+    protected Map<String, Object> newObject(Object[] members, int from, int to) {
+        if (shapeSharing) {
+            containersRead++;
+            return sharedShapeObject(members, from, to);
+        }
+        if (compactObjects) {
+            containersRead++;
+            return new JSONCompactMap(members, from, to);
+        }
+        int n = (to - from) >> 1;
+        HashMap<String, Object> map = new HashMap<>((int) (n / 0.75f) + 1);
+        for (int i = from; i < to; i += 2) map.put((String) members[i], members[i + 1]);
+        containersRead++;
+        for (int threshold = 12; threshold < n; threshold <<= 1) resizesAvoided++;
+        return map;
+    }
 
-        checkShift('-');
-        shiftDigits();
-        if (checkShift('.')) shiftDigits();
-        if (checkShift('e') || checkShift('E')) {
-            if (!checkShift('+')) checkShift('-');
-            shiftDigits();
+    /**
+     * Builds a {@link JSONCompactMap} from the given members, reusing the shape of a recently read object with the
+     * same keys if there is one, and otherwise remembering its shape in place of whichever shape last had the same
+     * hash. Objects with repeated keys never share shapes.
+     */
+    private JSONCompactMap sharedShapeObject(Object[] members, int from, int to) {
+        if (shapes == null) shapes = new JSONShape[SHAPE_CACHE_SIZE];
+        int hash = JSONShape.sequenceHash(members, from, to);
+        int slot = JSONShape.spread(hash) & (SHAPE_CACHE_SIZE - 1);
+        JSONShape shape = shapes[slot];
+        int n = (to - from) >> 1;
+        if (shape != null && shape.matches(members, from, to, hash)) {
+            shapesShared++;
+        } else {
+            shape = new JSONShape(members, from, to, hash);
+            if (shape.size() != n) return new JSONCompactMap(members, from, to);
+            shapes[slot] = shape;
         }
+        Object[] values = new Object[n];
+        for (int i = 0, j = from + 1; j < to; i++, j += 2) values[i] = members[j];
+        return new JSONCompactMap(shape, values);
+    }
 
-        return new BigDecimal(buf.toString());
+    protected Object number() throws IOException {
+        mark = pos;
+        try {
+            scanNumber();
+            return numberValue();
+        } finally {
+            mark = -1;
+        }
     }
 
     /**
-     * Read a string with a specific delimiter (either ' or ")
+     * Consumes a number, accumulating its digits arithmetically into the num* fields as it goes. The source text of
+     * the number is left in the window, starting at mark.
      */
-    protected Object string(char sep) throws IOException {
-        buf.setLength(0);
+    protected void scanNumber() throws IOException {
+        numNegative = checkDrop('-');
+        numMantissa = 0;
+        numSignificant = 0;
+        numOverflow = false;
+        numFraction = 0;
+        numExponent = 0;
+        numIntegral = true;
+        int digits = scanDigits();
+        if (checkDrop('.')) {
+            numIntegral = false;
+            numFraction = scanDigits();
+            digits += numFraction;
+        }
+        if (digits == 0) syntaxError("Invalid number");
+        if (checkDrop('e') || checkDrop('E')) {
+            numIntegral = false;
+            boolean negativeExponent = !checkDrop('+') && checkDrop('-');
+            long e = 0;
+            int c;
+            digits = 0;
+            while ((c = buffer()) >= '0' && c <= '9') {
+                if (e < Integer.MAX_VALUE) e = e * 10 + (c - '0');
+                digits++;
+                drop();
+            }
+            if (digits == 0) syntaxError("Invalid number");
+            numExponent = negativeExponent ? -e : e;
+        }
+    }
 
-        while (!check(sep)) {
-            if (checkDrop('\\')) {
-                if (checkDrop('u')) {
-                    shiftUnicode();
+    /**
+     * Consumes a run of decimal digits, accumulating up to 18 significant digits into numMantissa. Sets numOverflow
+     * if there are more. Returns the number of digits consumed.
+     */
+    protected int scanDigits() throws IOException {
+        int count = 0;
+        long m = numMantissa;
+        int significant = numSignificant;
+        while (true) {
+            final char[] b = cbuf;
+            final int lim = limit;
+            final int start = pos;
+            int p = start;
+            int d;
+            while (p < lim && (d = b[p] - '0') >= 0 && d <= 9) {
+                if (significant < 18) {
+                    m = m * 10 + d;
+                    if (m != 0) significant++;
                 } else {
-                    int replacement = -1;
-                    switch (curr()) {
-                        case '"': replacement = '"'; break;
-                        case '\\': replacement = '\\'; break;
-                        case '/': replacement = '/'; break;
-
-                        case 'b': replacement = '\b'; break;
-                        case 'f': replacement = '\f'; break;
-                        case 'n': replacement = '\n'; break;
-                        case 'r': replacement = '\r'; break;
-                        case 't': replacement = '\t'; break;
-                        default: syntaxError("Invalid string escape {" + curr() + "}");
-                    }
-                    drop();
-                    buf.append((char) replacement);
+                    numOverflow = true;
                 }
-            } else {
-                shift();
+                p++;
             }
+            pos = p;
+            count += p - start;
+            if (p < lim || !fill()) break;
         }
-        drop();
+        numMantissa = m;
+        numSignificant = significant;
+        return count;
+    }
 
-        return buf.toString();
+    /**
+     * The source text of the number just scanned.
+     */
+    protected String numberText() {
+        return new String(cbuf, mark, pos - mark);
     }
 
-    private void shift() throws IOException {
-        buf.append(curr());
-        drop();
+    /**
+     * Converts the number just scanned according to the current {@link NumberPolicy}. The source text is only
+     * consulted when the number has too many significant digits, or too large an exponent, for the fast paths.
+     */
+    protected Object numberValue() throws IOException {
+        long scale = numFraction - numExponent;
+        switch (numberPolicy) {
+            case LAZY:
+                return new JSONNumber(numberText());
+            case DOUBLE:
+                if (!numOverflow) {
+                    double d = JSONNumber.fastDouble(numNegative, numMantissa, scale);
+                    if (!Double.isNaN(d)) return d;
+                }
+                return Double.parseDouble(numberText());
+            case LONG_OR_BIG_DECIMAL:
+                if (numIntegral) {
+                    if (!numOverflow) return numNegative ? -numMantissa : numMantissa;
+                    try {
+                        return Long.parseLong(numberText());
+                    } catch (NumberFormatException nfe) {
+                        // Too large for a long; fall back to BigDecimal.
+                    }
+                }
+                /* FALL THROUGH */
+            case BIG_DECIMAL:
+            default:
+                if (!numOverflow && scale == (int) scale) {
+                    return BigDecimal.valueOf(numNegative ? -numMantissa : numMantissa, (int) scale);
+                }
+                try {
+                    return new BigDecimal(numberText());
+                } catch (NumberFormatException nfe) {
+                    syntaxError("Invalid number");
+                    return null;
+                }
+        }
     }
 
-    private void shiftDigits() throws IOException {
-        while (Character.isDigit(this.buffer())) {
-            shift();
+    /**
+     * Read a string with a specific delimiter (either ' or ")
+     */
+    protected Object string(char sep) throws IOException {
+        CharSequence s = stringChars(sep);
+        if (stringViews && s == slice && slice.chars == cbuf && reader == null) {
+            // The view outlives this call, so the buffer must never be reused by reset().
+            ownsBuffer = false;
+            return new JSONStringView(slice.chars, slice.offset, slice.length);
+        }
+        return s.toString();
+    }
+
+    /**
+     * As {@link #string(char)}, but returns the contents of the string as a CharSequence that is only valid until
+     * this reader is next used. Nothing is allocated unless the string must be unescaped or outgrows the window.
+     */
+    protected CharSequence stringChars(char sep) throws IOException {
+        // Fast path: the common case of a string without escapes is viewed straight out of the window.
+        int start = pos;
+        while (true) {
+            final char[] b = cbuf;
+            final int lim = limit;
+            int p = pos;
+            while (p < lim) {
+                char c = b[p];
+                if (c == sep) {
+                    pos = p + 1;
+                    return slice.set(b, start, p - start);
+                }
+                if (c == '\\') break;
+                p++;
+            }
+            pos = p;
+            if (p < lim) break;
+            mark = start;
+            boolean more = fill();
+            start = mark;
+            mark = -1;
+            if (!more) throw new EOFException();
+        }
+
+        buf.setLength(0);
+        buf.append(cbuf, start, pos - start);
+        while (true) {
+            final char[] b = cbuf;
+            final int lim = limit;
+            int p = pos;
+            while (p < lim && b[p] != sep && b[p] != '\\') p++;
+            buf.append(b, pos, p - pos);
+            pos = p;
+            if (p == lim) {
+                if (!fill()) throw new EOFException();
+                continue;
+            }
+            pos++;
+            if (b[p] == sep) return buf;
+            if (checkDrop('u')) {
+                shiftUnicode();
+            } else {
+                int replacement = -1;
+                switch (curr()) {
+                    case '"': replacement = '"'; break;
+                    case '\\': replacement = '\\'; break;
+                    case '/': replacement = '/'; break;
+
+                    case 'b': replacement = '\b'; break;
+                    case 'f': replacement = '\f'; break;
+                    case 'n': replacement = '\n'; break;
+                    case 'r': replacement = '\r'; break;
+                    case 't': replacement = '\t'; break;
+                    default: syntaxError("Invalid string escape {" + curr() + "}");
+                }
+                drop();
+                buf.append((char) replacement);
+            }
         }
     }
 
@@ -426,6 +1178,96 @@ public class JSONReader {
         buf.append((char) value);
     }
 
+    /**
+     * Consumes raw input up to and including the bracket closing the array or object whose opening bracket has
+     * just been consumed, tracking only nesting depth, strings and comments. Returns the closing bracket. Nothing is
+     * allocated, and the skipped input is not otherwise validated.
+     */
+    protected char skipRawContainer() throws IOException {
+        int depth = 1;
+        refill:
+        while (true) {
+            final char[] b = cbuf;
+            final int lim = limit;
+            int p = pos;
+            while (p < lim) {
+                char c = b[p++];
+                if (c == '"' || c == '\'') {
+                    pos = p;
+                    skipRawString(c);
+                    continue refill;
+                } else if (c == '/') {
+                    pos = p;
+                    skipLineComment();
+                    continue refill;
+                } else if (c == '[' || c == '{') {
+                    depth++;
+                } else if ((c == ']' || c == '}') && --depth == 0) {
+                    pos = p;
+                    return c;
+                }
+            }
+            pos = p;
+            if (!fill()) throw new EOFException();
+        }
+    }
+
+    /**
+     * Consumes raw input up to and including the delimiter closing a string whose opening delimiter, sep, has just
+     * been consumed. Nothing is allocated, and escapes are not validated.
+     */
+    protected void skipRawString(char sep) throws IOException {
+        boolean escape = false;
+        while (true) {
+            final char[] b = cbuf;
+            final int lim = limit;
+            int p = pos;
+            if (escape) {
+                p++;
+                escape = false;
+            }
+            while (p < lim) {
+                char c = b[p];
+                if (c == sep) {
+                    pos = p + 1;
+                    return;
+                }
+                if (c == '\\') {
+                    if (p + 1 == lim) {
+                        escape = true;
+                        p++;
+                        break;
+                    }
+                    p += 2;
+                } else {
+                    p++;
+                }
+            }
+            pos = p;
+            if (!fill()) throw new EOFException();
+        }
+    }
+
+    /**
+     * Consumes raw input up to (but not including) the delimiter following a number or atom. Nothing is allocated,
+     * and the skipped input is not validated.
+     */
+    protected void skipRawAtom() throws IOException {
+        while (true) {
+            final char[] b = cbuf;
+            final int lim = limit;
+            int p = pos;
+            while (p < lim && !isAtomDelimiter(b[p])) p++;
+            pos = p;
+            if (p < lim || !fill()) return;
+        }
+    }
+
+    protected static boolean isAtomDelimiter(int c) {
+        return c <= ' ' || c == ',' || c == ':' || c == ']' || c == '}' || c == '[' || c == '{'
+                || c == '"' || c == '\'' || c == '/';
+    }
+
     void unexpectedLexeme(Lexeme value) throws JSONSyntaxError {
         syntaxError("Unexpected lexeme " + value.toString());
     }
@@ -442,12 +1284,53 @@ public class JSONReader {
         syntaxError("Expected string map key");
     }
 
+    void nestingTooDeep() throws JSONSyntaxError {
+        syntaxError("Maximum nesting depth " + maxDepth + " exceeded");
+    }
+
     void expectedArrayComma() throws JSONSyntaxError {
         syntaxError("Expected comma separating array values or end of array");
     }
 
     void syntaxError(String message) throws JSONSyntaxError {
-        throw new JSONSyntaxError(message, this.reader.getLineNumber());
+        throw new JSONSyntaxError(message, lineNumber(), columnNumber(), offset());
+    }
+
+    /**
+     * A reusable, mutable view onto a range of a char array.
+     */
+    protected static final class CharSlice implements CharSequence {
+        char[] chars;
+        int offset;
+        int length;
+
+        CharSlice set(char[] chars, int offset, int length) {
+            this.chars = chars;
+            this.offset = offset;
+            this.length = length;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) throw new IndexOutOfBoundsException();
+            return chars[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, offset, length);
+        }
     }
 
     /**
@@ -461,4 +1344,35 @@ public class JSONReader {
         COLON,
         COMMA
     }
+
+    /**
+     * How much effort to spend tracking the position of the input, for reporting in {@link JSONSyntaxError}s.
+     */
+    public enum PositionTracking {
+        /**
+         * Line and column numbers are maintained as input is discarded from the lookahead buffer, so are always
+         * available. This is the default.
+         */
+        FULL,
+        /**
+         * Only the offset into the input is maintained. Line and column numbers are computed when an error is
+         * raised, and so are available only if no input has been discarded from the lookahead buffer since the
+         * start of the input: always for in-memory input, but not for long streams.
+         */
+        OFFSET
+    }
+
+    /**
+     * Choice of Java representation for JSON numbers.
+     */
+    public enum NumberPolicy {
+        /** Every number is a java.math.BigDecimal. This is the default. */
+        BIG_DECIMAL,
+        /** Numbers without fraction or exponent that fit in a long are java.lang.Long; all others are BigDecimal. */
+        LONG_OR_BIG_DECIMAL,
+        /** Every number is a java.lang.Double. Precision may be lost. */
+        DOUBLE,
+        /** Every number is a {@link JSONNumber}, which keeps the source text and converts it on demand. */
+        LAZY
+    }
 }
@@ -0,0 +1,141 @@
+package com.leastfixedpoint.json;
+
+import java.util.Arrays;
+
+/**
+ * The keys of a {@link JSONCompactMap}, in order, together with an index from key to position. Shapes are immutable,
+ * so a single shape may be shared by every map with the same keys in the same order; {@link JSONReader} arranges
+ * this when {@link JSONReader#setShapeSharing(boolean)} is enabled. Anything {@link JSONWriter} needs to know about
+ * the keys, such as their sorted order, is computed once per shape rather than once per map.
+ */
+public final class JSONShape {
+    /** Shapes with at most this many keys are searched linearly, without a hash table. */
+    static final int LINEAR_LIMIT = 8;
+
+    private final String[] keys;
+    /** Indexes (plus one, so that zero marks an empty slot) into keys; null for small shapes. */
+    private final int[] table;
+    /** See {@link #sequenceHash(Object[], int, int)}. */
+    private final int hash;
+
+    private volatile int[] sortedOrder;
+    private volatile String[] memberPrefixes;
+
+    /**
+     * Builds the shape of the keys alternating with values in members[from] to members[to - 1]. Repeated keys are
+     * included only once, at the position of their first occurrence.
+     */
+    JSONShape(Object[] members, int from, int to, int hash) {
+        int n = (to - from) >> 1;
+        String[] ks = new String[n];
+        int[] t = (n > LINEAR_LIMIT) ? new int[Integer.highestOneBit(n - 1) << 2] : null;
+        int size = 0;
+        for (int i = from; i < to; i += 2) {
+            String key = (String) members[i];
+            if (((t == null) ? linearIndex(ks, size, key) : tableIndex(ks, t, key)) >= 0) continue;
+            if (t != null) t[freeSlot(t, key)] = size + 1;
+            ks[size++] = key;
+        }
+        if (size < n) {
+            ks = Arrays.copyOf(ks, size);
+            if (size <= LINEAR_LIMIT) t = null;
+        }
+        this.keys = ks;
+        this.table = t;
+        this.hash = hash;
+    }
+
+    /** A hash of the sequence of keys alternating with values in members[from] to members[to - 1]. */
+    static int sequenceHash(Object[] members, int from, int to) {
+        int h = (to - from) >> 1;
+        for (int i = from; i < to; i += 2) h = 31 * h + members[i].hashCode();
+        return h;
+    }
+
+    /**
+     * Answers true iff this shape has exactly the keys alternating with values in members[from] to members[to - 1],
+     * in the same order, given their {@link #sequenceHash(Object[], int, int)}.
+     */
+    boolean matches(Object[] members, int from, int to, int hash) {
+        if (hash != this.hash || keys.length != (to - from) >> 1) return false;
+        for (int i = 0, j = from; j < to; i++, j += 2) {
+            String k = keys[i];
+            Object key = members[j];
+            if (k != key && !k.equals(key)) return false;
+        }
+        return true;
+    }
+
+    private static int linearIndex(String[] keys, int size, Object key) {
+        for (int i = 0; i < size; i++) {
+            String k = keys[i];
+            if (k == key || k.equals(key)) return i;
+        }
+        return -1;
+    }
+
+    private static int tableIndex(String[] keys, int[] table, Object key) {
+        int mask = table.length - 1;
+        for (int slot = spread(key.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            int i = table[slot] - 1;
+            if (i < 0) return -1;
+            String k = keys[i];
+            if (k == key || k.equals(key)) return i;
+        }
+    }
+
+    private static int freeSlot(int[] table, String key) {
+        int mask = table.length - 1;
+        int slot = spread(key.hashCode()) & mask;
+        while (table[slot] != 0) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /** The number of keys in this shape. */
+    public int size() {
+        return keys.length;
+    }
+
+    /** The index'th key of this shape. */
+    public String keyAt(int index) {
+        return keys[index];
+    }
+
+    /** Returns the position of the given key in this shape, or -1 if it is absent. */
+    public int indexOf(Object key) {
+        if (!(key instanceof String)) return -1;
+        return (table == null) ? linearIndex(keys, keys.length, key) : tableIndex(keys, table, key);
+    }
+
+    /** The positions of this shape's keys, in ascending order of key. Computed once; must not be modified. */
+    int[] sortedOrder() {
+        int[] order = sortedOrder;
+        if (order == null) {
+            Integer[] boxed = new Integer[keys.length];
+            for (int i = 0; i < boxed.length; i++) boxed[i] = i;
+            Arrays.sort(boxed, (a, b) -> keys[a].compareTo(keys[b]));
+            order = new int[boxed.length];
+            for (int i = 0; i < order.length; i++) order[i] = boxed[i];
+            sortedOrder = order;
+        }
+        return order;
+    }
+
+    /**
+     * For each key, the text {@link JSONWriter} emits before the corresponding value. Computed once; must not be
+     * modified.
+     */
+    String[] memberPrefixes() {
+        String[] prefixes = memberPrefixes;
+        if (prefixes == null) {
+            prefixes = new String[keys.length];
+            for (int i = 0; i < prefixes.length; i++) prefixes[i] = JSONWriter.memberPrefix(keys[i]);
+            memberPrefixes = prefixes;
+        }
+        return prefixes;
+    }
+}
@@ -0,0 +1,86 @@
+package com.leastfixedpoint.json;
+
+/**
+ * A JSON string represented as a view onto the input it was read from, converted to a {@link String} only on demand.
+ * Produced by {@link JSONReader} for strings without escapes when {@link JSONReader#setStringViews(boolean)} is
+ * enabled and the input is held in memory.
+ * <p>
+ * A view keeps the whole of the underlying input reachable, so views that are retained for a long time should be
+ * converted with {@link #toString()}, which caches its result. Views compare equal to each other, and hash, according
+ * to their contents, just as Strings do; but, since String.equals is not symmetric with other CharSequences, a view
+ * is never equal to a String. Use {@link #contentEquals(CharSequence)} or {@link JSONValue#equals(Object)} to compare
+ * views with Strings. {@link JSONWriter} writes views as ordinary JSON strings.
+ */
+public final class JSONStringView implements CharSequence, Comparable<JSONStringView> {
+    private final char[] chars;
+    private final int offset;
+    private final int length;
+    private String string;
+    private int hash;
+
+    JSONStringView(char[] chars, int offset, int length) {
+        this.chars = chars;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException();
+        return chars[offset + index];
+    }
+
+    @Override
+    public JSONStringView subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) throw new IndexOutOfBoundsException();
+        return new JSONStringView(chars, offset + start, end - start);
+    }
+
+    /** The contents of this view as a String, which is computed once and then cached. */
+    @Override
+    public String toString() {
+        if (string == null) string = new String(chars, offset, length);
+        return string;
+    }
+
+    /** Answers true iff this view holds exactly the characters of the given sequence. */
+    public boolean contentEquals(CharSequence other) {
+        if (other.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (chars[offset + i] != other.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return (other instanceof JSONStringView) && contentEquals((JSONStringView) other);
+    }
+
+    /** The same as the hash code of the equivalent String. */
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0 && length > 0) {
+            for (int i = 0; i < length; i++) h = 31 * h + chars[offset + i];
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public int compareTo(JSONStringView other) {
+        int n = Math.min(length, other.length);
+        for (int i = 0; i < n; i++) {
+            char a = chars[offset + i];
+            char b = other.chars[other.offset + i];
+            if (a != b) return a - b;
+        }
+        return length - other.length;
+    }
+}
@@ -0,0 +1,230 @@
+package com.leastfixedpoint.json;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * "Stage one" of a two-stage JSON parser: locates the start of every token in UTF-8 encoded JSON text, 64 bytes at a
+ * time, without interpreting the tokens themselves.
+ * <p>
+ * Each 64-byte block is first classified into bitmasks (one bit per byte) of quotes, backslashes, structural
+ * characters and whitespace by a {@link BlockClassifier}. Escapes and string extents are then resolved with bitwise
+ * arithmetic on the masks, and the positions of the resulting tokens (structural characters, opening quotes, and the
+ * first byte of each number or atom) are collected. {@link JSONLazyDocument} walks these positions instead of
+ * examining every byte of its input.
+ * <p>
+ * The default classifier works on eight bytes at a time within ordinary longs, and runs on any JVM. If the optional
+ * vector module (built by the "vector" target in build.xml) is on the class path, and the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}, a classifier using the incubating Vector API is used instead. Otherwise,
+ * the fallback is automatic.
+ * <p>
+ * The bitmask approach only understands double-quoted strings. Input containing single-quoted strings, comments,
+ * non-ASCII or control characters or backslashes outside strings, or an unterminated string is left to a conventional scanner:
+ * {@link #scan(byte[], int, int)} returns null for it.
+ */
+public class JSONStructuralIndex {
+    /** Indices into the array of masks filled in by a {@link BlockClassifier}. */
+    public static final int QUOTE = 0;
+    public static final int BACKSLASH = 1;
+    /** The characters {, }, [, ], : and ,. */
+    public static final int OPERATOR = 2;
+    /** Space, tab, newline and carriage return. */
+    public static final int WHITESPACE = 3;
+    /** Characters that, outside strings, the bitmask approach cannot handle: see the class comment. */
+    public static final int UNSUPPORTED = 4;
+    public static final int MASK_COUNT = 5;
+
+    /**
+     * Classifies a 64-byte block of input into bitmasks, bit i of each corresponding to byte offset + i.
+     */
+    public interface BlockClassifier {
+        void classify(byte[] bytes, int offset, long[] masks);
+    }
+
+    static final BlockClassifier CLASSIFIER = loadClassifier();
+
+    static BlockClassifier loadClassifier() {
+        try {
+            return (BlockClassifier) Class.forName("com.leastfixedpoint.json.vector.VectorBlockClassifier")
+                    .getConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            return new SWARBlockClassifier();
+        }
+    }
+
+    /** The classifier in use. */
+    public static BlockClassifier getClassifier() {
+        return CLASSIFIER;
+    }
+
+    /**
+     * True if the classifier in use is hardware-accelerated. The portable classifier is correct, but on its own is
+     * not faster than a conventional byte-at-a-time scanner.
+     */
+    public static boolean isVectorized() {
+        return !(CLASSIFIER instanceof SWARBlockClassifier);
+    }
+
+    protected int[] positions;
+    protected int size;
+
+    protected JSONStructuralIndex(int[] positions, int size) {
+        this.positions = positions;
+        this.size = size;
+    }
+
+    /** Number of tokens found. */
+    public int size() {
+        return size;
+    }
+
+    /** Offset in the input of the i'th token. */
+    public int get(int i) {
+        if (i >= size) throw new IndexOutOfBoundsException(i);
+        return positions[i];
+    }
+
+    /**
+     * Locates the tokens in bytes[offset..offset+length) using the default classifier. Returns null if the input
+     * needs a conventional scanner.
+     */
+    public static JSONStructuralIndex scan(byte[] bytes, int offset, int length) {
+        return scan(CLASSIFIER, bytes, offset, length);
+    }
+
+    /**
+     * Locates the tokens in bytes[offset..offset+length) using the given classifier. Returns null if the input needs
+     * a conventional scanner.
+     */
+    public static JSONStructuralIndex scan(BlockClassifier classifier, byte[] bytes, int offset, int length) {
+        final long[] masks = new long[MASK_COUNT];
+        final int end = offset + length;
+        int[] out = new int[Math.max(16, length / 4)];
+        int n = 0;
+        boolean escapeCarry = false;
+        long inStringCarry = 0;
+        long scalarCarry = 0;
+        byte[] tail = null;
+
+        for (int base = offset; base < end; base += 64) {
+            if (end - base >= 64) {
+                classifier.classify(bytes, base, masks);
+            } else {
+                tail = new byte[64];
+                Arrays.fill(tail, (byte) ' ');
+                System.arraycopy(bytes, base, tail, 0, end - base);
+                classifier.classify(tail, 0, masks);
+            }
+
+            // Characters escaped by a backslash. Backslashes are rare, so these are resolved one at a time.
+            long backslash = masks[BACKSLASH];
+            long escaped = 0;
+            if (escapeCarry) {
+                escaped = 1L;
+                backslash &= ~1L;
+                escapeCarry = false;
+            }
+            while (backslash != 0) {
+                int i = Long.numberOfTrailingZeros(backslash);
+                if (i == 63) {
+                    escapeCarry = true;
+                    break;
+                }
+                escaped |= 1L << (i + 1);
+                backslash &= ~(3L << i);
+            }
+
+            // Prefix-XOR of the unescaped quotes gives a mask covering each string from its opening quote up to, but
+            // excluding, its closing quote.
+            long quotes = masks[QUOTE] & ~escaped;
+            long inString = quotes;
+            inString ^= inString << 1;
+            inString ^= inString << 2;
+            inString ^= inString << 4;
+            inString ^= inString << 8;
+            inString ^= inString << 16;
+            inString ^= inString << 32;
+            inString ^= inStringCarry;
+            inStringCarry = inString >> 63;
+
+            // A backslash outside a string is malformed; leave reporting it to the conventional scanner.
+            if (((masks[UNSUPPORTED] | masks[BACKSLASH]) & ~inString) != 0) return null;
+
+            long outside = ~inString & ~quotes;
+            long scalar = outside & ~masks[OPERATOR] & ~masks[WHITESPACE];
+            long tokens = (masks[OPERATOR] & outside)
+                    | (quotes & inString)
+                    | (scalar & ~((scalar << 1) | scalarCarry));
+            scalarCarry = scalar >>> 63;
+            if (tail != null) tokens &= (1L << (end - base)) - 1;
+
+            int count = Long.bitCount(tokens);
+            if (n + count > out.length) out = Arrays.copyOf(out, Math.max(out.length * 2, n + count));
+            while (tokens != 0) {
+                out[n++] = base + Long.numberOfTrailingZeros(tokens);
+                tokens &= tokens - 1;
+            }
+        }
+        if (inStringCarry != 0) return null;
+        return new JSONStructuralIndex(out, n);
+    }
+
+    /**
+     * Classifies eight bytes at a time, using SIMD-within-a-register arithmetic on longs.
+     */
+    public static class SWARBlockClassifier implements BlockClassifier {
+        private static final VarHandle LONGS =
+                MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+        private static final long ONES = 0x0101010101010101L;
+        private static final long LOW7 = 0x7f7f7f7f7f7f7f7fL;
+        private static final long HIGH = 0x8080808080808080L;
+
+        /** High bit of each byte of the result is set iff the corresponding byte of x equals c. */
+        private static long eq(long x, char c) {
+            long t = x ^ (c * ONES);
+            return ~(((t & LOW7) + LOW7) | t | LOW7);
+        }
+
+        /** High bit of each byte of the result is set iff the corresponding byte of x is less than c (unsigned). */
+        private static long lt(long x, char c) {
+            return ~((x & LOW7) + ((0x80 - c) * ONES)) & ~x & HIGH;
+        }
+
+        /** Gathers the high bits of the eight bytes of x into the low eight bits of the result. */
+        private static long gather(long x) {
+            return ((x >>> 7) * 0x0102040810204080L) >>> 56;
+        }
+
+        @Override
+        public void classify(byte[] bytes, int offset, long[] masks) {
+            long quote = 0, backslash = 0, operator = 0, whitespace = 0, unsupported = 0;
+            for (int k = 0; k < 8; k++) {
+                long x = (long) LONGS.get(bytes, offset + 8 * k);
+                long lower = x | (0x20 * ONES); // folds '[' and ']' onto '{' and '}'
+                long ws = lt(x, (char) 0x21);
+                long odd = (x & HIGH) | eq(x & ~(0x08 * ONES), '\''); // the latter also matches '/'
+                long control = lt(x, ' ');
+                if (control != 0) {
+                    // Only these control characters count as whitespace.
+                    long allowed = eq(x, '\t') | eq(x, '\n') | eq(x, '\r');
+                    odd |= control & ~allowed;
+                }
+                int shift = 8 * k;
+                quote |= gather(eq(x, '"')) << shift;
+                backslash |= gather(eq(x, '\\')) << shift;
+                operator |= gather(eq(lower, '{') | eq(lower, '}') | eq(x, ':') | eq(x, ',')) << shift;
+                whitespace |= gather(ws) << shift;
+                unsupported |= gather(odd) << shift;
+            }
+            masks[QUOTE] = quote;
+            masks[BACKSLASH] = backslash;
+            masks[OPERATOR] = operator;
+            masks[WHITESPACE] = whitespace;
+            masks[UNSUPPORTED] = unsupported;
+        }
+    }
+}
@@ -5,6 +5,8 @@ package com.leastfixedpoint.json;
  */
 public class JSONSyntaxError extends JSONError {
     private int lineNumber;
+    private int columnNumber;
+    private long offset;
 
     /**
      * Construct a syntax error report exception.
@@ -12,14 +14,49 @@ public class JSONSyntaxError extends JSONError {
      * @param lineNumber Approximate line number of the error condition in the input.
      */
     public JSONSyntaxError(String message, int lineNumber) {
-        super(message + " (line " + lineNumber + ")");
+        this(message, lineNumber, -1, -1);
+    }
+
+    /**
+     * Construct a syntax error report exception. Any of the position components may be -1, if unknown.
+     * @param message Description of the error condition.
+     * @param lineNumber Approximate line number of the error condition in the input, counting from zero.
+     * @param columnNumber Approximate column of the error condition within its line, counting from zero.
+     * @param offset Approximate offset of the error condition in the input, in characters or bytes.
+     */
+    public JSONSyntaxError(String message, int lineNumber, int columnNumber, long offset) {
+        super(message + formatPosition(lineNumber, columnNumber, offset));
         this.lineNumber = lineNumber;
+        this.columnNumber = columnNumber;
+        this.offset = offset;
+    }
+
+    protected static String formatPosition(int lineNumber, int columnNumber, long offset) {
+        StringBuilder b = new StringBuilder();
+        if (lineNumber >= 0) b.append("line ").append(lineNumber);
+        if (columnNumber >= 0) b.append((b.length() > 0) ? ", " : "").append("column ").append(columnNumber);
+        if (offset >= 0) b.append((b.length() > 0) ? ", " : "").append("offset ").append(offset);
+        return (b.length() > 0) ? " (" + b + ")" : "";
     }
 
     /**
-     * @return The line number associated with this error report.
+     * @return The line number associated with this error report, or -1 if unknown.
      */
     public int getLineNumber() {
         return lineNumber;
     }
+
+    /**
+     * @return The column number associated with this error report, or -1 if unknown.
+     */
+    public int getColumnNumber() {
+        return columnNumber;
+    }
+
+    /**
+     * @return The input offset associated with this error report, or -1 if unknown.
+     */
+    public long getOffset() {
+        return offset;
+    }
 }
@@ -35,29 +35,41 @@ public class JSONValue implements JSONSerializable {
 
     protected JSONValue(Object blob) {
         if (blob instanceof Number) {
-            if (blob instanceof BigDecimal) {
+            if (blob instanceof BigDecimal || blob instanceof Long || blob instanceof Double
+                    || blob instanceof JSONNumber) {
                 this.blob = blob;
-            } else if (blob instanceof Float || blob instanceof Double) {
+            } else if (blob instanceof Float) {
                 this.blob = ((Number) blob).doubleValue();
             } else if (blob instanceof BigInteger) {
                 this.blob = new BigDecimal((BigInteger) blob);
             } else {
-                this.blob = new BigDecimal(((Number) blob).longValue());
+                this.blob = ((Number) blob).longValue();
             }
         } else {
             this.blob = blob;
         }
     }
 
+    /**
+     * Numbers compare as BigDecimals do, whichever {@link JSONReader.NumberPolicy} produced them, except that
+     * doubles are never equal to other kinds of number.
+     */
+    protected static Object numericKey(Number n) {
+        if (n instanceof Long) return BigDecimal.valueOf((Long) n);
+        if (n instanceof JSONNumber) return ((JSONNumber) n).bigDecimalValue();
+        return n;
+    }
+
     /** Extract the underlying value contained in this object. */
     public Object value() {
         return this.blob;
     }
 
-    /** Cast the underlying value to {@link String}.
+    /** Cast the underlying value to {@link String}, converting other CharSequences such as {@link JSONStringView}.
      * @throws JSONTypeError if it is not a string. */
     public String stringValue() throws JSONTypeError {
         if (blob instanceof String) return (String) blob;
+        if (blob instanceof CharSequence) return blob.toString();
         throw new JSONTypeError(String.class, blob);
     }
 
@@ -77,9 +89,12 @@ public class JSONValue implements JSONSerializable {
 
     // Is this a good idea?
     /** Extract a {@link BigDecimal} value from the underlying object.
-     * @throws JSONTypeError if it is not a {@link BigDecimal}. */
+     * @throws JSONTypeError if it is not a {@link BigDecimal}, or an integer or {@link JSONNumber} read with some
+     * other {@link JSONReader.NumberPolicy}. */
     public BigDecimal bigDecimalValue() throws JSONTypeError {
         if (blob instanceof BigDecimal) return ((BigDecimal) blob);
+        if (blob instanceof Long) return BigDecimal.valueOf((Long) blob);
+        if (blob instanceof JSONNumber) return ((JSONNumber) blob).bigDecimalValue();
         throw new JSONTypeError(BigDecimal.class, blob);
     }
 
@@ -156,6 +171,7 @@ public class JSONValue implements JSONSerializable {
     /** Iterate over JSONValue-wrapped entries in the underlying value, which is cast to a {@link Map}
      * @throws JSONTypeError if the underlying value is not a map. */
     public Iterable<Map.Entry<String,JSONValue>> mapEntries() throws JSONTypeError {
+        if (blob instanceof JSONCompactMap) return compactMapEntries((JSONCompactMap) blob);
         var m = mapValue().entrySet();
         return () -> {
             var i = m.iterator();
@@ -189,6 +205,24 @@ public class JSONValue implements JSONSerializable {
         };
     }
 
+    private static Iterable<Map.Entry<String,JSONValue>> compactMapEntries(JSONCompactMap m) {
+        return () -> new Iterator<Map.Entry<String,JSONValue>>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < m.size();
+            }
+
+            @Override
+            public Map.Entry<String,JSONValue> next() {
+                if (next >= m.size()) throw new NoSuchElementException();
+                int i = next++;
+                return new AbstractMap.SimpleImmutableEntry<>(m.keyAt(i), wrap(m.valueAt(i)));
+            }
+        };
+    }
+
     /** Retrieve the object at the index'th position in the underlying list.
      * @throws JSONTypeError if the underlying object is not a {@link List}.
      */
@@ -224,6 +258,7 @@ public class JSONValue implements JSONSerializable {
     /** Replace the object at the given key in the underlying map.
      * Returns 'this' to allow for chaining-style building of complex values.
      * @throws JSONTypeError if the underlying object is not a {@link Map}.
+     * @throws UnsupportedOperationException if the underlying map is read-only, e.g. a {@link JSONCompactMap}.
      */
     public JSONValue put(String key, Object value) throws JSONTypeError {
         this.mapValue().put(key, unwrap(value));
@@ -233,6 +268,7 @@ public class JSONValue implements JSONSerializable {
     /** Remove the object at the given key in the underlying map.
      * Returns 'this' to allow for chaining-style building of complex values.
      * @throws JSONTypeError if the underlying object is not a {@link Map}.
+     * @throws UnsupportedOperationException if the underlying map is read-only, e.g. a {@link JSONCompactMap}.
      */
     public JSONValue remove(String key) throws JSONTypeError {
         this.mapValue().remove(key);
@@ -267,11 +303,21 @@ public class JSONValue implements JSONSerializable {
 
     @Override
     public boolean equals(Object other) {
+        Object o = unwrap(other);
+        if (blob instanceof Number && o instanceof Number) {
+            return numericKey((Number) o).equals(numericKey((Number) blob));
+        }
+        if (blob instanceof JSONStringView && o instanceof CharSequence) {
+            return ((JSONStringView) blob).contentEquals((CharSequence) o);
+        }
+        if (o instanceof JSONStringView && blob instanceof CharSequence) {
+            return ((JSONStringView) o).contentEquals((CharSequence) blob);
+        }
         return other.equals(blob);
     }
 
     @Override
     public int hashCode() {
-        return blob.hashCode();
+        return (blob instanceof Number) ? numericKey((Number) blob).hashCode() : blob.hashCode();
     }
 }
@@ -25,20 +25,19 @@ package com.leastfixedpoint.json;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.lang.reflect.Array;
-import java.text.CharacterIterator;
-import java.text.StringCharacterIterator;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 
 /**
  * Writes certain Java objects as JSON to a Writer.
  * <p>
  * <ul>
- *     <li>java.lang.String becomes a JSON string.</li>
+ *     <li>java.lang.String, and other CharSequences such as {@link JSONStringView}, become JSON strings.</li>
  *     <li>java.lang.Boolean become JSON booleans.</li>
  *     <li>{@link JSONNull#INSTANCE} becomes JSON null.</li>
  *     <li>java.lang.Number and subclasses become JSON numbers (via BigDecimal).</li>
@@ -48,6 +47,10 @@ import java.util.Map;
  * <p>
  * If a Map has a non-String key, or an unsupported object is discovered while writing,
  * JSONSerializationError will be thrown.
+ * <p>
+ * Output is assembled in an internal buffer, which is passed to the underlying Writer in large blocks, and at the
+ * end of each top-level call to {@link #write(Object)}. The underlying Writer itself is only flushed by
+ * {@link #flush()}.
  */
 public class JSONWriter {
     protected int indentLevel = 0;
@@ -55,6 +58,58 @@ public class JSONWriter {
     protected boolean indentMode;
     protected boolean sortKeys = true;
 
+    protected static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /** Output not yet passed to the underlying Writer is held in buf[0] to buf[count - 1]. */
+    protected char[] buf;
+    protected int count = 0;
+    /** The number of calls to {@link #write(Object)} in progress; the buffer is passed on when this returns to 0. */
+    protected int writeDepth = 0;
+
+    /** Map keys no longer than this have their escaped form cached; see {@link #member(boolean, String, Object)}. */
+    private static final int MAX_CACHED_KEY_LENGTH = 64;
+    private static final int KEY_CACHE_SIZE = 256;
+    /** A direct-mapped cache, indexed by hash code, of recently written keys and their {@link #memberPrefix}. */
+    private final String[] cachedKeys = new String[KEY_CACHE_SIZE];
+    private final String[] cachedPrefixes = new String[KEY_CACHE_SIZE];
+
+    /** Maps with at most this many keys have their sorted key order cached; see {@link #sortedMembers(Map)}. */
+    private static final int MAX_CACHED_SHAPE_SIZE = 64;
+    private static final int SHAPE_CACHE_SIZE = 64;
+    /** A direct-mapped cache, indexed by {@link JSONShape#sequenceHash}, of the key sequences of recent maps. */
+    private final JSONShape[] cachedShapes = new JSONShape[SHAPE_CACHE_SIZE];
+
+    /** Keys and values, alternating, of the maps being written by {@link #sortedMembers(Map)}, up to pendingTop. */
+    protected Object[] pending = new Object[32];
+    protected int pendingTop = 0;
+
+    /** Scratch space for {@link #integer(long)}, big enough for Long.MIN_VALUE. */
+    private final char[] digits = new char[20];
+
+    /** A newline followed by enough spaces for most indentation levels; see {@link #newline()}. */
+    private static final char[] INDENT = indentation(128);
+
+    /**
+     * Output buffers larger than this, in characters, are not kept for reuse by the pooled instances behind the
+     * static helpers.
+     */
+    protected static final int MAX_RETAINED_BUFFER_SIZE = 65536;
+
+    /** A pooled writer, together with the StringWriter used by {@link #writeToString(Object, boolean)}. */
+    private static final class Scratch {
+        final StringWriter out = new StringWriter();
+        final JSONWriter writer = new JSONWriter(out);
+
+        void recycle() {
+            writer.reset(out);
+            StringBuffer b = out.getBuffer();
+            b.setLength(0);
+            if (b.capacity() > MAX_RETAINED_BUFFER_SIZE) b.trimToSize();
+        }
+    }
+
+    private static final JSONPool<Scratch> POOL = new JSONPool<>(Scratch::new);
+
     /**
      * Serializes value as JSON, outputting to writer, without pretty indentation.
      */
@@ -66,7 +121,20 @@ public class JSONWriter {
      * Serializes value as JSON, outputting to writer, with optional pretty indentation.
      */
     public static void writeTo(Writer w, Object value, boolean indenting) throws IOException {
-        new JSONWriter(w, indenting).write(value);
+        JSONPool.Entry<Scratch> e = POOL.acquire();
+        if (e == null) {
+            new JSONWriter(w, indenting).write(value);
+            return;
+        }
+        try {
+            JSONWriter writer = e.value.writer;
+            writer.reset(w);
+            writer.setIndentMode(indenting);
+            writer.write(value);
+        } finally {
+            e.value.recycle();
+            e.release();
+        }
     }
 
     /**
@@ -80,15 +148,23 @@ public class JSONWriter {
      * Returns JSON text corresponding to value, with optional pretty indentation.
      */
     public static String writeToString(Object value, boolean indenting) throws JSONSerializationError {
-        StringWriter w = new StringWriter();
+        JSONPool.Entry<Scratch> e = POOL.acquire();
+        StringWriter w = (e == null) ? new StringWriter() : e.value.out;
         try {
-            writeTo(w, value, indenting);
+            JSONWriter writer = (e == null) ? new JSONWriter(w) : e.value.writer;
+            writer.setIndentMode(indenting);
+            writer.write(value);
+            return w.getBuffer().toString();
         } catch (JSONSerializationError jse) {
             throw jse;
-        } catch (IOException e) {
-            throw new RuntimeException("IOException while writing to string buffer", e);
+        } catch (IOException ioe) {
+            throw new RuntimeException("IOException while writing to string buffer", ioe);
+        } finally {
+            if (e != null) {
+                e.value.recycle();
+                e.release();
+            }
         }
-        return w.getBuffer().toString();
     }
 
     /**
@@ -104,12 +180,38 @@ public class JSONWriter {
     public JSONWriter(Writer writer, boolean indenting) {
         this.writer = writer;
         this.indentMode = indenting;
+        this.buf = new char[DEFAULT_BUFFER_SIZE];
+    }
+
+    /**
+     * For subclasses that override all the emit methods, and so need neither a Writer nor a char buffer.
+     */
+    protected JSONWriter(boolean indenting) {
+        this.indentMode = indenting;
     }
 
     /**
-     * Retrieve the underlying Writer.
+     * Discards any partial output state (such as the current indentation level), and directs future output to the
+     * given Writer. Settings such as the indentation mode and key sorting are retained.
+     */
+    public void reset(Writer writer) {
+        this.writer = writer;
+        this.indentLevel = 0;
+        this.count = 0;
+        this.writeDepth = 0;
+        this.pendingTop = 0;
+    }
+
+    /**
+     * Retrieve the underlying Writer. Any buffered output is passed on to it first, so that a
+     * {@link JSONSerializable} may write raw text to it in its proper place among the surrounding JSON.
      */
     public Writer getWriter() {
+        try {
+            flushBuffer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
         return this.writer;
     }
 
@@ -147,22 +249,66 @@ public class JSONWriter {
      */
     public void newline() throws IOException {
         if (indentMode) {
-            emit('\n');
-            for (int i = 0; i < indentLevel; i++) emit(' ');
+            int n = indentLevel + 1;
+            if (n <= INDENT.length) {
+                emit(INDENT, 0, n);
+            } else {
+                emit(INDENT, 0, INDENT.length);
+                for (int i = INDENT.length; i < n; i++) emit(' ');
+            }
         }
     }
 
+    private static char[] indentation(int size) {
+        char[] cs = new char[size];
+        Arrays.fill(cs, ' ');
+        cs[0] = '\n';
+        return cs;
+    }
+
     /**
-     * Emit the given object as JSON to the embedded Writer.
+     * Passes any buffered output to the underlying Writer, and then flushes it.
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        writer.flush();
+    }
+
+    /**
+     * Passes any buffered output to the underlying Writer.
+     */
+    protected void flushBuffer() throws IOException {
+        int n = count;
+        if (n > 0) {
+            count = 0;
+            writer.write(buf, 0, n);
+        }
+    }
+
+    /**
+     * Emit the given object as JSON to the embedded Writer. Output is passed on to the Writer by the time the
+     * outermost call to this method returns, even if it throws.
      */
     public void write(Object object) throws IOException {
+        writeDepth++;
+        try {
+            value(object);
+        } finally {
+            if (--writeDepth == 0) flushBuffer();
+        }
+    }
+
+    /**
+     * Emits the given object as JSON into the output buffer. Used for values nested within the value being written.
+     */
+    protected void value(Object object) throws IOException {
         if (object instanceof JSONNull) emit("null");
         else if (object instanceof JSONSerializable) {
             ((JSONSerializable) object).jsonSerialize(this);
         } else if (object instanceof Class) string(object);
         else if (object instanceof Boolean) bool((Boolean) object);
         else if (object instanceof Number) number((Number) object);
-        else if (object instanceof String) string(object);
+        else if (object instanceof CharSequence) string(object);
         else if (object instanceof Character) string(object);
         else if (object instanceof Map) map((Map<?, ?>) object);
         else if (object instanceof Iterable) iterable((Iterable<?>) object);
@@ -170,56 +316,96 @@ public class JSONWriter {
         else throw new JSONSerializationError("Cannot write object in JSON format: " + object);
     }
 
+    /**
+     * Emits a JSON number. Integral boxed types, and integral Doubles and Floats small enough for toString() to
+     * write without an exponent, are formatted directly into the output buffer; other numbers are written as their
+     * toString(), less any trailing ".0".
+     */
     protected void number(Number n) throws IOException {
-        String s = n.toString();
+        if (n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte) {
+            integer(n.longValue());
+        } else if (n instanceof Double || n instanceof Float) {
+            double d = n.doubleValue();
+            long l = (long) d;
+            if (l == d && l > -10000000L && l < 10000000L && (l != 0 || Double.doubleToRawLongBits(d) == 0)) {
+                integer(l);
+            } else {
+                decimal(n.toString());
+            }
+        } else {
+            decimal(n.toString());
+        }
+    }
+
+    private void decimal(String s) throws IOException {
         if (s.endsWith(".0")) {
-            emit(s.substring(0, s.length() - 2));
+            emit(s, 0, s.length() - 2);
         } else {
             emit(s);
         }
     }
 
+    /** Emits v in decimal, two digits at a time. Works with negative numbers so as to cover Long.MIN_VALUE. */
+    protected void integer(long v) throws IOException {
+        char[] d = digits;
+        int pos = d.length;
+        boolean negative = v < 0;
+        if (!negative) v = -v;
+        while (v <= -100) {
+            long q = v / 100;
+            int r = (int) (q * 100 - v) << 1;
+            v = q;
+            d[--pos] = DIGIT_PAIRS[r + 1];
+            d[--pos] = DIGIT_PAIRS[r];
+        }
+        int r = (int) -v;
+        if (r >= 10) {
+            d[--pos] = DIGIT_PAIRS[(r << 1) + 1];
+            d[--pos] = DIGIT_PAIRS[r << 1];
+        } else {
+            d[--pos] = (char) ('0' + r);
+        }
+        if (negative) d[--pos] = '-';
+        emit(d, pos, d.length - pos);
+    }
+
     protected void map(Map<?, ?> map) throws IOException {
         emit('{');
         indentLevel += 2;
         newline();
         boolean needComma = false;
 
-        if (sortKeys) {
-            ArrayList<String> sortedKeys = new ArrayList<>(map.size());
-            for (Object key : map.keySet()) {
-                if (!(key instanceof String)) {
-                    throw new JSONSerializationError("Cannot write non-string JSON map key: " + key);
+        if (map instanceof JSONCompactMap) {
+            // Its shape, possibly shared with many other maps, holds the keys' sorted order and prefix text.
+            JSONCompactMap m = (JSONCompactMap) map;
+            JSONShape shape = m.shape();
+            String[] prefixes = shape.memberPrefixes();
+            if (sortKeys) {
+                for (int i : shape.sortedOrder()) {
+                    if (needComma) separator();
+                    needComma = true;
+                    emit(prefixes[i]);
+                    value(m.valueAt(i));
                 }
-                sortedKeys.add((String) key);
-            }
-            Collections.sort(sortedKeys);
-            for (String key : sortedKeys) {
-                if (needComma) {
-                    emit(',');
-                    newline();
+            } else {
+                for (int i = 0; i < prefixes.length; i++) {
+                    if (needComma) separator();
+                    needComma = true;
+                    emit(prefixes[i]);
+                    value(m.valueAt(i));
                 }
-                needComma = true;
-                emit('"');
-                emit(key);
-                emit("\":");
-                write(map.get(key));
             }
+        } else if (sortKeys && !(map instanceof SortedMap && ((SortedMap<?, ?>) map).comparator() == null)) {
+            sortedMembers(map);
         } else {
+            // Either keys are not being sorted, or the map is a SortedMap already iterating in natural order.
             for (Map.Entry<?, ?> entry : map.entrySet()) {
-                if (needComma) {
-                    emit(',');
-                    newline();
-                }
-                needComma = true;
-                emit('"');
                 Object key = entry.getKey();
                 if (!(key instanceof String)) {
                     throw new JSONSerializationError("Cannot write non-string JSON map key: " + key);
                 }
-                emit((String) key);
-                emit("\":");
-                write(entry.getValue());
+                member(needComma, (String) key, entry.getValue());
+                needComma = true;
             }
         }
 
@@ -228,13 +414,104 @@ public class JSONWriter {
         emit('}');
     }
 
+    /**
+     * Emits the entries of map in sorted order of key. The entries are staged on the {@link #pending} stack, and
+     * sorted by way of a {@link JSONShape}, which for small maps is cached, so that maps whose keys come out of
+     * entrySet() in the same order as some recent map's reuse that map's sorted order and member prefixes.
+     */
+    private void sortedMembers(Map<?, ?> map) throws IOException {
+        int base = pendingTop;
+        int top = base;
+        try {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                Object key = entry.getKey();
+                if (!(key instanceof String)) {
+                    throw new JSONSerializationError("Cannot write non-string JSON map key: " + key);
+                }
+                if (top + 2 > pending.length) pending = Arrays.copyOf(pending, Math.max(pending.length * 2, 16));
+                pending[top++] = key;
+                pending[top++] = entry.getValue();
+            }
+            pendingTop = top;
+            int hash = JSONShape.sequenceHash(pending, base, top);
+            boolean needComma = false;
+            if (top - base <= 2 * MAX_CACHED_SHAPE_SIZE) {
+                int slot = JSONShape.spread(hash) & (SHAPE_CACHE_SIZE - 1);
+                JSONShape shape = cachedShapes[slot];
+                if (shape == null || !shape.matches(pending, base, top, hash)) {
+                    shape = new JSONShape(pending, base, top, hash);
+                    cachedShapes[slot] = shape;
+                }
+                String[] prefixes = shape.memberPrefixes();
+                for (int i : shape.sortedOrder()) {
+                    if (needComma) separator();
+                    needComma = true;
+                    emit(prefixes[i]);
+                    value(pending[base + 2 * i + 1]);
+                }
+            } else {
+                JSONShape shape = new JSONShape(pending, base, top, hash);
+                for (int i : shape.sortedOrder()) {
+                    member(needComma, shape.keyAt(i), pending[base + 2 * i + 1]);
+                    needComma = true;
+                }
+            }
+        } finally {
+            Arrays.fill(pending, base, top, null);
+            pendingTop = base;
+        }
+    }
+
+    private void member(boolean needComma, String key, Object value) throws IOException {
+        if (needComma) separator();
+        if (key.length() <= MAX_CACHED_KEY_LENGTH) {
+            int slot = key.hashCode() & (KEY_CACHE_SIZE - 1);
+            String k = cachedKeys[slot];
+            String prefix;
+            if (k == key || key.equals(k)) {
+                prefix = cachedPrefixes[slot];
+            } else {
+                prefix = memberPrefix(key);
+                cachedKeys[slot] = key;
+                cachedPrefixes[slot] = prefix;
+            }
+            emit(prefix);
+        } else {
+            string(key);
+            emit(':');
+        }
+        value(value);
+    }
+
+    private void separator() throws IOException {
+        emit(',');
+        newline();
+    }
+
+    /** The text emitted before the value of a map entry with the given key: the key as a JSON string, and ':'. */
+    static String memberPrefix(String key) {
+        int n = key.length();
+        int i = escapeIndex(key, 0, n);
+        if (i == n) return "\"" + key + "\":";
+        StringBuilder sb = new StringBuilder(n + 8).append('"');
+        int run = 0;
+        for (; i < n; i++) {
+            char c = key.charAt(i);
+            if (c < ESCAPES.length && ESCAPES[c] != null) {
+                sb.append(key, run, i).append(ESCAPES[c]);
+                run = i + 1;
+            }
+        }
+        return sb.append(key, run, n).append("\":").toString();
+    }
+
     protected void iterable(Iterable<?> it) throws IOException {
         emit('[');
         boolean needComma = false;
         for (Object value : it) {
             if (needComma) emit(',');
             needComma = true;
-            write(value);
+            value(value);
         }
         emit(']');
     }
@@ -246,7 +523,7 @@ public class JSONWriter {
         for (int i = 0; i < length; i++) {
             if (needComma) emit(',');
             needComma = true;
-            write(Array.get(object, i));
+            value(Array.get(object, i));
         }
         emit(']');
     }
@@ -255,36 +532,121 @@ public class JSONWriter {
         emit(b ? "true" : "false");
     }
 
+    /**
+     * Emits a JSON string. Runs of characters needing no escape are passed to {@link #emit(CharSequence, int, int)}
+     * in one piece; the others are replaced by their entries in {@link #ESCAPES}.
+     */
     protected void string(Object obj) throws IOException {
         emit('"');
-        CharacterIterator it = new StringCharacterIterator(obj.toString());
-        for (char c = it.first(); c != CharacterIterator.DONE; c = it.next()) {
-            if (c == '"') emit("\\\"");
-            else if (c == '\\') emit("\\\\");
-            else if (c == '/') emit("\\/");
-            else if (c == '\b') emit("\\b");
-            else if (c == '\f') emit("\\f");
-            else if (c == '\n') emit("\\n");
-            else if (c == '\r') emit("\\r");
-            else if (c == '\t') emit("\\t");
-            else if (Character.isISOControl(c)) {
-                emitUnicode(c);
-            } else {
-                emit(c);
-            }
+        CharSequence s = (obj instanceof CharSequence) ? (CharSequence) obj : obj.toString();
+        int n = s.length();
+        int run = 0;
+        for (int i = escapeIndex(s, 0, n); i < n; i = escapeIndex(s, i + 1, n)) {
+            if (i > run) emit(s, run, i);
+            emit(ESCAPES[s.charAt(i)]);
+            run = i + 1;
         }
+        if (run < n) emit(s, run, n);
         emit('"');
     }
 
+    /** The index of the first character of s[from] to s[to - 1] needing an escape, or to if there is none. */
+    static int escapeIndex(CharSequence s, int from, int to) {
+        String[] escapes = ESCAPES;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < escapes.length && escapes[c] != null) return i;
+        }
+        return to;
+    }
+
     protected void emit(Object obj) throws IOException {
-        writer.write(obj.toString());
+        emit(obj.toString());
+    }
+
+    protected void emit(String s) throws IOException {
+        int n = s.length();
+        if (n > buf.length - count) {
+            flushBuffer();
+            if (n > buf.length) {
+                writer.write(s);
+                return;
+            }
+        }
+        s.getChars(0, n, buf, count);
+        count += n;
+    }
+
+    /** Emits the characters s[start] to s[end - 1]. */
+    protected void emit(CharSequence s, int start, int end) throws IOException {
+        int n = end - start;
+        if (n > buf.length - count) {
+            flushBuffer();
+            if (n > buf.length) {
+                writer.append(s, start, end);
+                return;
+            }
+        }
+        if (s instanceof String) {
+            ((String) s).getChars(start, end, buf, count);
+            count += n;
+        } else {
+            char[] b = buf;
+            int c = count;
+            for (int i = start; i < end; i++) b[c++] = s.charAt(i);
+            count = c;
+        }
+    }
+
+    protected void emit(char[] cs, int offset, int length) throws IOException {
+        if (length > buf.length - count) {
+            flushBuffer();
+            if (length > buf.length) {
+                writer.write(cs, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(cs, offset, buf, count, length);
+        count += length;
     }
 
     protected void emit(char c) throws IOException {
-        writer.write(c);
+        if (count == buf.length) flushBuffer();
+        buf[count++] = c;
     }
 
     protected static final char[] hex = "0123456789ABCDEF".toCharArray();
+
+    /** "00", "01", ..., "99", concatenated; see {@link #integer(long)}. */
+    private static final char[] DIGIT_PAIRS = new char[200];
+    static {
+        for (int i = 0; i < 100; i++) {
+            DIGIT_PAIRS[i << 1] = (char) ('0' + i / 10);
+            DIGIT_PAIRS[(i << 1) + 1] = (char) ('0' + i % 10);
+        }
+    }
+
+    /**
+     * The escaped form of each character that needs one, indexed by character; null for the others, and for all
+     * characters beyond the end of the table. Besides '"' and '\\', '/' is escaped, and ISO control characters
+     * without a short escape become \\u escapes.
+     */
+    static final String[] ESCAPES = new String[0xa0];
+    static {
+        for (char c = 0; c < ESCAPES.length; c++) {
+            if (Character.isISOControl(c)) ESCAPES[c] = String.format("\\u%04X", (int) c);
+        }
+        ESCAPES['"'] = "\\\"";
+        ESCAPES['\\'] = "\\\\";
+        ESCAPES['/'] = "\\/";
+        ESCAPES['\b'] = "\\b";
+        ESCAPES['\f'] = "\\f";
+        ESCAPES['\n'] = "\\n";
+        ESCAPES['\r'] = "\\r";
+        ESCAPES['\t'] = "\\t";
+    }
+
+
     protected void emitUnicode(char c) throws IOException {
         emit("\\u");
         int n = c;
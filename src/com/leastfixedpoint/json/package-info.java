@@ -4,7 +4,14 @@
  <li>construction of natural Java representations of JSON values (see class comment for {@link com.leastfixedpoint.json.JSONReader JSONReader})</li>
  <li>optional indented printing of JSON values (see {@link com.leastfixedpoint.json.JSONWriter JSONWriter})</li>
  <li>reading of sequential/adjacent/concatenated JSON values from a file or stream (e.g. a {@link java.net.Socket Socket})</li>
- <li>both DOM-style ({@link com.leastfixedpoint.json.JSONReader JSONReader}) and SAX-style ({@link com.leastfixedpoint.json.JSONEventReader JSONEventReader}) parsing of JSON input</li>
+ <li>DOM-style ({@link com.leastfixedpoint.json.JSONReader JSONReader}), SAX-style ({@link com.leastfixedpoint.json.JSONEventReader JSONEventReader}) and allocation-free cursor-style ({@link com.leastfixedpoint.json.JSONCursor JSONCursor}) parsing of JSON input</li>
+ <li>parsing of UTF-8 encoded input directly from an {@link java.io.InputStream InputStream}, byte array or {@link java.nio.ByteBuffer ByteBuffer} (see {@link com.leastfixedpoint.json.JSONByteReader JSONByteReader})</li>
+ <li>writing UTF-8 encoded JSON directly to an {@link java.io.OutputStream OutputStream}, byte array or {@link java.nio.ByteBuffer ByteBuffer} (see {@link com.leastfixedpoint.json.JSONByteWriter JSONByteWriter})</li>
+ <li>non-blocking, push-style parsing of input as it arrives (see {@link com.leastfixedpoint.json.JSONPushParser JSONPushParser})</li>
+ <li>parallel parsing of large newline-delimited or concatenated inputs (see {@link com.leastfixedpoint.json.JSONParallelReader JSONParallelReader})</li>
+ <li>reading only selected parts of large values, given JSON Pointers or simple paths (see {@link com.leastfixedpoint.json.JSONProjectionReader JSONProjectionReader})</li>
+ <li>decoding JSON directly into records and ordinary Java classes, without building an intermediate tree (see {@link com.leastfixedpoint.json.JSONBinder JSONBinder})</li>
+ <li>optional compact, read-only representation of parsed objects, sharing the layout of objects with the same keys, for holding many documents in memory (see {@link com.leastfixedpoint.json.JSONCompactMap JSONCompactMap})</li>
  <li>a helper class, {@link com.leastfixedpoint.json.JSONValue JSONValue}, for interrogating and manipulating representations of JSON values</li>
  </ul>
  */
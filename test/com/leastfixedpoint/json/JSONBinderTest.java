@@ -0,0 +1,145 @@
+package com.leastfixedpoint.json;
+
+import org.testng.annotations.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.ParameterizedType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+public class JSONBinderTest {
+    enum Color { RED, GREEN }
+
+    record Point(int x, long y, double z, boolean visible, char tag, float w) {}
+
+    record Shape(String name, Color color, List<Point> points, Map<String, Integer> counts, Object extra,
+                 BigDecimal price, BigInteger id, Integer maybe) {}
+
+    static class Base {
+        protected long serial;
+    }
+
+    static class Item extends Base {
+        private String label;
+        private short small;
+        private boolean flag;
+        private double ratio;
+        private Point at;
+        private List<String> tags;
+        private transient int ignored = 7;
+        final int fixed = 9;
+    }
+
+    static class Node {
+        String name;
+        List<Node> children;
+    }
+
+    static class Holder {
+        List<Map<String, List<Integer>>> nested;
+        List<?> wild;
+    }
+
+    static final String SHAPE = "{\"name\": \"tri\", \"unknown\": {\"a\": [1, {}]}, \"color\": \"GREEN\", " +
+            "\"points\": [{\"x\": 1, \"y\": 12345678901, \"z\": 0.5, \"visible\": true, \"tag\": \"q\", \"w\": 2.5}, " +
+            "{\"w\": 1, \"z\": -1e2, \"x\": -3}], \"counts\": {\"a\": 1, \"b\": null}, " +
+            "\"extra\": [\"s\", 2, null, {\"k\": false}], \"price\": 1.25, \"id\": 123456789012345678901234567890, " +
+            "\"maybe\": null}";
+
+    @Test
+    public void testRecords() throws IOException {
+        for (Shape s : new Shape[] {
+                JSONBinder.readFrom(SHAPE, Shape.class),
+                JSONBinder.readFrom(new StringReader(SHAPE), Shape.class),
+                JSONBinder.readFrom(SHAPE.getBytes(StandardCharsets.UTF_8), Shape.class) }) {
+            assert s.name().equals("tri");
+            assert s.color() == Color.GREEN;
+            assert s.points().size() == 2;
+            assert s.points().get(0).equals(new Point(1, 12345678901L, 0.5, true, 'q', 2.5f));
+            assert s.points().get(1).equals(new Point(-3, 0, -100.0, false, '\0', 1.0f));
+            assert s.counts().get("a") == 1 && s.counts().containsKey("b") && s.counts().get("b") == null;
+            assert s.extra().equals(JSONReader.readFrom("[\"s\", 2, null, {\"k\": false}]"));
+            assert s.price().equals(new BigDecimal("1.25"));
+            assert s.id().equals(new BigInteger("123456789012345678901234567890"));
+            assert s.maybe() == null;
+        }
+    }
+
+    @Test
+    public void testClasses() throws IOException {
+        Item item = JSONBinder.readFrom("{\"label\": \"x\", \"small\": 3, \"flag\": true, \"ratio\": 0.25, " +
+                "\"serial\": 99, \"at\": {\"x\": 4}, \"tags\": [\"a\", \"b\"], \"ignored\": 1, \"fixed\": 2}", Item.class);
+        assert item.label.equals("x");
+        assert item.small == 3 && item.flag && item.ratio == 0.25 && item.serial == 99;
+        assert item.at.x() == 4;
+        assert item.tags.equals(List.of("a", "b"));
+        assert item.ignored == 7 && item.fixed == 9;
+
+        Node n = JSONBinder.readFrom("{\"name\": \"root\", \"children\": [{\"name\": \"leaf\", \"children\": []}]}",
+                Node.class);
+        assert n.name.equals("root") && n.children.get(0).name.equals("leaf") && n.children.get(0).children.isEmpty();
+
+        Holder h = JSONBinder.readFrom("{\"nested\": [{\"a\": [1, 2]}], \"wild\": [true]}", Holder.class);
+        assert h.nested.get(0).get("a").equals(List.of(1, 2));
+        assert h.wild.equals(List.of(true));
+    }
+
+    @Test
+    public void testCursorAndGenericTypes() throws IOException, NoSuchFieldException {
+        JSONCursor c = new JSONCursor(new JSONReader("[{\"x\": 1}, {\"x\": 2}] [{\"a\": [3]}] 7 \"RED\""));
+        ParameterizedType pointList = (ParameterizedType) Shape.class.getRecordComponents()[2].getGenericType();
+        List<?> points = (List<?>) JSONBinder.read(c, pointList);
+        assert points.equals(List.of(new Point(1, 0, 0, false, '\0', 0), new Point(2, 0, 0, false, '\0', 0)));
+        Object nested = JSONBinder.read(c, Holder.class.getDeclaredField("nested").getGenericType());
+        assert nested.equals(List.of(Map.of("a", List.of(3))));
+        assert JSONBinder.read(c, int.class) == 7;
+        assert JSONBinder.read(c, Color.class) == Color.RED;
+        try {
+            JSONBinder.read(c, Object.class);
+            assert false;
+        } catch (EOFException expected) {
+        }
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        String[][] cases = {
+                { "{\"x\": \"1\"}", "number" },
+                { "{\"x\": null}", "null into primitive" },
+                { "{\"tag\": \"ab\"}", "long char" },
+                { "[1]", "array for record" },
+        };
+        for (String[] bad : cases) {
+            try {
+                JSONBinder.readFrom(bad[0], Point.class);
+                assert false : bad[1];
+            } catch (JSONTypeError expected) {
+            }
+        }
+        try {
+            JSONBinder.readFrom("\"BLUE\"", Color.class);
+            assert false;
+        } catch (JSONTypeError expected) {
+        }
+        try {
+            JSONBinder.readFrom("{\"x\": 1} 2", Point.class);
+            assert false;
+        } catch (JSONSyntaxError expected) {
+        }
+        try {
+            JSONBinder.readFrom("{\"x\": 1", Point.class);
+            assert false;
+        } catch (EOFException expected) {
+        }
+        try {
+            JSONBinder.readFrom("{}", Runnable.class);
+            assert false;
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.leastfixedpoint.json;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+public class JSONByteReaderTest {
+    static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Yields its input one byte per read() call, to exercise every window boundary. */
+    static InputStream trickle(byte[] bytes) {
+        return new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+    }
+
+    public void checkRead(String source) throws IOException {
+        Object expected = JSONReader.readFrom(source);
+        Object actual = JSONByteReader.readFrom(utf8(source));
+        assert actual.equals(expected) : "Actual >>>" + actual + "<<< =/= >>>" + expected + "<<<";
+        JSONByteReader r = new JSONByteReader(trickle(utf8(source)));
+        actual = r.read();
+        r.expectEOF();
+        assert actual.equals(expected) : "Actual >>>" + actual + "<<< =/= >>>" + expected + "<<<";
+    }
+
+    @Test
+    public void testValues() throws IOException {
+        checkRead("123");
+        checkRead("-123.125e-2");
+        checkRead("1234567890123456789012345678901234567890");
+        checkRead("true");
+        checkRead("null");
+        checkRead("\"\"");
+        checkRead("\"x\\\"x\\\\\\/\\b\\f\\n\\r\\t\"");
+        checkRead("\"\\uD834\\udd1e\"");
+        checkRead("[1, null, \"C\", {\"a\": [[], {}]}]");
+        checkRead("\uFEFF // comment\n\u2003{\"b\": false}\n");
+    }
+
+    @Test
+    public void testUTF8() throws IOException {
+        checkRead("\"caf\u00e9 \u20ac \uD834\uDD1E\"");
+        checkRead("{\"\u00e9t\u00e9\": \"\u4e2d\u6587\"}");
+        byte[] malformed = new byte[] { '"', 'a', (byte) 0xc3, 'b', (byte) 0xff, '"' };
+        assert JSONByteReader.readFrom(malformed).equals("a\ufffdb\ufffd");
+    }
+
+    @Test
+    public void testSlicesAndBuffers() throws IOException {
+        byte[] bytes = utf8("xx[1,2]yy");
+        assert JSONValue.wrap(new JSONByteReader(bytes, 2, 5).read()).size() == 2;
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).position(2).limit(7);
+        JSONByteReader r = new JSONByteReader(direct);
+        assert r.read() instanceof List<?>;
+        r.expectEOF();
+        assert direct.position() == 2;
+    }
+
+    @Test
+    public void testMultiple() throws IOException {
+        JSONByteReader r = new JSONByteReader(trickle(utf8("truefalse[]{}123null \"\u00e9\"")));
+        assert r.read().equals(true);
+        assert r.read().equals(false);
+        assert r.read() instanceof List<?>;
+        assert r.read() instanceof Map<?, ?>;
+        assert r.read().equals(new BigDecimal(123));
+        assert r.read().equals(JSONNull.INSTANCE);
+        assert r.read().equals("\u00e9");
+        r.expectEOF();
+        try { r.read(); } catch (EOFException ee) { return; }
+        assert false : "Expected EOF exception";
+    }
+
+    @Test
+    public void testEventReader() throws IOException {
+        JSONEventReader e = new JSONEventReader(new JSONByteReader(utf8("{\"a\":[1]}")));
+        assert e.next().equals(JSONReader.Lexeme.OBJECT_START);
+        assert e.next().equals("a");
+        assert e.next().equals(JSONReader.Lexeme.ARRAY_START);
+        assert e.next().equals(BigDecimal.ONE);
+        assert e.next().equals(JSONReader.Lexeme.ARRAY_END);
+        assert e.next().equals(JSONReader.Lexeme.OBJECT_END);
+        assert e.next() == null;
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        for (String str : new String[] { "[1 2]", "flase", "\"\\?\"", "/x", "-", "{1: 2}" }) {
+            try {
+                JSONByteReader.readFrom(utf8(str));
+            } catch (JSONSyntaxError jse) {
+                continue;
+            }
+            assert false : "Expected JSONSyntaxError from malformed case: >>>" + str + "<<<";
+        }
+        for (String str : new String[] { "[1,", "\"abc", "tru", "\"\u00e9" }) {
+            byte[] bytes = utf8(str);
+            try {
+                JSONByteReader.readFrom(bytes);
+            } catch (EOFException ee) {
+                continue;
+            }
+            assert false : "Expected EOFException from EOF case: >>>" + str + "<<<";
+        }
+        try {
+            new JSONByteReader(trickle(utf8("[1,\r\n2,\n x]"))).read();
+        } catch (JSONSyntaxError jse) {
+            assert jse.getLineNumber() == 2 && jse.getColumnNumber() == 1 && jse.getOffset() == 9 : jse.getMessage();
+            return;
+        }
+        assert false : "Expected JSONSyntaxError";
+    }
+
+    @Test
+    public void testPositions() throws IOException {
+        byte[] bytes = utf8("[\"\u00e9\",\n @]");
+        for (JSONByteReader r : new JSONByteReader[] { new JSONByteReader(bytes), new JSONByteReader(trickle(bytes)) }) {
+            try {
+                r.read();
+                assert false;
+            } catch (JSONSyntaxError e) {
+                // Columns and offsets count bytes, not characters.
+                assert e.getLineNumber() == 1 && e.getColumnNumber() == 1 && e.getOffset() == 8 : e.getMessage();
+            }
+        }
+        byte[] framed = utf8("xx[1,\n@]");
+        try {
+            new JSONByteReader(framed, 2, framed.length - 2).read();
+            assert false;
+        } catch (JSONSyntaxError e) {
+            assert e.getLineNumber() == 1 && e.getColumnNumber() == 0 && e.getOffset() == 4 : e.getMessage();
+        }
+    }
+
+    @Test
+    public void testReset() throws IOException {
+        JSONByteReader r = new JSONByteReader(trickle(utf8("[1, \"ab")));
+        try {
+            r.read();
+            assert false;
+        } catch (EOFException expected) {
+        }
+        r.reset(utf8("xx\"caf\u00e9\"xx"), 2, 7);
+        assert r.read().equals("caf\u00e9");
+        r.expectEOF();
+        r.reset(trickle(utf8("{\"a\": [true]}")));
+        assert ((Map<?, ?>) r.read()).get("a").equals(List.of(true));
+        r.reset(ByteBuffer.wrap(utf8(" 12 ")));
+        assert r.read().equals(new BigDecimal(12));
+        r.expectEOF();
+
+        // Character input is encoded to UTF-8, so a JSONByteReader can be reused wherever a JSONReader is.
+        r.reset("[\"caf\u00e9\", \"\ud83d\ude00\"] 2");
+        assert r.read().equals(List.of("caf\u00e9", "\ud83d\ude00"));
+        assert r.read().equals(new BigDecimal(2));
+        r.expectEOF();
+        char[] chars = " [true] ".toCharArray();
+        r.reset(chars, 1, 6);
+        assert r.read().equals(List.of(true));
+        r.expectEOF();
+        StringBuilder big = new StringBuilder("[");
+        for (int i = 0; i < 5000; i++) big.append("\"\u00e9\ud83d\ude00\", ");
+        r.reset(new StringReader(big.append("\"\ud83d\"]").toString()));
+        List<?> items = (List<?>) r.read();
+        assert items.size() == 5001 && items.get(4999).equals("\u00e9\ud83d\ude00") && items.get(5000).equals("?");
+        assert r.getReader() != null && r.getInputStream() != null;
+
+        LineNumberReader lines = new LineNumberReader(new StringReader("\n[1]\n2 x"));
+        lines.readLine();
+        r.reset(lines);
+        assert r.read().equals(List.of(new BigDecimal(1)));
+        assert lines.read() == '\n';
+        r.reset(new LineNumberReader(new StringReader("\n\n  [5] @")));
+        r.read();
+        try {
+            r.read();
+            assert false;
+        } catch (JSONSyntaxError e) {
+            assert e.getLineNumber() == 2 && e.getColumnNumber() == 6 && e.getOffset() == 8 : e.getMessage();
+        }
+        r.reset(utf8("7"), 0, 1);
+        assert r.getReader() == null && r.read().equals(new BigDecimal(7));
+    }
+}
@@ -0,0 +1,133 @@
+package com.leastfixedpoint.json;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class JSONByteWriterTest {
+    static final Object VALUE = Arrays.asList(
+            "plain", "caf\u00e9", "\u20ac100", "\ud83d\ude00 smile", "lone \ud83d", "\ude00 lone", "x\ud83d",
+            "tab\tquote\"slash/", 1, -2.5, true, JSONNull.INSTANCE,
+            Map.of("k\u00e9y", List.of(1, Map.of()), "b", "\u0001", "n", List.of(-7L, 12.0, 0.25f, Long.MIN_VALUE),
+                    "q\"\u00e9/", "\u00e9\"\u20ac\n"));
+
+    static void checkSame(Object value, boolean indenting) throws IOException {
+        byte[] expected = JSONWriter.writeToString(value, indenting).getBytes(StandardCharsets.UTF_8);
+        byte[] actual = JSONByteWriter.writeToBytes(value, indenting);
+        assert Arrays.equals(actual, expected) : new String(actual, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testEncoding() throws IOException {
+        checkSame(VALUE, false);
+        checkSame(VALUE, true);
+        checkSame("", false);
+        assert new String(JSONByteWriter.writeToBytes("\ud83d\ude00"), StandardCharsets.UTF_8).equals("\"\ud83d\ude00\"");
+        assert Arrays.equals(JSONByteWriter.writeToBytes("\ud83d"), new byte[] { '"', '?', '"' });
+        assert JSONReader.readFrom(new String(JSONByteWriter.writeToBytes(VALUE), StandardCharsets.UTF_8))
+                .equals(JSONByteReader.readFrom(JSONByteWriter.writeToBytes(VALUE)));
+    }
+
+    @Test
+    public void testStream() throws IOException {
+        List<Object> big = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) big.add("\u00e9l\u00e9ment " + i);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JSONByteWriter w = new JSONByteWriter(out, true);
+        assert w.getOutputStream() == out && w.getByteBuffer() == null;
+        w.write(big);
+        out.write('\n');
+        w.write(VALUE);
+        w.flush();
+        String expected = JSONWriter.writeToString(big, true) + "\n" + JSONWriter.writeToString(VALUE, true);
+        assert Arrays.equals(out.toByteArray(), expected.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testByteBuffer() throws IOException {
+        for (ByteBuffer bb : new ByteBuffer[] { ByteBuffer.allocate(1000), ByteBuffer.allocateDirect(1000) }) {
+            bb.put((byte) '>');
+            JSONByteWriter w = new JSONByteWriter(bb);
+            w.write(VALUE);
+            bb.flip();
+            byte[] got = new byte[bb.remaining()];
+            bb.get(got);
+            assert Arrays.equals(got, (">" + JSONWriter.writeToString(VALUE)).getBytes(StandardCharsets.UTF_8));
+        }
+        ByteBuffer small = ByteBuffer.allocate(10);
+        JSONByteWriter w = new JSONByteWriter(small);
+        try {
+            w.write(VALUE);
+            assert false;
+        } catch (BufferOverflowException expected) {
+        }
+        // Nothing is lost: the ByteBuffer is untouched, and the output is still held by the writer.
+        assert small.position() == 0;
+        assert Arrays.equals(Arrays.copyOf(w.getBuffer(), w.size()), JSONByteWriter.writeToBytes(VALUE));
+    }
+
+    @Test
+    public void testReset() throws IOException {
+        JSONByteWriter w = new JSONByteWriter();
+        w.write(VALUE);
+        byte[] first = w.toByteArray();
+        byte[] buffer = w.getBuffer();
+        w.reset();
+        assert w.size() == 0;
+        w.write(VALUE);
+        assert w.getBuffer() == buffer;
+        assert Arrays.equals(w.toByteArray(), first);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        w.reset(out);
+        w.write("\u00e9");
+        assert w.size() == 0;
+        assert new String(out.toByteArray(), StandardCharsets.UTF_8).equals("\"\u00e9\"");
+
+        // Reused as a JSONWriter, it writes characters; output bigger than the buffer comes out whole too.
+        List<Object> big = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) big.add("\u00e9l\u00e9ment \ud83d\ude00 " + i);
+        JSONWriter jw = w;
+        StringWriter chars = new StringWriter();
+        jw.reset(chars);
+        jw.write(VALUE);
+        jw.write(big);
+        assert jw.getWriter() == chars && w.getOutputStream() == null;
+        assert chars.toString().equals(new String(JSONByteWriter.writeToBytes(VALUE), StandardCharsets.UTF_8)
+                + JSONWriter.writeToString(big));
+        w.reset();
+        w.write(1);
+        assert chars.toString().endsWith("]") && Arrays.equals(w.toByteArray(), new byte[] { '1' });
+    }
+
+    @Test
+    public void testRawOutputFromSerializable() throws IOException {
+        JSONSerializable raw = w -> w.getWriter().write("{\"pr\u00e9\":1}");
+        Object value = List.of("x", raw, List.of(raw), "y");
+        byte[] expected = "[\"x\",{\"pr\u00e9\":1},[{\"pr\u00e9\":1}],\"y\"]".getBytes(StandardCharsets.UTF_8);
+        assert Arrays.equals(JSONByteWriter.writeToBytes(value), expected);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JSONByteWriter(out).write(value);
+        assert Arrays.equals(out.toByteArray(), expected);
+
+        ByteBuffer bb = ByteBuffer.allocate(100);
+        new JSONByteWriter(bb).write(value);
+        assert Arrays.equals(Arrays.copyOf(bb.array(), bb.position()), expected);
+
+        JSONByteWriter w = new JSONByteWriter();
+        StringWriter chars = new StringWriter();
+        w.reset(chars);
+        w.write(value);
+        assert chars.toString().equals(new String(expected, StandardCharsets.UTF_8));
+    }
+}
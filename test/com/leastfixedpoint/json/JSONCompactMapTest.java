@@ -0,0 +1,140 @@
+package com.leastfixedpoint.json;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JSONCompactMapTest {
+    static String objectSource(int size, boolean withDuplicate) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < size; i++) sb.append((i > 0) ? ", " : "").append("\"k").append(i).append("\": ").append(i);
+        if (withDuplicate) sb.append(", \"k0\": \"again\"");
+        return sb.append("}").toString();
+    }
+
+    static JSONReader compactReader(String source) {
+        JSONReader r = new JSONReader(source);
+        r.setCompactObjects(true);
+        return r;
+    }
+
+    @Test
+    public void testLookup() throws IOException {
+        for (int size : new int[] { 0, 1, 8, 9, 100 }) {
+            for (boolean withDuplicate : new boolean[] { false, true }) {
+                if (size == 0 && withDuplicate) continue;
+                String source = objectSource(size, withDuplicate);
+                Object compact = compactReader(source).read();
+                Object plain = JSONReader.readFrom(source);
+                assert compact instanceof JSONCompactMap;
+                JSONCompactMap m = (JSONCompactMap) compact;
+                assert m.size() == size;
+                assert m.equals(plain) && plain.equals(m) && m.hashCode() == plain.hashCode();
+                for (int i = 0; i < size; i++) {
+                    assert m.keyAt(i).equals("k" + i);
+                    assert m.indexOf("k" + i) == i;
+                    assert m.containsKey("k" + i);
+                }
+                if (withDuplicate) assert m.get("k0").equals("again");
+                assert m.get("missing") == null && !m.containsKey("missing") && m.get(null) == null;
+                assert m.indexOf(1) == -1;
+            }
+        }
+    }
+
+    @Test
+    public void testOrderAndReadOnly() throws IOException {
+        JSONCompactMap m = (JSONCompactMap) compactReader("{\"b\": 1, \"a\": [2], \"c\": {\"d\": null}}").read();
+        List<String> keys = new ArrayList<>(m.keySet());
+        assert keys.equals(List.of("b", "a", "c"));
+        assert m.valueAt(0).equals(BigDecimal.ONE);
+        assert m.get("c") instanceof JSONCompactMap;
+        List<String> entryKeys = new ArrayList<>();
+        for (Map.Entry<String, Object> e : m.entrySet()) entryKeys.add(e.getKey());
+        assert entryKeys.equals(keys);
+        try {
+            m.put("x", 1);
+            assert false;
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            m.remove("a");
+            assert false;
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            m.keySet().clear();
+            assert false;
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void testValueAndWriter() throws IOException {
+        String source = "{\"z\": 1, \"a\": {\"y\": true, \"b\": \"s\"}}";
+        JSONValue v = JSONValue.wrap(compactReader(source).read());
+        assert v.get("a").get("b").stringValue().equals("s");
+        assert v.containsKey("z") && !v.containsKey("q");
+        List<String> keys = new ArrayList<>();
+        for (String k : v.mapKeys()) keys.add(k);
+        assert keys.equals(List.of("z", "a"));
+        keys.clear();
+        for (Map.Entry<String, JSONValue> e : v.mapEntries()) {
+            keys.add(e.getKey());
+            assert e.getValue().equals(v.get(e.getKey()));
+        }
+        assert keys.equals(List.of("z", "a"));
+
+        assert JSONWriter.writeToString(v).equals(JSONWriter.writeToString(JSONReader.readFrom(source)));
+        assert JSONWriter.writeToString(v).equals("{\"a\":{\"b\":\"s\",\"y\":true},\"z\":1}");
+        JSONWriter w = new JSONWriter(new java.io.StringWriter(), false);
+        w.setSortKeys(false);
+        w.write(v);
+        assert w.getWriter().toString().equals("{\"z\":1,\"a\":{\"y\":true,\"b\":\"s\"}}") : w.getWriter().toString();
+    }
+
+    @Test
+    public void testByteReader() throws IOException {
+        String source = objectSource(20, true);
+        JSONByteReader r = new JSONByteReader(source.getBytes(StandardCharsets.UTF_8));
+        r.setCompactObjects(true);
+        Object m = r.read();
+        assert m instanceof JSONCompactMap;
+        assert m.equals(new HashMap<>((Map<?, ?>) JSONReader.readFrom(source)));
+    }
+
+    @Test
+    public void testShapeSharing() throws IOException {
+        String source = "{\"id\": 1, \"name\": \"a\"}\n{\"id\": 2, \"name\": \"b\"}\n{\"name\": \"c\", \"id\": 3}\n" +
+                "{\"id\": 4, \"name\": \"d\", \"id\": 5}\n{\"id\": 6, \"name\": \"e\"}\n" + objectSource(20, false) + "\n" +
+                objectSource(20, false);
+        JSONReader r = new JSONReader(source);
+        r.setShapeSharing(true);
+        assert r.getShapeSharing();
+        List<JSONCompactMap> maps = new ArrayList<>();
+        JSONReader plain = new JSONReader(source);
+        for (int i = 0; i < 7; i++) {
+            JSONCompactMap m = (JSONCompactMap) r.read();
+            assert m.equals(plain.read());
+            maps.add(m);
+        }
+        assert maps.get(0).shape() == maps.get(1).shape();
+        assert maps.get(0).shape() != maps.get(2).shape();
+        assert maps.get(3).size() == 2 && maps.get(3).get("id").equals(new BigDecimal(5));
+        assert maps.get(4).shape() == maps.get(0).shape();
+        assert maps.get(5).shape() == maps.get(6).shape();
+        assert maps.get(6).get("k19").equals(new BigDecimal(19));
+        assert r.getShapesShared() == 3 : r.getShapesShared();
+
+        JSONShape shape = maps.get(2).shape();
+        assert shape.size() == 2 && shape.keyAt(0).equals("name") && shape.indexOf("id") == 1;
+        assert JSONWriter.writeToString(maps.get(2)).equals("{\"id\":3,\"name\":\"c\"}");
+        assert JSONWriter.writeToString(maps.get(1)).equals("{\"id\":2,\"name\":\"b\"}");
+    }
+}
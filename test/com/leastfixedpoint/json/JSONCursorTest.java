@@ -0,0 +1,158 @@
+package com.leastfixedpoint.json;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static com.leastfixedpoint.json.JSONCursor.Token.*;
+
+public class JSONCursorTest {
+    private static final String INPUT =
+            "{\"id\": 12345678901, \"price\": -2.5e1, \"name\": \"caf\\u00e9 \\\"x\\\"\",\n" +
+            " \"tags\": ['a', []], \"ok\": true, \"no\": false, \"none\": null,\n" +
+            " \"big\": 123456789012345678901234567890.5} 7";
+
+    private static List<JSONCursor> cursors() {
+        return JSONEventReaderTest.readers(INPUT, JSONCursor::new);
+    }
+
+    private static void expectKey(JSONCursor c, String key) throws IOException {
+        assert c.nextToken() == KEY;
+        assert c.getCharSequence().toString().equals(key);
+        assert c.getString().equals(key);
+    }
+
+    @Test
+    public void testTokens() throws IOException {
+        for (JSONCursor c : cursors()) {
+            assert c.currentToken() == null;
+            assert c.currentDepth() == 0;
+            assert c.nextToken() == OBJECT_START;
+            assert c.currentDepth() == 1;
+            expectKey(c, "id");
+            assert c.nextToken() == NUMBER;
+            assert c.getLong() == 12345678901L;
+            assert c.getDouble() == 12345678901.0;
+            assert c.getBigDecimal().equals(new BigDecimal("12345678901"));
+            expectKey(c, "price");
+            assert c.nextToken() == NUMBER;
+            assert c.getDouble() == -25.0;
+            assert c.getLong() == -25;
+            assert c.getInt() == -25;
+            assert c.getNumber().equals(new BigDecimal("-2.5e1"));
+            expectKey(c, "name");
+            assert c.nextToken() == STRING;
+            assert c.getString().equals("caf\u00e9 \"x\"");
+            expectKey(c, "tags");
+            assert c.nextToken() == ARRAY_START;
+            assert c.currentDepth() == 2;
+            assert c.nextToken() == STRING;
+            assert c.getCharSequence().length() == 1 && c.getCharSequence().charAt(0) == 'a';
+            assert c.nextToken() == ARRAY_START;
+            assert c.currentDepth() == 3;
+            assert c.nextToken() == ARRAY_END;
+            assert c.nextToken() == ARRAY_END;
+            assert c.currentDepth() == 1;
+            expectKey(c, "ok");
+            assert c.nextToken() == TRUE;
+            assert c.getBoolean();
+            expectKey(c, "no");
+            assert c.nextToken() == FALSE;
+            assert !c.getBoolean();
+            expectKey(c, "none");
+            assert c.nextToken() == NULL;
+            expectKey(c, "big");
+            assert c.nextToken() == NUMBER;
+            assert c.getBigDecimal().equals(new BigDecimal("123456789012345678901234567890.5"));
+            assert c.getDouble() == 123456789012345678901234567890.5;
+            assert c.getLong() == new BigDecimal("123456789012345678901234567890").longValue();
+            assert c.nextToken() == OBJECT_END;
+            assert c.currentDepth() == 0;
+            assert c.atBoundary();
+            assert c.nextToken() == NUMBER;
+            assert c.getInt() == 7;
+            assert c.nextToken() == null;
+            assert c.nextToken() == null;
+        }
+    }
+
+    @Test
+    public void testTypeErrors() throws IOException {
+        JSONCursor c = new JSONCursor(new JSONReader("[\"x\", 1]"));
+        assert c.nextToken() == ARRAY_START;
+        assert c.nextToken() == STRING;
+        try {
+            c.getLong();
+            assert false;
+        } catch (JSONTypeError expected) {
+        }
+        assert c.nextToken() == NUMBER;
+        try {
+            c.getCharSequence();
+            assert false;
+        } catch (JSONTypeError expected) {
+        }
+        try {
+            c.getBoolean();
+            assert false;
+        } catch (JSONTypeError expected) {
+        }
+    }
+
+    @Test
+    public void testSyntaxErrors() throws IOException {
+        for (String bad : new String[] { "{1: 2}", "{\"a\" 2}", "[1 2]", "[,]", "{\"a\": 1]", "@" }) {
+            JSONCursor c = new JSONCursor(new JSONReader(bad));
+            try {
+                while (c.nextToken() != null) {
+                    // Keep going until the error.
+                }
+                assert false : bad;
+            } catch (JSONSyntaxError expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testSkipAndKeyCache() throws IOException {
+        JSONReader r = new JSONReader("[{\"k\": [1, {\"x\": 2}]}, {\"k\": 3}]");
+        r.setKeyCache(new JSONKeyCache());
+        JSONCursor c = new JSONCursor(r);
+        assert c.nextToken() == ARRAY_START;
+        assert c.nextToken() == OBJECT_START;
+        assert c.nextToken() == KEY;
+        String k1 = c.getString();
+        assert c.skipValue();
+        assert c.nextToken() == OBJECT_END;
+        assert c.nextToken() == OBJECT_START;
+        assert c.nextToken() == KEY;
+        assert c.getString() == k1;
+        c.skipChildren();
+        assert c.currentDepth() == 1;
+        assert c.nextToken() == ARRAY_END;
+    }
+
+    @Test
+    public void testSkipAfterNumberKeepsWindowSmall() throws IOException {
+        StringBuilder big = new StringBuilder("[1");
+        for (int i = 0; i < 50000; i++) big.append(", [\"x\", ").append(i).append(']');
+        big.append("] 2");
+        for (int variant = 0; variant < 3; variant++) {
+            JSONReader r = new JSONReader(new StringReader(big.toString()));
+            JSONCursor c = new JSONCursor(r);
+            assert c.nextToken() == ARRAY_START;
+            assert c.nextToken() == NUMBER && c.getLong() == 1;
+            switch (variant) {
+                case 0: c.skipChildren(); break;
+                case 1: while (c.skipValue()) { } c.next(); break;
+                default: while (c.nextValue() != null) { } c.next(); break;
+            }
+            assert c.currentToken() == null && c.currentDepth() == 0;
+            assert r.cbuf.length <= 2 * JSONReader.DEFAULT_BUFFER_SIZE : r.cbuf.length;
+            assert c.nextToken() == NUMBER && c.getLong() == 2;
+        }
+    }
+}
@@ -2,13 +2,18 @@ package com.leastfixedpoint.json;
 
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.LineNumberReader;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Function;
 
 public class JSONEventReaderTest {
     @Test
@@ -92,4 +97,109 @@ public class JSONEventReaderTest {
         assert e.next().equals(JSONReader.Lexeme.ARRAY_END);
         assert e.atBoundary();
     }
+
+    private static final String SKIP_INPUT =
+            "{\"a\": [1, \"]}\\\"\", {\"b\": '[{'}, // ]}\n [[-2.5e3]]],\n" +
+            " \"c\": true, \"d\": {\"e\": null}, \"f\": \"x\\\\\"}\n" +
+            "[4, 5] 6";
+
+    private static List<JSONEventReader> skipReaders() {
+        return readers(SKIP_INPUT, JSONEventReader::new);
+    }
+
+    /**
+     * One wrapped reader over input for each kind of JSONReader and input source: text, a LineNumberReader, bytes,
+     * a stream, and a stream yielding a byte at a time, so that every token crosses a buffer boundary.
+     */
+    static <T> List<T> readers(String input, Function<JSONReader, T> wrap) {
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        InputStream trickle = new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+        return Arrays.asList(
+                wrap.apply(new JSONReader(input)),
+                wrap.apply(new JSONReader(new LineNumberReader(new StringReader(input)))),
+                wrap.apply(new JSONByteReader(bytes)),
+                wrap.apply(new JSONByteReader(new ByteArrayInputStream(bytes))),
+                wrap.apply(new JSONByteReader(trickle)));
+    }
+
+    @Test
+    public void testSkipValue() throws IOException {
+        for (JSONEventReader e : skipReaders()) {
+            assert e.next().equals(JSONReader.Lexeme.OBJECT_START);
+            assert e.next().equals("a");
+            assert e.skipValue();
+            assert e.next().equals("c");
+            assert e.skipValue();
+            assert e.skipValue();
+            assert e.skipValue();
+            assert e.next().equals("f");
+            assert e.next().equals("x\\");
+            assert !e.skipValue();
+            assert e.next().equals(JSONReader.Lexeme.OBJECT_END);
+            assert e.atBoundary();
+            assert e.skipValue();
+            assert e.atBoundary();
+            assert e.next().equals(new BigDecimal(6));
+            assert !e.skipValue();
+            assert e.next() == null;
+        }
+    }
+
+    @Test
+    public void testSkipChildren() throws IOException {
+        for (JSONEventReader e : skipReaders()) {
+            assert e.next().equals(JSONReader.Lexeme.OBJECT_START);
+            assert e.next().equals("a");
+            assert e.next().equals(JSONReader.Lexeme.ARRAY_START);
+            assert e.next().equals(new BigDecimal(1));
+            e.skipChildren();
+            assert e.next().equals("c");
+            assert e.next().equals(true);
+            e.skipChildren();
+            assert e.atBoundary();
+            assert e.next().equals(JSONReader.Lexeme.ARRAY_START);
+            e.skipChildren();
+            assert e.atBoundary();
+            assert e.next().equals(new BigDecimal(6));
+        }
+    }
+
+    @Test
+    public void testSkipErrors() throws IOException {
+        JSONEventReader e = new JSONEventReader(new JSONReader("[1, 2}"));
+        assert e.next().equals(JSONReader.Lexeme.ARRAY_START);
+        try {
+            e.skipChildren();
+            assert false;
+        } catch (JSONSyntaxError expected) {
+        }
+
+        e = new JSONEventReader(new JSONReader("{\"a\": [1, 2"));
+        assert e.next().equals(JSONReader.Lexeme.OBJECT_START);
+        assert e.next().equals("a");
+        try {
+            e.skipValue();
+            assert false;
+        } catch (EOFException expected) {
+        }
+
+        e = new JSONEventReader(new JSONReader("{1: 2}"));
+        assert e.next().equals(JSONReader.Lexeme.OBJECT_START);
+        try {
+            e.skipValue();
+            assert false;
+        } catch (JSONSyntaxError expected) {
+        }
+
+        try {
+            new JSONEventReader(new JSONReader("1")).skipChildren();
+            assert false;
+        } catch (IllegalStateException expected) {
+        }
+    }
 }
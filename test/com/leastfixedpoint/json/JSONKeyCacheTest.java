@@ -0,0 +1,67 @@
+package com.leastfixedpoint.json;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+public class JSONKeyCacheTest {
+    static final String SOURCE = "[{\"id\": 1, \"name\": \"a\", \"t\\u00e9\": 0}, {\"id\": 2, \"name\": \"b\", \"t\\u00e9\": 0}]";
+
+    @SuppressWarnings("unchecked")
+    static String keyOf(Object blob, int index, String key) {
+        Map<String, Object> m = (Map<String, Object>) ((List<Object>) blob).get(index);
+        for (String k : m.keySet()) if (k.equals(key)) return k;
+        throw new AssertionError("Missing key " + key);
+    }
+
+    void checkSharing(JSONReader r, JSONKeyCache cache) throws IOException {
+        r.setKeyCache(cache);
+        Object blob = r.read();
+        assert keyOf(blob, 0, "id") == keyOf(blob, 1, "id");
+        assert keyOf(blob, 0, "name") == keyOf(blob, 1, "name");
+        assert keyOf(blob, 0, "t\u00e9") == keyOf(blob, 1, "t\u00e9");
+        assert cache.getHits() == 3 : cache.getHits();
+        assert cache.getMisses() == 3 : cache.getMisses();
+    }
+
+    @Test
+    public void testChars() throws IOException {
+        checkSharing(new JSONReader(SOURCE), new JSONKeyCache());
+    }
+
+    @Test
+    public void testBytes() throws IOException {
+        checkSharing(new JSONByteReader(SOURCE.getBytes(StandardCharsets.UTF_8)), new JSONKeyCache());
+    }
+
+    @Test
+    public void testShared() throws IOException {
+        JSONKeyCache cache = new JSONKeyCache();
+        JSONReader r1 = new JSONReader("{\"shared\": 1}");
+        r1.setKeyCache(cache);
+        JSONReader r2 = new JSONByteReader("{\"shared\": 2}".getBytes(StandardCharsets.UTF_8));
+        r2.setKeyCache(cache);
+        Map<?, ?> m1 = (Map<?, ?>) r1.read();
+        Map<?, ?> m2 = (Map<?, ?>) r2.read();
+        assert m1.keySet().iterator().next() == m2.keySet().iterator().next();
+    }
+
+    @Test
+    public void testBounded() throws IOException {
+        JSONKeyCache cache = new JSONKeyCache(4, 8);
+        assert cache.getCapacity() == 4;
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < 1000; i++) sb.append("\"k").append(i).append("\": ").append(i).append(", ");
+        sb.append("\"a-key-longer-than-eight\": true}");
+        JSONReader r = new JSONReader(sb.toString());
+        r.setKeyCache(cache);
+        Map<?, ?> m = (Map<?, ?>) r.read();
+        assert m.size() == 1001;
+        assert m.get("k999") != null;
+        assert m.get("a-key-longer-than-eight").equals(true);
+        assert cache.getMisses() == 1001;
+    }
+}
@@ -0,0 +1,151 @@
+package com.leastfixedpoint.json;
+
+import org.testng.annotations.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class JSONLazyDocumentTest {
+    static final String SOURCE = "{\"user\": {\"id\": 42, \"name\": \"J\\u00f6rg\", \"tags\": [\"a\", \"b\"]},\n" +
+            " \"items\": [{\"price\": 1.5}, {\"price\": 2}, {}],\n" +
+            " \"t\\u00e9\": null, \"empty\": [], 'q': true}";
+
+    @Test
+    public void testAccess() throws IOException {
+        JSONValue v = JSONLazyDocument.readValue(SOURCE);
+        assert v.size() == 5;
+        assert v.get("user").get("id").longValue() == 42;
+        assert v.get("user").get("name").stringValue().equals("J\u00f6rg");
+        assert v.get("user").get("tags").get(1).stringValue().equals("b");
+        assert v.get("items").size() == 3;
+        assert v.get("items").get(1).get("price").bigDecimalValue().equals(new BigDecimal(2));
+        assert v.get("items").get(2).size() == 0;
+        v.get("t\u00e9").checkNull();
+        assert v.get("empty").size() == 0;
+        assert v.get("q").booleanValue();
+        assert v.get("missing") == null;
+        assert !v.containsKey("tag");
+        assert v.get("user").value() == v.get("user").value();
+    }
+
+    @Test
+    public void testIterationAndEquality() throws IOException {
+        JSONValue lazy = JSONLazyDocument.readValue(SOURCE);
+        JSONValue eager = JSONReader.readValue(SOURCE);
+        List<String> keys = new ArrayList<>();
+        for (String k : lazy.mapKeys()) keys.add(k);
+        assert keys.equals(List.of("user", "items", "t\u00e9", "empty", "q")) : keys;
+        double total = 0;
+        for (JSONValue item : lazy.get("items").list()) {
+            if (item.containsKey("price")) total += item.get("price").doubleValue();
+        }
+        assert total == 3.5;
+        assert eager.value().equals(lazy.value());
+        assert JSONWriter.writeToString(lazy).equals(JSONWriter.writeToString(eager));
+    }
+
+    @Test
+    public void testScalarRoot() throws IOException {
+        assert JSONLazyDocument.readValue(" \"x\" ").stringValue().equals("x");
+        assert JSONLazyDocument.readValue("-1.5e3").doubleValue() == -1500.0;
+    }
+
+    @Test
+    public void testUntouchedNodesNotDecoded() throws IOException {
+        JSONValue v = JSONLazyDocument.readValue("{\"ok\": 1, \"bad\": 1.2.3}");
+        assert v.get("ok").longValue() == 1;
+        try {
+            v.get("bad");
+        } catch (IllegalStateException ise) {
+            assert ise.getCause() instanceof JSONSyntaxError;
+            return;
+        }
+        assert false : "Expected deferred syntax error";
+    }
+
+    @Test
+    public void testStructuralErrors() throws IOException {
+        for (String str : new String[] {
+                "{a\": 1}", "{\"a\" 1}", "{\"a\": 1 \"b\": 2}", "[1 2]", "[1,,2]", "[1,]", "{,}", "}", "[}",
+                "[1] x", "x", "/x"
+        }) {
+            try {
+                JSONLazyDocument.readValue(str);
+            } catch (JSONSyntaxError jse) {
+                continue;
+            }
+            assert false : "Expected JSONSyntaxError from malformed case: >>>" + str + "<<<";
+        }
+        for (String str : new String[] { "", "[", "{\"a\": [1, 2", "\"abc" }) {
+            try {
+                JSONLazyDocument.readValue(str);
+            } catch (EOFException ee) {
+                continue;
+            }
+            assert false : "Expected EOFException from EOF case: >>>" + str + "<<<";
+        }
+        try {
+            JSONLazyDocument.readValue("[1,\n2,\n 3 4]");
+        } catch (JSONSyntaxError jse) {
+            assert jse.getLineNumber() == 2 : jse.getMessage();
+            return;
+        }
+        assert false;
+    }
+
+    static JSONLazyDocument document(String s, boolean structural) throws IOException {
+        return new JSONLazyDocument(s.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            protected boolean useStructuralIndex() {
+                return structural;
+            }
+        };
+    }
+
+    static String outcome(String s, boolean structural) {
+        try {
+            JSONLazyDocument d = document(s, structural);
+            return d.getNodeCount() + " " + JSONWriter.writeToString(d.rootValue());
+        } catch (IOException | RuntimeException e) {
+            return e.toString();
+        }
+    }
+
+    @Test
+    public void testStructuralIndexAgreesWithScan() {
+        String big = "[" + "{\"k\\\"ey\": \"" + "v".repeat(70) + "\", \"n\": [1, 2.5, true]},".repeat(20) + "null]";
+        for (String str : new String[] {
+                SOURCE.replace("'q'", "\"q\""), big, " \"x\" ", "-1.5e3",
+                "{a\": 1}", "{\"a\" 1}", "{\"a\": 1 \"b\": 2}", "[1 2]", "[1,,2]", "[1,]", "{,}", "}", "[}",
+                "[1] x", "x", "[1\\\"]", "", "[", "{\"a\": [1, 2", "\"abc", "[1,\n2,\n 3 4]"
+        }) {
+            String scanned = outcome(str, false);
+            String walked = outcome(str, true);
+            assert scanned.equals(walked) : str + ": " + scanned + " / " + walked;
+        }
+    }
+
+    @Test
+    public void testRepeatedKeys() throws IOException {
+        String text = "{\"a\": 1, \"b\": [2], \"a\": 3, \"c\": null, \"b\": 4}";
+        Map<?, ?> lazy = (Map<?, ?>) new JSONLazyDocument(text.getBytes(StandardCharsets.UTF_8)).root();
+        Object eager = JSONReader.readFrom(text);
+        JSONReader r = new JSONReader(text);
+        r.setCompactObjects(true);
+        Object compact = r.read();
+        assert lazy.get("a").equals(new BigDecimal(3));
+        assert lazy.get("b").equals(new BigDecimal(4));
+        assert lazy.size() == 3;
+        assert lazy.keySet().equals(Set.of("a", "b", "c"));
+        assert lazy.equals(eager) && eager.equals(lazy);
+        assert lazy.equals(compact) && compact.equals(lazy);
+        assert lazy.hashCode() == eager.hashCode();
+        assert JSONWriter.writeToString(lazy).equals(JSONWriter.writeToString(eager));
+    }
+}
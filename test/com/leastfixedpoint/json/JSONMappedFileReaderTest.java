@@ -0,0 +1,99 @@
+package com.leastfixedpoint.json;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class JSONMappedFileReaderTest {
+    static Path tempFile(String contents) throws IOException {
+        Path p = Files.createTempFile("JSONMappedFileReaderTest", ".json");
+        p.toFile().deleteOnExit();
+        Files.write(p, contents.getBytes(StandardCharsets.UTF_8));
+        return p;
+    }
+
+    @Test
+    public void testSingleDocument() throws IOException {
+        Path p = tempFile("{\"a\": [1, 2, \"caf\u00e9\"], \"b\": null}\n");
+        JSONValue v = JSONMappedFileReader.readValue(p);
+        assert v.get("a").get(2).stringValue().equals("caf\u00e9");
+        v.get("b").checkNull();
+    }
+
+    @Test
+    public void testConcatenatedSmallChunks() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            sb.append("{\"id\": ").append(i).append(", \"name\": \"n\u00e9\\u00e9 ").append(i).append("\"}\n");
+        }
+        Path p = tempFile(sb.toString());
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ);
+             JSONMappedFileReader r = new JSONMappedFileReader(ch, 7)) {
+            for (int i = 0; i < 500; i++) {
+                JSONValue v = r.readValue();
+                assert v.get("id").bigDecimalValue().equals(new BigDecimal(i));
+                assert v.get("name").stringValue().equals("n\u00e9\u00e9 " + i);
+            }
+            r.expectEOF();
+            try { r.read(); } catch (EOFException ee) { return; }
+            assert false : "Expected EOF exception";
+        }
+    }
+
+    @Test
+    public void testLineNumbers() throws IOException {
+        Path p = tempFile("1\n2\n3\n[4,\n x]");
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ);
+             JSONMappedFileReader r = new JSONMappedFileReader(ch, 3)) {
+            for (int i = 1; i <= 3; i++) assert r.read().equals(new BigDecimal(i));
+            try {
+                r.read();
+            } catch (JSONSyntaxError jse) {
+                assert jse.getLineNumber() == 4 : jse.getMessage();
+                return;
+            }
+            assert false : "Expected JSONSyntaxError";
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        try (JSONMappedFileReader r = new JSONMappedFileReader(tempFile(""))) {
+            r.expectEOF();
+        }
+    }
+
+    @Test
+    public void testReset() throws IOException {
+        Path p = tempFile("2345 ");
+        Path q = tempFile("[6]");
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ);
+             FileChannel ch2 = FileChannel.open(q, StandardOpenOption.READ);
+             JSONMappedFileReader r = new JSONMappedFileReader(ch, 3)) {
+            r.reset("1");
+            assert r.read().equals(new BigDecimal(1));
+            r.expectEOF();
+            assert r.getChannel() == null;
+            r.reset(new byte[] {'7', '8'}, 0, 1);
+            assert r.read().equals(new BigDecimal(7));
+            r.expectEOF();
+            r.reset(new ByteArrayInputStream("[8, 9]".getBytes(StandardCharsets.UTF_8)));
+            assert r.readValue().get(1).bigDecimalValue().equals(new BigDecimal(9));
+            r.expectEOF();
+            r.reset(ch);
+            assert r.read().equals(new BigDecimal(2345));
+            r.expectEOF();
+            r.reset(ch2);
+            assert r.readValue().get(0).bigDecimalValue().equals(new BigDecimal(6));
+            r.expectEOF();
+        }
+    }
+}
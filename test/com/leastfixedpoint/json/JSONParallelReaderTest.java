@@ -0,0 +1,160 @@
+package com.leastfixedpoint.json;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class JSONParallelReaderTest {
+    static String ndjson(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append("{\"id\": ").append(i).append(", \"s\": \"x{[\\\"").append(i).append("\\\"]}\"}\n");
+        }
+        return sb.toString();
+    }
+
+    static String concatenated(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            switch (i % 4) {
+                case 0: sb.append("{\n  \"a\": [1,\n 2],\r\n  \"b\": 'q }'\n}"); break;
+                case 1: sb.append(i).append("  // comment \" [\n"); break;
+                case 2: sb.append("[\"line\nbreak\", {}]\t"); break;
+                default: sb.append("\"").append(i).append("\"\r\n"); break;
+            }
+            sb.append(i % 3 == 0 ? " " : "\n");
+        }
+        return sb.toString();
+    }
+
+    static List<Object> sequential(String s) throws IOException {
+        JSONReader r = new JSONReader(s);
+        List<Object> values = new ArrayList<>();
+        while (true) {
+            r.skipWhiteSpace();
+            if (r.atEOF()) return values;
+            values.add(r.read());
+        }
+    }
+
+    static JSONParallelReader reader(String s, boolean newlineDelimited) {
+        JSONParallelReader r = new JSONParallelReader(s.getBytes(StandardCharsets.UTF_8));
+        r.setMinChunkSize(256);
+        r.setPool(new ForkJoinPool(4));
+        r.setNewlineDelimited(newlineDelimited);
+        return r;
+    }
+
+    @Test
+    public void testOrdered() throws IOException {
+        String nd = ndjson(2000);
+        assert reader(nd, true).readAll().equals(sequential(nd));
+        assert reader(nd, false).readAll().equals(sequential(nd));
+        String cat = concatenated(2000);
+        assert reader(cat, false).readAll().equals(sequential(cat));
+        assert reader("", false).readAll().isEmpty();
+        assert JSONParallelReader.readAll(" 1 2 ".getBytes(StandardCharsets.UTF_8)).size() == 2;
+    }
+
+    @Test
+    public void testUnordered() throws IOException {
+        String nd = ndjson(2000);
+        try (Stream<Object> s = reader(nd, true).stream()) {
+            List<Object> values = s.collect(Collectors.toList());
+            assert values.size() == 2000;
+            assert new HashSet<>(values).equals(new HashSet<>(sequential(nd)));
+        }
+    }
+
+    static int errorLine(String s, boolean newlineDelimited) throws IOException {
+        try {
+            reader(s, newlineDelimited).readAll();
+        } catch (JSONSyntaxError e) {
+            return e.getLineNumber();
+        }
+        throw new AssertionError("Expected JSONSyntaxError");
+    }
+
+    @Test
+    public void testErrorLineNumbers() throws IOException {
+        String bad = ndjson(1500) + "{\"id\": x}\n" + ndjson(500);
+        int expected;
+        try {
+            sequential(bad);
+            throw new AssertionError();
+        } catch (JSONSyntaxError e) {
+            expected = e.getLineNumber();
+        }
+        assert expected == 1500;
+        assert errorLine(bad, true) == expected;
+        assert errorLine(bad, false) == expected;
+
+        String cat = concatenated(1000);
+        String badCat = cat + "[1 2]\n" + cat;
+        assert errorLine(badCat, false) == cat.split("\r\n|\r|\n", -1).length - 1;
+
+        try (Stream<Object> s = reader(bad, true).stream()) {
+            s.count();
+            throw new AssertionError();
+        } catch (UncheckedIOException e) {
+            assert ((JSONSyntaxError) e.getCause()).getLineNumber() == expected;
+        }
+    }
+
+    @Test
+    public void testInterrupted() throws IOException {
+        JSONParallelReader r = reader(ndjson(2000), true);
+        Thread.currentThread().interrupt();
+        try {
+            r.readAll();
+            assert false;
+        } catch (InterruptedIOException expected) {
+            assert Thread.interrupted();
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void testValueSpanningLines() throws IOException {
+        JSONParallelReader r = reader("1\n[2,\n3]\n4\n", true);
+        r.setMinChunkSize(1);
+        try {
+            r.readAll();
+        } catch (JSONSyntaxError e) {
+            assert e.getLineNumber() == 2 : e.getMessage();
+            return;
+        }
+        assert false : "Expected JSONSyntaxError";
+    }
+
+    @Test
+    public void testMappedFile() throws IOException {
+        Path path = Files.createTempFile("parallel", ".ndjson");
+        try {
+            String nd = ndjson(3000);
+            Files.write(path, nd.getBytes(StandardCharsets.UTF_8));
+            assert JSONParallelReader.readAll(path).equals(sequential(nd));
+            try (FileChannel ch = FileChannel.open(path)) {
+                JSONParallelReader r = new JSONParallelReader(ch);
+                r.setMinChunkSize(1000);
+                r.setNewlineDelimited(true);
+                assert r.readAll().equals(sequential(nd));
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
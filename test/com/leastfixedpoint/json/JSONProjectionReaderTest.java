@@ -0,0 +1,103 @@
+package com.leastfixedpoint.json;
+
+import org.testng.annotations.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class JSONProjectionReaderTest {
+    private static final String ORDER =
+            "{\"user\": {\"id\": 7, \"name\": \"Ann\", \"tags\": [\"a\", \"]\"]},\n" +
+            " \"items\": [{\"sku\": \"x\", \"price\": 1.5}, {\"sku\": \"y\"}, {\"price\": 3, \"extra\": {\"p\": [1]}}],\n" +
+            " \"notes\": \"}{\", \"total\": 4.5}";
+
+    private static String project(String json, String... paths) throws IOException {
+        return JSONWriter.writeToString(JSONProjectionReader.readFrom(json, paths));
+    }
+
+    @Test
+    public void testPathExpressions() throws IOException {
+        assert project(ORDER, "$.user.id").equals("{\"user\":{\"id\":7}}");
+        assert project(ORDER, "$.items[*].price", "$.total")
+                .equals("{\"items\":[{\"price\":1.5},{},{\"price\":3}],\"total\":4.5}");
+        assert project(ORDER, "$['user'].tags[1]").equals("{\"user\":{\"tags\":[\"]\"]}}");
+        assert project(ORDER, "$.items[2].*").equals("{\"items\":[{\"extra\":{\"p\":[1]},\"price\":3}]}");
+        assert project(ORDER, "$.missing", "$.notes.deeper").equals("{}");
+        assert project("[1, 2]", "$.a").equals("[]");
+        assert project("5", "$").equals("5");
+        assert JSONProjectionReader.readFrom("5", "$.a") == null;
+    }
+
+    @Test
+    public void testJSONPointer() throws IOException {
+        assert project(ORDER, "/user/name").equals("{\"user\":{\"name\":\"Ann\"}}");
+        assert project(ORDER, "/items/1/sku").equals("{\"items\":[{\"sku\":\"y\"}]}");
+        assert project("{\"1\": true, \"a/b\": 2, \"c~d\": 3}", "/1", "/a~1b", "/c~0d")
+                .equals("{\"1\":true,\"a\\/b\":2,\"c~d\":3}");
+        assert project(ORDER, "").equals(JSONWriter.writeToString(JSONReader.readFrom(ORDER)));
+    }
+
+    @Test
+    public void testBytes() throws IOException {
+        Object v = JSONProjectionReader.readFrom(ORDER.getBytes(StandardCharsets.UTF_8), "$.user.id");
+        assert JSONWriter.writeToString(v).equals("{\"user\":{\"id\":7}}");
+    }
+
+    @Test
+    public void testMatchHandler() throws IOException {
+        JSONProjectionReader p = new JSONProjectionReader(
+                new JSONReader(new StringReader(ORDER + " {\"total\": 9} [] ")),
+                "$.items[*].price", "$.items", "$.total");
+        List<String> seen = new ArrayList<>();
+        JSONProjectionReader.MatchHandler h = (path, value) -> seen.add(path + "=" + JSONWriter.writeToString(value));
+        assert p.read(h);
+        assert p.read(h);
+        assert p.read(h);
+        assert !p.read(h);
+        assert seen.size() == 5;
+        assert seen.get(0).startsWith("$.items=[");
+        assert seen.get(1).equals("$.items[*].price=1.5");
+        assert seen.get(2).equals("$.items[*].price=3");
+        assert seen.get(3).equals("$.total=4.5");
+        assert seen.get(4).equals("$.total=9");
+    }
+
+    @Test
+    public void testAdjacentValues() throws IOException {
+        JSONProjectionReader p = new JSONProjectionReader(
+                new JSONReader("{\"a\": 1, \"b\": 2} {\"b\": [3]}"), "$.b");
+        assert JSONWriter.writeToString(p.read()).equals("{\"b\":2}");
+        assert JSONValue.wrap(p.read()).get("b").get(0).bigDecimalValue().equals(new BigDecimal(3));
+        try {
+            p.read();
+            assert false;
+        } catch (EOFException expected) {
+        }
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        for (String bad : new String[] { "user", "$.", "$[x]", "$.a[1", "$..a" }) {
+            try {
+                new JSONProjectionReader(new JSONReader(""), bad);
+                assert false : bad;
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        try {
+            JSONProjectionReader.readFrom("{\"a\": [1, 2}, \"c\": 3}", "$.c");
+            assert false;
+        } catch (JSONSyntaxError expected) {
+        }
+        try {
+            JSONProjectionReader.readFrom("{\"a\": [1, {\"b\": 2", "$.a[1].b");
+            assert false;
+        } catch (EOFException expected) {
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.leastfixedpoint.json;
+
+import org.testng.annotations.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class JSONPushParserTest {
+    static final String SOURCE = "{\"a\": [1, -2.50, 3e2, 4.5E-1, 12345678901234567890123, 0],\n" +
+            " 'b\"s': \"caf\\u00e9 \\ud83d\\ude00 \\\"q\\\" \\\\ \\/ \\n\", // comment\n" +
+            " \"c\": [true, false, null, {}, []], \"d\\u00e9\": \"\\u00fc\\u20ac\\ud83d\\ude00\"}\n" +
+            "  17 \"next\" [[1]] -0.5";
+
+    static List<Object> pull(String s) throws IOException {
+        JSONEventReader e = new JSONEventReader(new JSONReader(s));
+        List<Object> tokens = new ArrayList<>();
+        Object t;
+        while ((t = e.next()) != null) tokens.add(t);
+        return tokens;
+    }
+
+    /** Feeds the given bytes to a parser in chunks of the given sizes, collecting all tokens. */
+    static List<Object> push(byte[] bytes, Random chunkSizes) throws IOException {
+        JSONPushParser p = new JSONPushParser();
+        List<Object> tokens = new ArrayList<>();
+        int i = 0;
+        while (true) {
+            Object t = p.next();
+            if (t == null) return tokens;
+            if (t != JSONPushParser.NEED_INPUT) {
+                tokens.add(t);
+            } else if (i < bytes.length) {
+                int n = Math.min(bytes.length - i, 1 + chunkSizes.nextInt(7));
+                p.feed(bytes, i, n);
+                i += n;
+            } else {
+                p.endOfInput();
+            }
+        }
+    }
+
+    @Test
+    public void testSameTokensAsEventReader() throws IOException {
+        List<Object> expected = pull(SOURCE);
+        byte[] bytes = SOURCE.getBytes(StandardCharsets.UTF_8);
+        for (int seed = 0; seed < 50; seed++) {
+            List<Object> actual = push(bytes, new Random(seed));
+            assert actual.equals(expected) : actual + " / " + expected;
+        }
+    }
+
+    @Test
+    public void testByteAtATime() throws IOException {
+        byte[] bytes = SOURCE.getBytes(StandardCharsets.UTF_8);
+        JSONPushParser p = new JSONPushParser();
+        List<Object> tokens = new ArrayList<>();
+        for (byte b : bytes) {
+            p.feed(new byte[] { b });
+            Object t;
+            while ((t = p.next()) != JSONPushParser.NEED_INPUT) tokens.add(t);
+        }
+        p.endOfInput();
+        Object t;
+        while ((t = p.next()) != null) tokens.add(t);
+        assert tokens.equals(pull(SOURCE)) : tokens;
+    }
+
+    @Test
+    public void testChars() throws IOException {
+        JSONPushParser p = new JSONPushParser();
+        p.feed("[\"ab");
+        assert p.next() == JSONReader.Lexeme.ARRAY_START;
+        assert p.next() == JSONPushParser.NEED_INPUT;
+        p.feed("c\", 1");
+        assert p.next().equals("abc");
+        assert p.next() == JSONPushParser.NEED_INPUT;
+        p.feed("2]");
+        assert p.next().equals(new BigDecimal(12));
+        assert p.next() == JSONReader.Lexeme.ARRAY_END;
+        assert p.next() == JSONPushParser.NEED_INPUT;
+        assert p.atBoundary();
+        p.feed("7");
+        assert p.next() == JSONPushParser.NEED_INPUT;
+        p.endOfInput();
+        assert p.next().equals(new BigDecimal(7));
+        assert p.next() == null;
+        assert p.next() == null;
+    }
+
+    @Test
+    public void testNumberPolicies() throws IOException {
+        JSONPushParser p = new JSONPushParser();
+        p.setNumberPolicy(JSONReader.NumberPolicy.LAZY);
+        p.feed("[1234567890");
+        p.feed("12345678901234");
+        p.feed("5.5e1, 3]");
+        assert p.next() == JSONReader.Lexeme.ARRAY_START;
+        assert p.next().toString().equals("1234567890123456789012345.5e1");
+        p = new JSONPushParser();
+        p.setNumberPolicy(JSONReader.NumberPolicy.LONG_OR_BIG_DECIMAL);
+        p.feed("[-9223372036854775808");
+        p.feed("0, 42]");
+        assert p.next() == JSONReader.Lexeme.ARRAY_START;
+        assert p.next().equals(new BigDecimal("-92233720368547758080"));
+        assert p.next().equals(42L);
+    }
+
+    @Test
+    public void testKeyCache() throws IOException {
+        JSONPushParser p = new JSONPushParser();
+        p.setKeyCache(new JSONKeyCache());
+        p.feed("[{\"key\": \"key\"}, {\"ke");
+        p.feed("y\": 1}]");
+        p.endOfInput();
+        List<Object> tokens = new ArrayList<>();
+        Object t;
+        while ((t = p.next()) != null) tokens.add(t);
+        assert tokens.get(2) == tokens.get(6);
+        assert tokens.get(3).equals("key");
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        for (String str : new String[] { "[1,", "{\"a\"", "\"abc", "tru", "[1, \"\\u00" }) {
+            JSONPushParser p = new JSONPushParser();
+            p.feed(str);
+            p.endOfInput();
+            try {
+                while (p.next() != null) {
+                }
+            } catch (EOFException e) {
+                continue;
+            }
+            assert false : "Expected EOFException: >>>" + str + "<<<";
+        }
+        for (String str : new String[] { "[1 2]", "{1: 2}", "tx", "[-]", "1e", "\"\\x\"", "/x", "@", "[}" }) {
+            JSONPushParser p = new JSONPushParser();
+            p.feed(str);
+            p.endOfInput();
+            try {
+                while (p.next() != null) {
+                }
+            } catch (JSONSyntaxError e) {
+                continue;
+            }
+            assert false : "Expected JSONSyntaxError: >>>" + str + "<<<";
+        }
+        JSONPushParser p = new JSONPushParser();
+        p.feed("[1,\r\n2,");
+        p.feed("\n 3 4]");
+        try {
+            while (p.next() != JSONPushParser.NEED_INPUT) {
+            }
+            assert false;
+        } catch (JSONSyntaxError e) {
+            assert e.getLineNumber() == 2 : e.getMessage();
+        }
+    }
+
+    @Test
+    public void testMalformedUtf8() throws IOException {
+        JSONPushParser p = new JSONPushParser();
+        p.feed(new byte[] { '"', (byte) 0xc3 });
+        p.feed(new byte[] { 'x', (byte) 0xe2, (byte) 0x82 });
+        p.feed(new byte[] { (byte) 0xac, '"' });
+        assert p.next().equals("\ufffdx\u20ac");
+    }
+}
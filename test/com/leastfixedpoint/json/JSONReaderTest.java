@@ -51,6 +51,56 @@ public class JSONReaderTest {
         assert JSONReader.readFrom("1e40").equals(new BigDecimal("1e40"));
     }
 
+    public Object readWithPolicy(String source, JSONReader.NumberPolicy policy) throws IOException {
+        JSONReader r = new JSONReader(source);
+        r.setNumberPolicy(policy);
+        Object result = r.read();
+        r.expectEOF();
+        return result;
+    }
+
+    @Test
+    public void testNumberPolicies() throws IOException {
+        String[] sources = new String[] {
+                "0", "-0", "123", "-123.125e-2", "0.0000e0", "1.23E+09", "-1.23E-13", "9007199254740993",
+                "123456789012345678", "1234567890123456789", "-9223372036854775808", "9223372036854775808",
+                "1234567890123456789012345678901234567890", "1e40", "0.1", "2.5e-300", "1e400"
+        };
+        for (String source : sources) {
+            BigDecimal expected = new BigDecimal(source);
+            Object big = readWithPolicy(source, JSONReader.NumberPolicy.BIG_DECIMAL);
+            assert big.equals(expected) : source + " => " + big;
+            Object d = readWithPolicy(source, JSONReader.NumberPolicy.DOUBLE);
+            assert d.equals(Double.parseDouble(source)) : source + " => " + d;
+            Object lazy = readWithPolicy(source, JSONReader.NumberPolicy.LAZY);
+            assert lazy instanceof JSONNumber;
+            assert lazy.toString().equals(source);
+            assert ((JSONNumber) lazy).doubleValue() == Double.parseDouble(source) : source;
+            assert ((JSONNumber) lazy).longValue() == expected.longValue() : source;
+            assert JSONValue.wrap(lazy).equals(JSONValue.wrap(big));
+            Object l = readWithPolicy(source, JSONReader.NumberPolicy.LONG_OR_BIG_DECIMAL);
+            if (l instanceof Long) {
+                assert (Long) l == expected.longValueExact() : source;
+            } else {
+                assert l.equals(expected) : source + " => " + l;
+            }
+            assert JSONValue.wrap(l).equals(JSONValue.wrap(big));
+            assert JSONValue.wrap(l).hashCode() == JSONValue.wrap(big).hashCode();
+        }
+        assert readWithPolicy("123", JSONReader.NumberPolicy.LONG_OR_BIG_DECIMAL).equals(123L);
+        assert readWithPolicy("-9223372036854775808", JSONReader.NumberPolicy.LONG_OR_BIG_DECIMAL)
+                .equals(Long.MIN_VALUE);
+        assert readWithPolicy("123.0", JSONReader.NumberPolicy.LONG_OR_BIG_DECIMAL) instanceof BigDecimal;
+        assert readWithPolicy("-0", JSONReader.NumberPolicy.DOUBLE).equals(-0.0);
+    }
+
+    @Test
+    public void testNumberPoliciesBytes() throws IOException {
+        JSONByteReader r = new JSONByteReader("[1, 2.5, 12345678901234567890]".getBytes());
+        r.setNumberPolicy(JSONReader.NumberPolicy.LONG_OR_BIG_DECIMAL);
+        assert r.read().equals(List.of(1L, new BigDecimal("2.5"), new BigDecimal("12345678901234567890")));
+    }
+
     @Test
     public void testBOM() throws IOException {
         checkRead("\uFEFF\"123\"", "123");
@@ -204,7 +254,12 @@ public class JSONReaderTest {
                 "/* invalid */\n123",
                 "/- invalid\n123",
                 "}",
-                "]"
+                "]",
+                "-",
+                "[-]",
+                "1e",
+                "1e+",
+                "-.e1"
         }) {
             try {
                 JSONReader.readFrom(str);
@@ -252,6 +307,147 @@ public class JSONReaderTest {
         assert r.read() == 'x';
     }
 
+    @Test
+    public void testWindowBoundaries() throws IOException {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 2000; i++) {
+            if (i > 0) sb.append(",\n");
+            sb.append("{\"k").append(i).append("\": [\"x\\ty").append(i).append("\", -").append(i).append(".5e1, true]}");
+        }
+        sb.append("]");
+        String source = sb.toString();
+        Object fromString = JSONReader.readFrom(source);
+        Object fromBlocks = JSONReader.readFrom(new StringReader(source));
+        Object fromChars = new JSONReader(new LineNumberReader(new StringReader(source))).read();
+        assert fromString.equals(fromBlocks);
+        assert fromString.equals(fromChars);
+        assert JSONValue.wrap(fromString).get(1999).get("k1999").get(0).stringValue().equals("x\ty1999");
+    }
+
+    @Test
+    public void testCharArray() throws IOException {
+        char[] chars = "xx[1, 2]yy".toCharArray();
+        JSONReader r = new JSONReader(chars, 2, 6);
+        assert r.read() instanceof List<?>;
+        r.expectEOF();
+    }
+
+    @Test
+    public void testLineNumbers() throws IOException {
+        for (String source : new String[] { "[1,\n2,\n x]", "[1,\r\n2,\r\n x]", "[1,\r2,\r x]" }) {
+            try {
+                JSONReader.readFrom(new StringReader(source));
+            } catch (JSONSyntaxError jse) {
+                assert jse.getLineNumber() == 2 : jse.getMessage();
+                continue;
+            }
+            assert false : "Expected JSONSyntaxError";
+        }
+    }
+
+    @Test
+    public void testPositions() throws IOException {
+        String source = "[1,\n 2,\r\n  @]";
+        for (Reader in : new Reader[] { new StringReader(source), new LineNumberReader(new StringReader(source)) }) {
+            try {
+                new JSONReader(in).read();
+                assert false;
+            } catch (JSONSyntaxError e) {
+                assert e.getLineNumber() == 2 && e.getColumnNumber() == 2 && e.getOffset() == 11 : e.getMessage();
+                assert e.getMessage().endsWith("(line 2, column 2, offset 11)") : e.getMessage();
+            }
+        }
+
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 5000; i++) sb.append(i).append(",\n");
+        sb.append("@]");
+        JSONReader r = new JSONReader(new StringReader(sb.toString()));
+        r.setPositionTracking(JSONReader.PositionTracking.OFFSET);
+        try {
+            r.read();
+            assert false;
+        } catch (JSONSyntaxError e) {
+            assert e.getLineNumber() == -1 && e.getColumnNumber() == -1 : e.getMessage();
+            assert e.getOffset() == sb.length() - 2 : e.getMessage();
+            assert e.getMessage().endsWith("(offset " + (sb.length() - 2) + ")") : e.getMessage();
+        }
+
+        r = new JSONReader(sb.toString());
+        r.setPositionTracking(JSONReader.PositionTracking.OFFSET);
+        try {
+            r.read();
+            assert false;
+        } catch (JSONSyntaxError e) {
+            assert e.getLineNumber() == 5000 && e.getColumnNumber() == 0 : e.getMessage();
+        }
+    }
+
+    @Test
+    public void testDeepNesting() throws IOException {
+        int depth = 200000;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; i++) sb.append((i % 2 == 0) ? "[1, " : "{\"k\": ");
+        sb.append("true");
+        for (int i = depth - 1; i >= 0; i--) sb.append((i % 2 == 0) ? "]" : "}");
+        String source = sb.toString();
+        for (Object v : new Object[] {
+                JSONReader.readFrom(source),
+                JSONReader.readFrom(new StringReader(source)),
+                JSONByteReader.readFrom(source.getBytes("UTF-8")) }) {
+            for (int i = 0; i < depth; i++) {
+                if (i % 2 == 0) {
+                    List<?> l = (List<?>) v;
+                    assert l.size() == 2 && l.get(0).equals(BigDecimal.ONE);
+                    v = l.get(1);
+                } else {
+                    Map<?, ?> m = (Map<?, ?>) v;
+                    assert m.size() == 1;
+                    v = m.get("k");
+                }
+            }
+            assert v.equals(true);
+        }
+
+        JSONReader r = new JSONReader("[[{\"a\": []}]] [[{\"a\": [[]]}]] [[] , {}] 1");
+        r.setMaxDepth(4);
+        assert r.getMaxDepth() == 4;
+        assert r.read() instanceof List<?>;
+        try {
+            r.read();
+            assert false;
+        } catch (JSONSyntaxError e) {
+            assert e.getMessage().startsWith("Maximum nesting depth 4 exceeded") : e.getMessage();
+        }
+        r = new JSONReader("[1, \"x\"] 1 []");
+        r.setMaxDepth(1);
+        assert r.read() instanceof List<?>;
+        r.setMaxDepth(0);
+        assert r.read().equals(BigDecimal.ONE);
+        try {
+            r.read();
+            assert false;
+        } catch (JSONSyntaxError expected) {
+        }
+    }
+
+    @Test
+    public void testContainerSizing() throws IOException {
+        StringBuilder sb = new StringBuilder("[[");
+        for (int i = 0; i < 100; i++) sb.append((i > 0) ? ", " : "").append(i);
+        sb.append("], {");
+        for (int i = 0; i < 100; i++) sb.append((i > 0) ? ", " : "").append("\"k").append(i).append("\": ").append(i);
+        sb.append("}, [], {}, {\"a\": 1, \"a\": 2}]");
+        JSONReader r = new JSONReader(sb.toString());
+        JSONValue v = r.readValue();
+        assert v.get(0).size() == 100 && v.get(0).get(99).longValue() == 99;
+        assert v.get(1).size() == 100 && v.get(1).get("k99").longValue() == 99;
+        assert v.get(2).size() == 0 && v.get(3).size() == 0;
+        assert v.get(4).size() == 1 && v.get(4).get("a").longValue() == 2;
+        assert r.getContainersRead() == 6;
+        // Growing a List to 100 elements takes 6 steps from the default capacity; a HashMap to 100 entries, 4.
+        assert r.getResizesAvoided() == 10 : r.getResizesAvoided();
+    }
+
     @Test
     public void testMultiple() throws IOException {
         JSONReader jsonReader = new JSONReader(new StringReader("truefalse[]{}123null"));
@@ -288,4 +484,106 @@ public class JSONReaderTest {
         assert m.get("x").equals(true);
         assert m.get("y").equals(false);
     }
+
+    @Test
+    public void testReset() throws IOException {
+        JSONReader r = new JSONReader("[1, 2");
+        r.setNumberPolicy(JSONReader.NumberPolicy.LONG_OR_BIG_DECIMAL);
+        try {
+            r.read();
+            assert false;
+        } catch (EOFException expected) {
+        }
+        r.reset("{\"a\": 3}\n4");
+        assert ((Map<?, ?>) r.read()).get("a").equals(3L);
+        assert r.read().equals(4L);
+        r.expectEOF();
+
+        r.reset(new StringReader("\n\n  [5] @"));
+        assert r.read().equals(java.util.Arrays.asList(5L));
+        try {
+            r.read();
+            assert false;
+        } catch (JSONSyntaxError e) {
+            assert e.getLineNumber() == 2 && e.getColumnNumber() == 6 && e.getOffset() == 8 : e.getMessage();
+        }
+
+        char[] chars = "  true ".toCharArray();
+        r.reset(chars, 1, 5);
+        assert r.read().equals(true);
+        r.expectEOF();
+        r.reset(new StringReader("false"));
+        assert chars[1] == ' ';
+        assert r.read().equals(false);
+    }
+
+    /** A Reader whose input is produced by a nested call to the pooled static helpers. */
+    private static class NestingReader extends Reader {
+        private final StringReader inner = new StringReader("[\"outer\"]");
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            assert JSONReader.readFrom("\"inner\"").equals("inner");
+            return inner.read(cbuf, off, len);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testPooledHelpers() throws IOException {
+        StringBuilder big = new StringBuilder("[");
+        for (int i = 0; i < 50000; i++) big.append(i).append(',');
+        big.append("0]");
+        assert ((List<?>) JSONReader.readFrom(big.toString())).size() == 50001;
+        assert JSONReader.readFrom("[\"x\"]").equals(java.util.Arrays.asList("x"));
+        assert JSONReader.readFrom(new NestingReader()).equals(java.util.Arrays.asList("outer"));
+        try {
+            JSONReader.readFrom("[1 2]");
+            assert false;
+        } catch (JSONSyntaxError expected) {
+        }
+        assert JSONReader.readFrom("7").equals(new BigDecimal(7));
+    }
+
+    @Test
+    public void testStringViews() throws IOException {
+        String text = "{\"k\": \"plain\", \"e\": \"tab\\there\", \"l\": [\"a\", 'b']}";
+        JSONReader r = new JSONReader(text);
+        r.setStringViews(true);
+        Map<?, ?> m = (Map<?, ?>) r.read();
+        assert m.keySet().stream().allMatch(k -> k instanceof String);
+        assert m.get("k") instanceof JSONStringView;
+        assert m.get("e").equals("tab\there");
+        JSONStringView v = (JSONStringView) m.get("k");
+        assert v.contentEquals("plain");
+        assert !v.equals("plain");
+        assert v.hashCode() == "plain".hashCode();
+        assert v.toString() == v.toString();
+        assert v.subSequence(1, 3).toString().equals("la");
+        assert JSONValue.wrap(v).equals("plain");
+        assert JSONValue.wrap("plain").equals(v);
+        assert JSONValue.wrap(v).stringValue().equals("plain");
+        assert JSONWriter.writeToString(m).equals("{\"e\":\"tab\\there\",\"k\":\"plain\",\"l\":[\"a\",\"b\"]}");
+
+        // Views remain valid after the reader is reset onto other input.
+        r.reset("\"other\"");
+        assert r.read() instanceof JSONStringView;
+        assert v.contentEquals("plain");
+
+        // Keys from the event reader are Strings too.
+        r.reset(text);
+        JSONEventReader e = new JSONEventReader(r);
+        assert e.next() == JSONReader.Lexeme.OBJECT_START;
+        assert e.next() instanceof String;
+        assert e.next() instanceof JSONStringView;
+
+        // No views from a Reader, nor by default.
+        r = new JSONReader(new StringReader("\"x\""));
+        r.setStringViews(true);
+        assert r.read() instanceof String;
+        assert JSONReader.readFrom("\"x\"") instanceof String;
+    }
 }
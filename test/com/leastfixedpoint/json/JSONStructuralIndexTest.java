@@ -0,0 +1,106 @@
+package com.leastfixedpoint.json;
+
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class JSONStructuralIndexTest {
+    /** Byte-at-a-time reference: token starts in double-quote-only JSON, or null if the input is unsupported. */
+    static List<Integer> reference(byte[] b) {
+        List<Integer> result = new ArrayList<>();
+        int p = 0;
+        boolean inScalar = false;
+        while (p < b.length) {
+            byte c = b[p];
+            if (c == '"') {
+                result.add(p++);
+                while (p < b.length && b[p] != '"') p += (b[p] == '\\') ? 2 : 1;
+                if (p >= b.length) return null;
+                p++;
+                inScalar = false;
+            } else if (c == '{' || c == '}' || c == '[' || c == ']' || c == ':' || c == ',') {
+                result.add(p++);
+                inScalar = false;
+            } else if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                p++;
+                inScalar = false;
+            } else if (c < ' ' || c == '\'' || c == '/' || c == '\\') {
+                return null;
+            } else {
+                if (!inScalar) result.add(p);
+                inScalar = true;
+                p++;
+            }
+        }
+        return result;
+    }
+
+    static List<Integer> positions(JSONStructuralIndex index) {
+        if (index == null) return null;
+        List<Integer> result = new ArrayList<>();
+        for (int i = 0; i < index.size(); i++) result.add(index.get(i));
+        return result;
+    }
+
+    static void check(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        List<Integer> expected = reference(b);
+        List<Integer> swar = positions(JSONStructuralIndex.scan(new JSONStructuralIndex.SWARBlockClassifier(), b, 0, b.length));
+        List<Integer> dflt = positions(JSONStructuralIndex.scan(b, 0, b.length));
+        assert expected == null ? swar == null : expected.equals(swar) : s + " " + expected + " " + swar;
+        assert expected == null ? dflt == null : expected.equals(dflt) : s + " " + expected + " " + dflt;
+    }
+
+    @Test
+    public void testSimple() {
+        check("");
+        check("{\"a\": [1, -2.5e3, true, null], \"b\\\"c\": \"x,y]\"}");
+        check("[\"\\\\\", \"\\\\\\\"\"]");
+        check("  123  ");
+        check("\"unterminated");
+        check("{'a': 1}");
+        check("[1, // comment\n 2]");
+        check("[\"it's fine // here\"]");
+        check("[\"caf\u00e9\"]");
+        check("[caf\u00e9]");
+    }
+
+    @Test
+    public void testOffset() {
+        byte[] b = "xx[1,2]yy".getBytes(StandardCharsets.UTF_8);
+        List<Integer> p = positions(JSONStructuralIndex.scan(b, 2, 5));
+        assert p.equals(List.of(2, 3, 4, 5, 6)) : p;
+    }
+
+    @Test
+    public void testBlockBoundaries() {
+        // Strings, escapes and scalars straddling the 64-byte block boundaries, at every alignment.
+        for (int pad = 0; pad < 130; pad++) {
+            String space = " ".repeat(pad);
+            check(space + "[\"abc\\\\\\\"def\", 12345678, \"\\\\\"]");
+            check("[" + space + "\"" + "\\\\".repeat(pad) + "\",true]");
+            check("[\"" + "a".repeat(pad) + "\\\"\",\"" + "b".repeat(pad) + "\"]");
+            check("[" + "7".repeat(pad + 1) + "," + space + "false]");
+        }
+    }
+
+    @Test
+    public void testRandom() {
+        Random rnd = new Random(1234);
+        String alphabet = "{}[]:,\"\\ \n\tabc1-'/";
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int n = rnd.nextInt(300);
+            for (int j = 0; j < n; j++) {
+                // Keep quotes, apostrophes and slashes rare, so that most inputs remain supported.
+                char c = alphabet.charAt(rnd.nextInt(alphabet.length()));
+                if ((c == '\'' || c == '/' || c == '"') && rnd.nextInt(8) != 0) c = 'x';
+                sb.append(c);
+            }
+            check(sb.toString());
+        }
+    }
+}
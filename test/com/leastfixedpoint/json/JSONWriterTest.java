@@ -6,9 +6,13 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import static org.testng.Assert.*;
 
@@ -43,6 +47,35 @@ public class JSONWriterTest {
                 "1234567890123456789012345678901234567890");
     }
 
+    @Test
+    public void testIntegralNumbers() throws JSONSerializationError {
+        long[] longs = { 0, 1, -1, 9, 10, 99, 100, -100, 101, 12345, -9876543210L, 1000000007,
+                Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1 };
+        for (long l : longs) {
+            checkWrite(l, Long.toString(l));
+            checkWrite((int) l, Integer.toString((int) l));
+        }
+        checkWrite((short) -32768, "-32768");
+        checkWrite((byte) 127, "127");
+        checkWrite(List.of(1L, 22, -333), "[1,22,-333]");
+
+        // Integral doubles and floats are formatted directly where toString() would give "<digits>.0" ...
+        checkWrite(9999999.0, "9999999");
+        checkWrite(-9999999.0, "-9999999");
+        checkWrite(0.0, "0");
+        checkWrite(100.0f, "100");
+        // ... and otherwise still as before.
+        checkWrite(-0.0, "-0");
+        checkWrite(-0.0f, "-0");
+        checkWrite(1e7, "1.0E7");
+        checkWrite(2.5f, "2.5");
+        checkWrite(0.1f, "0.1");
+        checkWrite(1e300, "1.0E300");
+        checkWrite(new BigDecimal("10.0"), "10");
+        checkWrite(JSONValue.wrap(-42L), "-42");
+        checkWrite(new JSONNumber("1.50"), "1.50");
+    }
+
     @Test
     public void testStrings() throws JSONSerializationError {
         checkWrite("123", "\"123\"");
@@ -56,6 +89,33 @@ public class JSONWriterTest {
         checkWrite(JSONValue.wrap("hello"), "\"hello\"");
     }
 
+    @Test
+    public void testEscaping() throws IOException {
+        checkWrite("a/b\b\f\r\t\u0000\u001f \u007f\u009f\u00a0\u2028", "\"a\\/b\\b\\f\\r\\t\\u0000\\u001F \\u007F\\u009F\u00a0\u2028\"");
+        checkWrite("\"\"clean run\\", "\"\\\"\\\"clean run\\\\\"");
+        checkWrite(new StringBuilder("x\ny"), "\"x\\ny\"");
+        checkWrite('"', "\"\\\"\"");
+
+        // Keys are escaped just like values, whether short, long, or repeated.
+        String longKey = "k\"".repeat(40);
+        Map<String, Object> m = new HashMap<>();
+        m.put("a\"b", "c/d");
+        m.put(longKey, "v");
+        String expected = "{\"a\\\"b\":\"c\\/d\"," + JSONWriter.writeToString(longKey) + ":\"v\"}";
+        checkWrite(m, expected);
+        checkWrite(List.of(m, m), "[" + expected + "," + expected + "]");
+        checkWrite(JSONReader.readFrom("{\"\\u0001\": 1}"), "{\"\\u0001\":1}");
+        assert JSONReader.readFrom(JSONWriter.writeToString(m)).equals(m);
+
+        JSONReader r = new JSONReader("{\"q\\\"\": 1}");
+        r.setCompactObjects(true);
+        checkWrite(r.read(), "{\"q\\\"\":1}");
+
+        // Runs longer than the buffer, with escapes on either side.
+        String big = "/" + "x".repeat(20000) + "\n" + "y".repeat(10000) + "\"";
+        assert JSONReader.readFrom(JSONWriter.writeToString(big)).equals(big);
+    }
+
     @Test
     public void testSimple() throws JSONSerializationError {
         checkWrite(true, "true");
@@ -150,6 +210,54 @@ public class JSONWriterTest {
                 actual.equals("{\"b\":234,\"a\":123}");
     }
 
+    @Test
+    public void testSortedKeys() throws IOException {
+        Map<String, Object> tree = new TreeMap<>(Map.of("b", 2, "a", 1, "c", List.of()));
+        checkWrite(tree, "{\"a\":1,\"b\":2,\"c\":[]}");
+        Map<String, Object> reversed = new TreeMap<>(Comparator.reverseOrder());
+        reversed.putAll(tree);
+        checkWrite(reversed, "{\"a\":1,\"b\":2,\"c\":[]}");
+        JSONWriter jw = new JSONWriter(new StringWriter());
+        jw.setSortKeys(false);
+        jw.write(reversed);
+        assert jw.getWriter().toString().equals("{\"c\":[],\"b\":2,\"a\":1}");
+
+        // Maps with the same keys, in the same or a different iteration order, and nested maps sharing the
+        // writer's staging space, all come out sorted.
+        LinkedHashMap<String, Object> m1 = new LinkedHashMap<>();
+        m1.put("z", 1);
+        m1.put("y", "\"");
+        LinkedHashMap<String, Object> m2 = new LinkedHashMap<>();
+        m2.put("y", m1);
+        m2.put("z", List.of(m1, Map.of()));
+        String one = "{\"y\":\"\\\"\",\"z\":1}";
+        checkWrite(List.of(m1, m2, m1), "[" + one + ",{\"y\":" + one + ",\"z\":[" + one + ",{}]}," + one + "]");
+        checkWriteIndented(m1, "{\n  \"y\":\"\\\"\",\n  \"z\":1\n}");
+
+        Map<String, Object> big = new HashMap<>();
+        for (int i = 0; i < 200; i++) big.put("k" + (1000 - i), i);
+        List<String> keys = new ArrayList<>(big.keySet());
+        Collections.sort(keys);
+        StringBuilder expected = new StringBuilder("{");
+        for (String k : keys) expected.append(expected.length() > 1 ? "," : "").append('"').append(k).append("\":")
+                .append(big.get(k));
+        checkWrite(List.of(big, big), "[" + expected + "}," + expected + "}]");
+
+        Map<Object, Object> bad = new LinkedHashMap<>();
+        bad.put("a", Map.of("b", 1));
+        bad.put(1, 2);
+        jw = new JSONWriter(new StringWriter());
+        try {
+            jw.write(List.of(m1, bad));
+            assert false;
+        } catch (JSONSerializationError expected2) {
+        }
+        assert jw.pendingTop == 0;
+        jw.reset(new StringWriter());
+        jw.write(m2);
+        assert jw.getWriter().toString().equals("{\"y\":" + one + ",\"z\":[" + one + ",{}]}");
+    }
+
     @Test(expectedExceptions = {JSONSerializationError.class})
     public void testWriteNullInMap() throws JSONSerializationError {
         Map<String,Object> m = new HashMap<>();
@@ -178,4 +286,125 @@ public class JSONWriterTest {
         jw.setSortKeys(false);
         jw.write(m);
     }
+
+    @Test
+    public void testReset() throws IOException {
+        StringWriter a = new StringWriter();
+        JSONWriter jw = new JSONWriter(a, true);
+        jw.write(Map.of("k", 1));
+        StringWriter b = new StringWriter();
+        jw.reset(b);
+        jw.write(true);
+        assert a.toString().equals("{\n  \"k\":1\n}");
+        assert b.toString().equals("true");
+        assert jw.getIndentMode();
+    }
+
+    @Test
+    public void testPooledHelpers() throws IOException {
+        JSONSerializable nested = w -> w.write(JSONWriter.writeToString(Map.of("k", 1)));
+        checkWrite(List.of(nested, 2), "[\"{\\\"k\\\":1}\",2]");
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 100000; i++) big.append('x');
+        assert JSONWriter.writeToString(big.toString()).length() == 100002;
+        checkWriteIndented(Map.of("k", 1), "{\n  \"k\":1\n}");
+        checkWrite(List.of(1), "[1]");
+        try {
+            JSONWriter.writeToString(new Object());
+            assert false;
+        } catch (JSONSerializationError expected) {
+        }
+        checkWrite(List.of(List.of()), "[[]]");
+        StringWriter w = new StringWriter();
+        JSONWriter.writeTo(w, Map.of("k", 1), true);
+        assert w.toString().equals("{\n  \"k\":1\n}");
+    }
+
+    /** Records the calls made by JSONWriter. */
+    static class CountingWriter extends StringWriter {
+        int writes = 0;
+        int flushes = 0;
+
+        @Override
+        public void write(int c) {
+            writes++;
+            super.write(c);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            writes++;
+            super.write(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str) {
+            writes++;
+            super.write(str);
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+
+    @Test
+    public void testBuffering() throws IOException {
+        List<Object> value = new ArrayList<>();
+        for (int i = 0; i < 100; i++) value.add(Map.of("k", "v\t" + i, "n", i));
+        CountingWriter out = new CountingWriter();
+        JSONWriter w = new JSONWriter(out, true);
+        w.write(value);
+        assert out.writes == 1 : out.writes;
+        assert out.flushes == 0;
+        assert out.toString().equals(JSONWriter.writeToString(value, true));
+        w.flush();
+        assert out.flushes == 1;
+
+        // A JSONSerializable writing nested values is all part of the same top-level write.
+        out = new CountingWriter();
+        w = new JSONWriter(out);
+        w.write(JSONValue.wrap(value));
+        assert out.writes == 1 : out.writes;
+
+        // Output larger than the buffer is passed on in blocks, and huge strings directly.
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 20000; i++) big.append((char) ('a' + i % 26));
+        out = new CountingWriter();
+        w = new JSONWriter(out);
+        w.write(List.of(big, big.toString(), value));
+        assert out.writes > 1 && out.writes < 20 : out.writes;
+        assert out.toString().equals("[\"" + big + "\",\"" + big + "\"," + JSONWriter.writeToString(value) + "]");
+    }
+
+    @Test
+    public void testDeepIndentation() throws IOException {
+        Object v = "x";
+        for (int i = 0; i < 100; i++) v = Map.of("k", v);
+        String s = JSONWriter.writeToString(v, true);
+        assert s.contains("\n" + " ".repeat(200) + "\"k\":\"x\"\n" + " ".repeat(198) + "}");
+        assert JSONReader.readFrom(s).equals(v);
+    }
+
+    @Test
+    public void testPartialOutputOnError() throws IOException {
+        StringWriter out = new StringWriter();
+        JSONWriter w = new JSONWriter(out);
+        try {
+            w.write(List.of(1, new Object()));
+            assert false;
+        } catch (JSONSerializationError expected) {
+        }
+        assert out.toString().equals("[1,") : out.toString();
+        w.write(2);
+        assert out.toString().equals("[1,2") : out.toString();
+    }
+
+    @Test
+    public void testRawOutputFromSerializable() throws IOException {
+        JSONSerializable raw = w -> w.getWriter().write("{\"pre\":1}");
+        checkWrite(List.of("x", raw, "y"), "[\"x\",{\"pre\":1},\"y\"]");
+        checkWrite(Map.of("a", List.of(raw), "b", raw), "{\"a\":[{\"pre\":1}],\"b\":{\"pre\":1}}");
+    }
 }